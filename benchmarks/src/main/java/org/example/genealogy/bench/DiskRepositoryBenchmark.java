@@ -0,0 +1,159 @@
+package org.example.genealogy.bench;
+
+import org.example.genealogy.model.Person;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.storage.DiskPersonStore;
+import org.example.genealogy.storage.DiskRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Traversal and search over a {@link DiskRepository} whose Person cache holds 1%, 10% or
+ * 50% of the population. The {@code hits}/{@code misses} columns are cache lookups per
+ * second; their ratio is the hit rate for that operation mix.
+ * <p>
+ * Each trial also prints the heap retained after setup (measured after full GCs, so it
+ * covers the cache, the indexes and the graph, plus the benchmark's own id list) and the
+ * collections run while it was measured; {@code -prof gc} adds allocation per operation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class DiskRepositoryBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "10", "50"})
+    public int cachePercent;
+
+    private Path dir;
+    private DiskRepository repo;
+    private GenealogyService service;
+    private PopulationGenerator.Population population;
+    private List<String> queries;
+    private long gcCount;
+    private long gcMillis;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        long before = usedHeapAfterGc();
+        dir = Files.createTempDirectory("genealogy-disk");
+        repo = new DiskRepository(dir, Math.max(1, size / 100 * cachePercent));
+        service = new GenealogyService(repo);
+        PopulationGenerator generator = new PopulationGenerator(42, 2.5, 0.85);
+        population = generator.generate(repo, size);
+        queries = generator.surnames();
+        repo.flush();
+        long retained = usedHeapAfterGc() - before;
+        System.out.printf(Locale.ROOT, "%nheap: size=%d cachePercent=%d retained=%.1f MB (%.0f bytes/person)%n",
+                size, cachePercent, retained / 1048576.0, (double) retained / size);
+        gcCount = gcCount();
+        gcMillis = gcMillis();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf(Locale.ROOT, "%ngc: size=%d cachePercent=%d collections=%d time=%d ms%n",
+                size, cachePercent, gcCount() - gcCount, gcMillis() - gcMillis);
+        repo.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) ms += Math.max(0, gc.getCollectionTime());
+        return ms;
+    }
+
+    @State(Scope.Thread)
+    public static class Rnd {
+        final Random random = new Random(7);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Cache {
+        public long hits;
+        public long misses;
+        private long h0;
+        private long m0;
+
+        void begin(DiskPersonStore store) {
+            h0 = store.hits();
+            m0 = store.misses();
+        }
+
+        void end(DiskPersonStore store) {
+            hits += store.hits() - h0;
+            misses += store.misses() - m0;
+        }
+    }
+
+    @Benchmark
+    public List<Person> searchByName(Rnd r, Cache c) {
+        c.begin(repo.store());
+        String surname = queries.get(r.random.nextInt(queries.size()));
+        List<Person> result = service.searchByName(surname.substring(0, 5).toLowerCase(Locale.ROOT), 0, 50);
+        c.end(repo.store());
+        return result;
+    }
+
+    @Benchmark
+    public List<List<Person>> buildAncestorsLevels(Rnd r, Cache c) {
+        c.begin(repo.store());
+        List<List<Person>> result = service.buildAncestorsLevels(population.youngest(r.random), 10);
+        c.end(repo.store());
+        return result;
+    }
+
+    @Benchmark
+    public List<List<Person>> buildDescendantsLevels(Rnd r, Cache c) {
+        c.begin(repo.store());
+        List<List<Person>> result = service.buildDescendantsLevels(population.founder(r.random), 4);
+        c.end(repo.store());
+        return result;
+    }
+
+    @Benchmark
+    public Optional<List<Person>> shortestKinshipPath(Rnd r, Cache c) {
+        c.begin(repo.store());
+        Optional<List<Person>> result = service.shortestKinshipPath(population.any(r.random), population.any(r.random));
+        c.end(repo.store());
+        return result;
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.genealogy.bench;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.service.KinshipMatrix;
+import org.example.genealogy.service.NameMatch;
+import org.example.genealogy.storage.Repository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx24g"})
+@State(Scope.Benchmark)
+public class GenealogyBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"2.5"})
+    public double fanOut;
+
+    private Repository repo;
+    private GenealogyService service;
+    private PopulationGenerator.Population population;
+    private List<String> queries;
+    private List<UUID> candidates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repo = new Repository();
+        service = new GenealogyService(repo);
+        PopulationGenerator generator = new PopulationGenerator(42, fanOut, 0.85);
+        population = generator.generate(repo, size);
+        queries = generator.surnames();
+        Random rnd = new Random(3);
+        candidates = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) candidates.add(population.any(rnd));
+    }
+
+    @State(Scope.Thread)
+    public static class Rnd {
+        final Random random = new Random(7);
+    }
+
+    @Benchmark
+    public List<Person> searchByName(Rnd r) {
+        String surname = queries.get(r.random.nextInt(queries.size()));
+        return service.searchByName(surname.substring(0, 5).toLowerCase(Locale.ROOT), 0, 50);
+    }
+
+    @Benchmark
+    public List<NameMatch> fuzzySearch(Rnd r) {
+        String surname = queries.get(r.random.nextInt(queries.size()));
+        String typo = surname.substring(0, 2) + surname.substring(3);
+        return service.fuzzySearch(typo, 2, 50);
+    }
+
+    @Benchmark
+    public List<List<Person>> buildAncestorsLevels(Rnd r) {
+        return service.buildAncestorsLevels(population.youngest(r.random), 10);
+    }
+
+    @Benchmark
+    public List<List<Person>> buildDescendantsLevels(Rnd r) {
+        return service.buildDescendantsLevels(population.founder(r.random), 4);
+    }
+
+    @Benchmark
+    public List<List<Person>> buildDescendantsLevelsParallel(Rnd r) {
+        return service.buildDescendantsLevels(population.founder(r.random), 4, true);
+    }
+
+    @Benchmark
+    public Optional<List<Person>> shortestKinshipPath(Rnd r) {
+        return service.shortestKinshipPath(population.any(r.random), population.any(r.random));
+    }
+
+    @Benchmark
+    public Map<UUID, List<Person>> shortestKinshipPathsToThousand(Rnd r) {
+        return service.shortestKinshipPaths(population.any(r.random), candidates);
+    }
+
+    @Benchmark
+    public KinshipMatrix kinshipDistancesHundred() {
+        return service.kinshipDistances(candidates.subList(0, 100));
+    }
+
+
+    /**
+     * People to delete, made before each iteration so the setup is not part of the
+     * measurement. An iteration deletes exactly one batch, and its teardown deletes the
+     * children left behind and any victims not used, so the repository stays at
+     * {@code size} from one iteration to the next.
+     */
+    @State(Scope.Thread)
+    public static class Victims {
+        static final int BATCH = 1000;
+
+        final List<UUID> victims = new ArrayList<>(BATCH);
+        final List<UUID> leaves = new ArrayList<>(BATCH);
+        int next;
+
+        @Setup(Level.Iteration)
+        public void create(GenealogyBenchmark b, Rnd r) {
+            for (int i = 0; i < BATCH; i++) {
+                Person p = b.service.addPerson("Удаляемый", "Тест", null, LocalDate.of(1990, 1, 1), null, Gender.MALE);
+                Person leaf = b.service.addPerson("Удаляемый", "Ребенок", null, LocalDate.of(2015, 1, 1), null, Gender.FEMALE);
+                b.service.linkParentChild(b.population.any(r.random), p.getId());
+                // a fresh leaf: linking to an existing person could make the victim its own ancestor
+                b.service.linkParentChild(p.getId(), leaf.getId());
+                victims.add(p.getId());
+                leaves.add(leaf.getId());
+            }
+            next = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void deleteRest(GenealogyBenchmark b) {
+            for (int i = next; i < victims.size(); i++) b.service.deletePerson(victims.get(i));
+            for (UUID leaf : leaves) b.service.deletePerson(leaf);
+            victims.clear();
+            leaves.clear();
+        }
+    }
+
+    /** The score is the time for a batch of {@link Victims#BATCH} deletions. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = Victims.BATCH)
+    @Measurement(iterations = 5, batchSize = Victims.BATCH)
+    public void deletePerson(Victims v, Blackhole bh) {
+        bh.consume(service.deletePerson(v.victims.get(v.next++)));
+    }
+}
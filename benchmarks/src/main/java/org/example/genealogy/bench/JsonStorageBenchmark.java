@@ -0,0 +1,65 @@
+package org.example.genealogy.bench;
+
+import org.example.genealogy.model.Person;
+import org.example.genealogy.storage.JsonStorage;
+import org.example.genealogy.storage.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.SingleShotTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g"})
+@State(Scope.Benchmark)
+public class JsonStorageBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean pretty;
+
+    private Repository repo;
+    private JsonStorage storage;
+    private Path loadFile;
+    private Path saveFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        repo = new Repository();
+        new PopulationGenerator(42, 2.5, 0.85).generate(repo, size);
+        storage = new JsonStorage(pretty);
+        loadFile = Files.createTempFile("genealogy-load", ".json");
+        saveFile = Files.createTempFile("genealogy-save", ".json");
+        storage.save(loadFile.toString(), repo.findAll());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(loadFile);
+        Files.deleteIfExists(saveFile);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        storage.save(saveFile.toString(), repo.findAll());
+    }
+
+    @Benchmark
+    public List<Person> load() throws IOException {
+        return storage.load(loadFile.toString());
+    }
+
+    @Benchmark
+    public Repository loadInto() throws IOException {
+        Repository target = new Repository();
+        storage.loadInto(loadFile.toString(), target);
+        return target;
+    }
+}
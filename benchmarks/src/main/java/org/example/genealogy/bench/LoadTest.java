@@ -0,0 +1,117 @@
+package org.example.genealogy.bench;
+
+import org.example.genealogy.metrics.LatencyHistogram;
+import org.example.genealogy.server.GenealogyServer;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.storage.ConcurrentRepository;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test of {@link GenealogyServer}: an in-process server over a generated
+ * population, and a growing number of clients that each send the next request as soon as
+ * the previous one answers. The mix is half name searches, a third ancestor trees and the
+ * rest kinship paths. Prints throughput and latency percentiles for every client count;
+ * the knee where p99 climbs while requests per second stay flat is the saturation point.
+ * <pre>
+ * java -cp target/benchmarks.jar org.example.genealogy.bench.LoadTest [size] [seconds] [executor]
+ * </pre>
+ */
+public class LoadTest {
+    private static final int[] CLIENTS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String executor = args.length > 2 ? args[2] : "pool";
+        // same as Main --serve: without it every chunked reply waits out a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        ConcurrentRepository repo = new ConcurrentRepository();
+        PopulationGenerator generator = new PopulationGenerator(42, 2.5, 0.85);
+        PopulationGenerator.Population population = generator.generate(repo, size);
+        List<String> surnames = generator.surnames();
+
+        try (GenealogyServer server = new GenealogyServer(new GenealogyService(repo),
+                new InetSocketAddress("localhost", 0), GenealogyServer.executor(executor))) {
+            server.start();
+            String base = "http://localhost:" + server.port() + "/api/";
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            System.out.printf("size=%d executor=%s %ds per step%n", size, executor, seconds);
+            System.out.printf("%8s %10s %10s %10s %8s%n", "clients", "req/s", "p50 ms", "p99 ms", "errors");
+            run(client, base, population, surnames, 4, 2);
+            for (int clients : CLIENTS) {
+                Step step = run(client, base, population, surnames, clients, seconds);
+                System.out.printf(Locale.ROOT, "%8d %10.0f %10.3f %10.3f %8d%n", clients,
+                        step.latency.count() / (double) seconds,
+                        step.latency.percentile(0.50) / 1e6, step.latency.percentile(0.99) / 1e6,
+                        step.errors.get());
+            }
+        }
+    }
+
+    private static Step run(HttpClient client, String base, PopulationGenerator.Population population,
+                            List<String> surnames, int clients, int seconds) throws Exception {
+        Step step = new Step();
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Random rnd = new Random(c);
+            futures.add(pool.submit(() -> {
+                while (!stop.get()) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(next(base, population, surnames, rnd)))
+                            .GET().build();
+                    long t = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() >= 500) step.errors.incrementAndGet();
+                    } catch (Exception e) {
+                        step.errors.incrementAndGet();
+                    }
+                    step.latency.record(System.nanoTime() - t);
+                }
+                return null;
+            }));
+        }
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+        return step;
+    }
+
+    private static String next(String base, PopulationGenerator.Population population, List<String> surnames,
+                               Random rnd) {
+        int kind = rnd.nextInt(6);
+        if (kind < 3) {
+            String surname = surnames.get(rnd.nextInt(surnames.size()));
+            String prefix = surname.substring(0, Math.min(5, surname.length())).toLowerCase(Locale.ROOT);
+            return base + "persons?limit=50&q=" + URLEncoder.encode(prefix, StandardCharsets.UTF_8);
+        }
+        if (kind < 5) return base + "persons/" + population.youngest(rnd) + "/ancestors?depth=5";
+        return base + "kinship/path?a=" + population.youngest(rnd) + "&b=" + population.any(rnd);
+    }
+
+    private static final class Step {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+    }
+}
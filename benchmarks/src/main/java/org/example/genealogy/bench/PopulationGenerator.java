@@ -0,0 +1,147 @@
+package org.example.genealogy.bench;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+import org.example.genealogy.storage.Repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic multi-generation population: founders, marriages inside each generation,
+ * children per couple drawn around {@code fanOut}, surnames passed down the male line and
+ * patronymics from the father. The same seed and parameters always give the same tree.
+ */
+public final class PopulationGenerator {
+    private static final String[] ROOTS = {"Басанг", "Сангадж", "Очир", "Бадм", "Мандж", "Эрдн", "Убуш", "Гор",
+            "Кек", "Церен", "Дордж", "Мукаб", "Харч", "Лиджи", "Бембе", "Нимг", "Шарап", "Бурч", "Улан", "Бова"};
+    private static final String[] MIDDLES = {"", "ан", "ин", "ир", "ма", "ал", "ет", "ур", "он", "ек"};
+    private static final String[] ENDINGS = {"ов", "ев", "иев", "ин"};
+    private static final String[] MALE_NAMES = {"Николай", "Борис", "Данил", "Алдар", "Санал", "Церен", "Баатр",
+            "Мерген", "Очир", "Бембя", "Иван", "Петр", "Эрдни", "Джангар", "Саглар", "Арслан"};
+    private static final String[] FEMALE_NAMES = {"Гиляна", "Галина", "Кермен", "Байрта", "Цаган", "Нина", "Ольга",
+            "Мария", "Айса", "Булгун", "Делгир", "Ирина", "Элиста", "Саина", "Герел", "Амуланга"};
+
+    private final long seed;
+    private final double fanOut;
+    private final double marriageRate;
+    private final List<String> surnames = new ArrayList<>();
+
+    public PopulationGenerator(long seed, double fanOut, double marriageRate) {
+        this.seed = seed;
+        this.fanOut = fanOut;
+        this.marriageRate = marriageRate;
+        for (String root : ROOTS) {
+            for (String middle : MIDDLES) {
+                for (String ending : ENDINGS) surnames.add(root + middle + ending);
+            }
+        }
+    }
+
+    public List<String> surnames() {
+        return Collections.unmodifiableList(surnames);
+    }
+
+    public Population generate(Repository repo, int size) {
+        Random rnd = new Random(seed);
+        List<UUID> ids = new ArrayList<>(size);
+        List<Integer> generationStarts = new ArrayList<>();
+        List<Person> generation = new ArrayList<>();
+        int founders = Math.min(size, Math.max(10, size / 20));
+
+        generationStarts.add(0);
+        for (int i = 0; i < founders; i++) {
+            Gender g = rnd.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+            String surname = surnames.get(rnd.nextInt(surnames.size()));
+            Person p = person(rnd, surname, null, g, 1800 + rnd.nextInt(20));
+            repo.save(p);
+            ids.add(p.getId());
+            generation.add(p);
+        }
+
+        while (ids.size() < size) {
+            List<Person> men = new ArrayList<>();
+            List<Person> women = new ArrayList<>();
+            for (Person p : generation) (p.getGender() == Gender.MALE ? men : women).add(p);
+            Collections.shuffle(men, rnd);
+            Collections.shuffle(women, rnd);
+            List<Person> next = new ArrayList<>();
+            generationStarts.add(ids.size());
+            int couples = Math.min(men.size(), women.size());
+            for (int i = 0; i < couples && ids.size() < size; i++) {
+                if (rnd.nextDouble() >= marriageRate) continue;
+                Person father = men.get(i);
+                Person mother = women.get(i);
+                repo.linkSpouses(father.getId(), mother.getId());
+                int children = (int) Math.round(rnd.nextDouble() * 2 * fanOut);
+                int year = Math.max(father.getBirthDate().getYear(), mother.getBirthDate().getYear()) + 20;
+                for (int c = 0; c < children && ids.size() < size; c++) {
+                    Gender g = rnd.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+                    Person child = person(rnd, father.getLastName(), father.getFirstName(), g, year + rnd.nextInt(15));
+                    repo.save(child);
+                    repo.linkParentChild(father.getId(), child.getId());
+                    repo.linkParentChild(mother.getId(), child.getId());
+                    ids.add(child.getId());
+                    next.add(child);
+                }
+            }
+            if (next.size() < 2) {
+                int year = generation.isEmpty() ? 1800 : generation.get(0).getBirthDate().getYear() + 25;
+                for (int i = 0; i < founders && ids.size() < size; i++) {
+                    Gender g = rnd.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+                    Person p = person(rnd, surnames.get(rnd.nextInt(surnames.size())), null, g, year + rnd.nextInt(20));
+                    repo.save(p);
+                    ids.add(p.getId());
+                    next.add(p);
+                }
+            }
+            generation = next;
+        }
+        repo.compact();
+        int[] starts = new int[generationStarts.size()];
+        for (int i = 0; i < starts.length; i++) starts[i] = generationStarts.get(i);
+        return new Population(ids, starts);
+    }
+
+    private static Person person(Random rnd, String familySurname, String fatherName, Gender g, int year) {
+        boolean male = g == Gender.MALE;
+        String surname = male ? familySurname : familySurname + "а";
+        String first = male ? MALE_NAMES[rnd.nextInt(MALE_NAMES.length)] : FEMALE_NAMES[rnd.nextInt(FEMALE_NAMES.length)];
+        String middle = fatherName == null ? null : fatherName + (male ? "ович" : "овна");
+        LocalDate birth = LocalDate.of(year, 1 + rnd.nextInt(12), 1 + rnd.nextInt(28));
+        LocalDate death = year < 1930 ? birth.plusYears(40 + rnd.nextInt(50)) : null;
+        return new Person(surname, first, middle, birth, death, g);
+    }
+
+
+    public static final class Population {
+        private final List<UUID> ids;
+        private final int[] generationStarts;
+
+        Population(List<UUID> ids, int[] generationStarts) {
+            this.ids = ids;
+            this.generationStarts = generationStarts;
+        }
+
+        public List<UUID> ids() { return ids; }
+        public int size() { return ids.size(); }
+        public int generations() { return generationStarts.length; }
+
+        public UUID founder(Random rnd) {
+            return ids.get(rnd.nextInt(Math.max(1, generationStarts.length > 1 ? generationStarts[1] : ids.size())));
+        }
+
+        public UUID youngest(Random rnd) {
+            int from = generationStarts[generationStarts.length - 1];
+            return ids.get(from + rnd.nextInt(ids.size() - from));
+        }
+
+        public UUID any(Random rnd) {
+            return ids.get(rnd.nextInt(ids.size()));
+        }
+    }
+}
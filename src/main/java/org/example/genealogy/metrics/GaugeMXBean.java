@@ -0,0 +1,5 @@
+package org.example.genealogy.metrics;
+
+public interface GaugeMXBean {
+    long getValue();
+}
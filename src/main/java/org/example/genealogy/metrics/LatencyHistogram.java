@@ -0,0 +1,80 @@
+package org.example.genealogy.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram of nanosecond latencies in the style of HdrHistogram: values
+ * below 32 get exact buckets, larger ones 16 buckets per power of two (about 6%
+ * relative error), up to 2^40 ns. Recording is a few atomic increments and never locks.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int LINEAR = SUB * 2;
+    private static final int MAX_SHIFT = 40 - SUB_BITS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR + MAX_SHIFT * SUB);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long v = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Upper bound of the bucket holding the {@code q}-th quantile, 0 when empty.
+     */
+    public long percentile(double q) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) total += counts.get(i);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    static int index(long v) {
+        if (v < LINEAR) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return LINEAR + (shift - 1) * SUB + (int) ((v >>> shift) - SUB);
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR) return index;
+        int shift = (index - LINEAR) / SUB + 1;
+        long sub = (index - LINEAR) % SUB + SUB;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.genealogy.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of operation timers and gauges. Timers are looked up once into
+ * static fields by the instrumented classes; recording is off until
+ * {@link #setEnabled} turns it on, so library users pay one volatile read per call.
+ */
+public final class Metrics {
+    static volatile boolean enabled;
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentSkipListMap<>();
+    private static final String DOMAIN = "org.example.genealogy";
+
+    private Metrics() {
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * Registers or replaces a gauge; the supplier is called only when read.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    public static void reset() {
+        for (Timer t : TIMERS.values()) t.reset();
+    }
+
+    /**
+     * Registers every timer and gauge known so far with the platform MBean server, under
+     * {@code org.example.genealogy:type=Timer|Gauge,name=...}. Safe to call again after
+     * new metrics appear.
+     */
+    public static void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Timer t : TIMERS.values()) {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Timer,name=" + ObjectName.quote(t.name()));
+            if (!server.isRegistered(name)) server.registerMBean(t, name);
+        }
+        for (String g : GAUGES.keySet()) {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Gauge,name=" + ObjectName.quote(g));
+            if (!server.isRegistered(name)) server.registerMBean((GaugeMXBean) () -> GAUGES.get(g).getAsLong(), name);
+        }
+    }
+
+    /**
+     * One line per gauge, then one per timer that has been called, in name order.
+     */
+    public static void dump(Appendable out) throws IOException {
+        for (Map.Entry<String, LongSupplier> g : GAUGES.entrySet()) {
+            out.append(String.format(Locale.ROOT, "%-36s %d%n", g.getKey(), g.getValue().getAsLong()));
+        }
+        out.append(String.format(Locale.ROOT, "%-36s %10s %10s %10s %10s %10s %10s%n",
+                "операция", "вызовов", "ср. мкс", "p50", "p99", "p99.9", "max"));
+        for (Timer t : TIMERS.values()) {
+            if (t.getCount() == 0) continue;
+            out.append(String.format(Locale.ROOT, "%-36s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    t.name(), t.getCount(), t.getMeanMicros(), t.getP50Micros(), t.getP99Micros(),
+                    t.getP999Micros(), t.getMaxMicros()));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.genealogy.metrics;
+
+/**
+ * Call counter and latency histogram for one operation. Use as
+ * {@code long t = timer.start(); try { ... } finally { timer.stop(t); }}; while metrics
+ * are disabled {@code start} returns 0 without reading the clock and {@code stop}
+ * returns at once.
+ */
+public class Timer implements TimerMXBean {
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    public long start() {
+        return Metrics.enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(long start) {
+        if (start != 0) histogram.record(System.nanoTime() - start);
+    }
+
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public LatencyHistogram histogram() {
+        return histogram;
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.count();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return histogram.mean() / 1e3;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return histogram.percentile(0.50) / 1e3;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return histogram.percentile(0.99) / 1e3;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return histogram.percentile(0.999) / 1e3;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return histogram.max() / 1e3;
+    }
+
+    @Override
+    public void reset() {
+        histogram.reset();
+    }
+}
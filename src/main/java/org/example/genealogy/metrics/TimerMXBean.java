@@ -0,0 +1,17 @@
+package org.example.genealogy.metrics;
+
+public interface TimerMXBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
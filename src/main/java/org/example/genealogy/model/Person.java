@@ -15,8 +15,10 @@ public class Person {
     private LocalDate birthDate;
     private LocalDate deathDate;
     private Gender gender;
-    private Set<UUID> parentIds = new HashSet<>();
-    private Set<UUID> childIds = new HashSet<>();
+    // Created on first use, so people without relations (and flyweight subclasses that
+    // override the accessors) allocate no sets.
+    private volatile Set<UUID> parentIds;
+    private volatile Set<UUID> childIds;
     private UUID spouseId; // 0..1
 
     public Person() {
@@ -54,11 +56,28 @@ public class Person {
     public Gender getGender() { return gender; }
     public void setGender(Gender gender) { this.gender = gender; }
 
-    public Set<UUID> getParentIds() { return parentIds; }
-    public void setParentIds(Set<UUID> parentIds) { this.parentIds = parentIds; }
+    public Set<UUID> getParentIds() {
+        Set<UUID> ids = parentIds;
+        return ids != null ? ids : createIds(true);
+    }
+    public synchronized void setParentIds(Set<UUID> parentIds) { this.parentIds = parentIds; }
 
-    public Set<UUID> getChildIds() { return childIds; }
-    public void setChildIds(Set<UUID> childIds) { this.childIds = childIds; }
+    public Set<UUID> getChildIds() {
+        Set<UUID> ids = childIds;
+        return ids != null ? ids : createIds(false);
+    }
+    public synchronized void setChildIds(Set<UUID> childIds) { this.childIds = childIds; }
+
+    // Under the same lock as the setters, so a reader creating the empty set can never
+    // overwrite a set a writer has just put in place.
+    private synchronized Set<UUID> createIds(boolean parents) {
+        if (parents) {
+            if (parentIds == null) parentIds = new HashSet<>();
+            return parentIds;
+        }
+        if (childIds == null) childIds = new HashSet<>();
+        return childIds;
+    }
 
     public UUID getSpouseId() { return spouseId; }
     public void setSpouseId(UUID spouseId) { this.spouseId = spouseId; }
@@ -66,22 +85,22 @@ public class Person {
 
     public String getFullName() {
         StringBuilder sb = new StringBuilder();
-        sb.append(lastName).append(" ").append(firstName);
-        if (middleName != null) sb.append(" ").append(middleName);
+        sb.append(getLastName()).append(" ").append(getFirstName());
+        if (getMiddleName() != null) sb.append(" ").append(getMiddleName());
         return sb.toString();
     }
 
     public String getShortId() {
-        return id.toString().substring(0, 8);
+        return getId().toString().substring(0, 8);
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        sb.append(lastName).append(" ").append(firstName);
-        if (middleName != null) sb.append(" ").append(middleName);
-        if (birthDate != null) sb.append(" рожд. ").append(birthDate);
-        if (deathDate != null) sb.append(" ум. ").append(deathDate);
+        sb.append(getLastName()).append(" ").append(getFirstName());
+        if (getMiddleName() != null) sb.append(" ").append(getMiddleName());
+        if (getBirthDate() != null) sb.append(" рожд. ").append(getBirthDate());
+        if (getDeathDate() != null) sb.append(" ум. ").append(getDeathDate());
         return sb.toString();
     }
 
@@ -91,11 +110,11 @@ public class Person {
         if (this == o) return true;
         if (!(o instanceof Person)) return false;
         Person person = (Person) o;
-        return Objects.equals(id, person.id);
+        return Objects.equals(getId(), person.getId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Objects.hash(getId());
     }
 }
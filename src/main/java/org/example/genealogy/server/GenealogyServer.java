@@ -0,0 +1,447 @@
+package org.example.genealogy.server;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.genealogy.metrics.Metrics;
+import org.example.genealogy.metrics.Timer;
+import org.example.genealogy.model.Person;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.service.NameMatch;
+import org.example.genealogy.service.Relationship;
+import org.example.genealogy.storage.MutationJournal;
+import org.example.genealogy.storage.PersonTypeAdapter;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON over HTTP on top of {@link GenealogyService}, on the JDK's built-in server.
+ * Wherever a person id is expected, a unique prefix of it (the short ID) will do.
+ * Replies are rendered in full before the status line goes out, so a failure while
+ * writing one still turns into an error status. Only tree levels are streamed, with
+ * chunked encoding, one level at a time as the lazy level iterator yields them; if that
+ * fails half-way the connection is dropped without the final chunk, so the client sees
+ * a broken reply rather than a short 200. The service must be backed by a repository that tolerates concurrent callers,
+ * such as {@code ConcurrentRepository}.
+ * <pre>
+ * GET    /api/persons?after=&amp;limit=              everyone by id; the last id is the next cursor
+ * GET    /api/persons?q=&amp;offset=&amp;limit=        substring search
+ * GET    /api/persons/fuzzy?q=&amp;maxDistance=&amp;limit=
+ * GET    /api/persons/born?from=&amp;to=&amp;offset=&amp;limit=
+ * GET    /api/persons/alive?date=&amp;offset=&amp;limit=
+ * POST   /api/persons                         body: person JSON without relations
+ * GET    /api/persons/{id}
+ * PUT    /api/persons/{id}                    body: fields to change
+ * DELETE /api/persons/{id}
+ * GET    /api/persons/{id}/ancestors?depth=   also /descendants, /generation
+ * GET    /api/kinship/path?a=&amp;b=               also /related, /relationship
+ * POST   /api/links/parent-child?parent=&amp;child=  DELETE unlinks
+ * POST   /api/links/spouses?a=&amp;b=               DELETE unlinks
+ * </pre>
+ */
+public class GenealogyServer implements Closeable {
+    private static final Timer REQUEST = Metrics.timer("server.request");
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final GenealogyService service;
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final MutationJournal journal;
+    private final PersonTypeAdapter adapter = new PersonTypeAdapter();
+
+    public GenealogyServer(GenealogyService service, InetSocketAddress address, ExecutorService executor)
+            throws IOException {
+        this(service, address, executor, null);
+    }
+
+    /**
+     * With a journal, a mutation is acknowledged only once its journal entry is durable.
+     */
+    public GenealogyServer(GenealogyService service, InetSocketAddress address, ExecutorService executor,
+                           MutationJournal journal) throws IOException {
+        this.service = service;
+        this.executor = executor;
+        this.journal = journal;
+        this.http = HttpServer.create(address, 1024);
+        http.createContext("/api/", this::handle);
+        http.setExecutor(executor);
+    }
+
+    /**
+     * {@code virtual} for a virtual thread per request (Java 21+), {@code pool:N} for a
+     * fixed pool of N threads, {@code pool} for one sized to the machine.
+     */
+    public static ExecutorService executor(String spec) {
+        if ("virtual".equals(spec)) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Virtual threads need Java 21 or later", e);
+            }
+        }
+        if ("pool".equals(spec)) return Executors.newFixedThreadPool(2 * Runtime.getRuntime().availableProcessors());
+        if (spec.startsWith("pool:")) return Executors.newFixedThreadPool(Integer.parseInt(spec.substring(5)));
+        throw new IllegalArgumentException("Unknown executor: " + spec);
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        long t = REQUEST.start();
+        boolean sent = false;
+        try {
+            Reply reply;
+            try {
+                reply = route(ex);
+                if (reply.bytes == null && !reply.streamed) reply = new Reply(reply.status, render(reply.body));
+            } catch (NoSuchElementException e) {
+                reply = error(404, e.getMessage());
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                reply = error(400, e.getMessage());
+            } catch (MethodNotAllowedException e) {
+                reply = error(405, e.getMessage());
+            } catch (RuntimeException e) {
+                reply = error(500, String.valueOf(e.getMessage()));
+            }
+            send(ex, reply);
+            sent = true;
+        } finally {
+            // Left open, a failed exchange is torn down by the server when the exception
+            // reaches it; closing it here would end a chunked body as if it were whole.
+            if (sent) ex.close();
+            REQUEST.stop(t);
+        }
+    }
+
+    private Reply route(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        String[] path = ex.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Map<String, String> q = query(ex.getRequestURI().getRawQuery());
+        switch (path[0]) {
+            case "persons":
+                if (path.length == 1) {
+                    if ("POST".equals(method)) return create(ex);
+                    expect("GET", method);
+                    if (!q.containsKey("q")) {
+                        UUID after = q.containsKey("after") ? uuid(q.get("after")) : null;
+                        return persons(service.listPage(after, intParam(q, "limit", DEFAULT_LIMIT)));
+                    }
+                    return persons(service.searchByName(q.get("q"), intParam(q, "offset", 0),
+                            intParam(q, "limit", DEFAULT_LIMIT)));
+                }
+                switch (path[1]) {
+                    case "fuzzy":
+                        expect("GET", method);
+                        return matches(service.fuzzySearch(required(q, "q"), intParam(q, "maxDistance", 1),
+                                intParam(q, "limit", DEFAULT_LIMIT)));
+                    case "born":
+                        expect("GET", method);
+                        return persons(service.bornBetween(dateParam(q, "from"), dateParam(q, "to"),
+                                intParam(q, "offset", 0), intParam(q, "limit", DEFAULT_LIMIT)));
+                    case "alive":
+                        expect("GET", method);
+                        return persons(service.aliveAt(LocalDate.parse(required(q, "date")),
+                                intParam(q, "offset", 0), intParam(q, "limit", DEFAULT_LIMIT)));
+                    default:
+                        return person(ex, method, uuid(path[1]), path.length > 2 ? path[2] : null, q);
+                }
+            case "kinship":
+                expect("GET", method);
+                if (path.length < 2) break;
+                UUID a = uuid(required(q, "a"));
+                UUID b = uuid(required(q, "b"));
+                switch (path[1]) {
+                    case "path":
+                        List<Person> chain = service.shortestKinshipPath(a, b).orElseThrow(() ->
+                                new NoSuchElementException("No kinship path"));
+                        return persons(chain);
+                    case "related":
+                        boolean related = service.isRelated(a, b);
+                        return ok(out -> out.beginObject().name("related").value(related).endObject());
+                    case "relationship":
+                        Relationship r = service.relationship(a, b).orElseThrow(() ->
+                                new NoSuchElementException("Not related"));
+                        return ok(out -> {
+                            out.beginObject().name("description").value(r.getDescription());
+                            out.name("generationsFromPerson").value(r.getGenerationsFromPerson());
+                            out.name("generationsFromRelative").value(r.getGenerationsFromRelative());
+                            out.name("commonAncestors").beginArray();
+                            for (Person p : r.getCommonAncestors()) adapter.write(out, p);
+                            out.endArray().endObject();
+                        });
+                    default:
+                        break;
+                }
+                break;
+            case "links":
+                if (path.length < 2) break;
+                boolean link = "POST".equals(method);
+                if (!link) expect("DELETE", method);
+                boolean done;
+                if ("parent-child".equals(path[1])) {
+                    UUID parent = uuid(required(q, "parent"));
+                    UUID child = uuid(required(q, "child"));
+                    done = link ? service.linkParentChild(parent, child) : service.unlinkParentChild(parent, child);
+                } else if ("spouses".equals(path[1])) {
+                    UUID x = uuid(required(q, "a"));
+                    UUID y = uuid(required(q, "b"));
+                    done = link ? service.linkSpouses(x, y) : service.unlinkSpouses(x, y);
+                } else {
+                    break;
+                }
+                if (!done) throw new NoSuchElementException("Unknown person");
+                committed();
+                return ok(out -> out.beginObject().name("ok").value(true).endObject());
+            default:
+                break;
+        }
+        throw new NoSuchElementException("No such resource: " + ex.getRequestURI().getPath());
+    }
+
+    private Reply person(HttpExchange ex, String method, UUID id, String sub, Map<String, String> q)
+            throws IOException {
+        if (sub == null) {
+            switch (method) {
+                case "GET":
+                    Person p = service.getById(id).orElseThrow(() -> new NoSuchElementException("Unknown person"));
+                    return ok(out -> adapter.write(out, p));
+                case "PUT":
+                    Person edit = readPerson(ex);
+                    if (!service.editPerson(id, edit.getLastName(), edit.getFirstName(), edit.getMiddleName(),
+                            edit.getBirthDate(), edit.getDeathDate(), edit.getGender())) {
+                        throw new NoSuchElementException("Unknown person");
+                    }
+                    committed();
+                    Person edited = service.getById(id).orElseThrow();
+                    return ok(out -> adapter.write(out, edited));
+                case "DELETE":
+                    if (!service.deletePerson(id)) throw new NoSuchElementException("Unknown person");
+                    committed();
+                    return ok(out -> out.beginObject().name("ok").value(true).endObject());
+                default:
+                    throw new MethodNotAllowedException(method);
+            }
+        }
+        expect("GET", method);
+        switch (sub) {
+            case "ancestors":
+            case "descendants":
+                if (service.getById(id).isEmpty()) throw new NoSuchElementException("Unknown person");
+                int depth = intParam(q, "depth", 5);
+                Iterator<List<Person>> levels = "ancestors".equals(sub)
+                        ? service.iterateAncestorsLevels(id, depth)
+                        : service.iterateDescendantsLevels(id, depth);
+                return streamed(out -> {
+                    out.beginArray();
+                    while (levels.hasNext()) {
+                        out.beginArray();
+                        for (Person p : levels.next()) adapter.write(out, p);
+                        out.endArray();
+                        out.flush();
+                    }
+                    out.endArray();
+                });
+            case "generation":
+                int g = service.generationOf(id).orElseThrow(() -> new NoSuchElementException("Unknown person"));
+                return ok(out -> out.beginObject().name("generation").value(g).endObject());
+            default:
+                throw new NoSuchElementException("No such resource: " + sub);
+        }
+    }
+
+    private Reply create(HttpExchange ex) throws IOException {
+        Person p = readPerson(ex);
+        if (!p.getParentIds().isEmpty() || !p.getChildIds().isEmpty() || p.getSpouseId() != null) {
+            throw new IllegalArgumentException("Relations must be added through /api/links");
+        }
+        Person added = service.addPerson(p.getLastName(), p.getFirstName(), p.getMiddleName(),
+                p.getBirthDate(), p.getDeathDate(), p.getGender());
+        committed();
+        return new Reply(201, out -> adapter.write(out, added));
+    }
+
+    private void committed() throws IOException {
+        if (journal != null) journal.awaitDurable();
+    }
+
+    private Person readPerson(HttpExchange ex) throws IOException {
+        try (JsonReader in = new JsonReader(new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8))) {
+            Person p = adapter.read(in);
+            if (p == null) throw new IllegalArgumentException("Person body required");
+            return p;
+        } catch (IllegalStateException | EOFException e) {
+            throw new IllegalArgumentException("Malformed person JSON: " + e.getMessage());
+        }
+    }
+
+    private Reply persons(List<Person> list) {
+        return ok(out -> {
+            out.beginArray();
+            for (Person p : list) adapter.write(out, p);
+            out.endArray();
+        });
+    }
+
+    private Reply matches(List<NameMatch> list) {
+        return ok(out -> {
+            out.beginArray();
+            for (NameMatch m : list) {
+                out.beginObject().name("cost").value(m.getCost()).name("person");
+                adapter.write(out, m.getPerson());
+                out.endObject();
+            }
+            out.endArray();
+        });
+    }
+
+    private static void send(HttpExchange ex, Reply reply) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (reply.bytes != null) {
+            ex.sendResponseHeaders(reply.status, reply.bytes.length);
+            ex.getResponseBody().write(reply.bytes);
+            return;
+        }
+        ex.sendResponseHeaders(reply.status, 0);
+        JsonWriter out = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 8192));
+        reply.body.write(out);
+        out.flush();
+    }
+
+    private static byte[] render(Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        JsonWriter out = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+        body.write(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Reply ok(Body body) {
+        return new Reply(200, body);
+    }
+
+    /** A reply written straight to the client; see the class comment for what a failure does. */
+    private static Reply streamed(Body body) {
+        return new Reply(200, body, true);
+    }
+
+    private static Reply error(int status, String message) throws IOException {
+        return new Reply(status, render(out -> out.beginObject().name("error").value(message).endObject()));
+    }
+
+    private static void expect(String wanted, String method) {
+        if (!wanted.equals(method)) throw new MethodNotAllowedException(method);
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> params = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private static String required(Map<String, String> q, String name) {
+        String v = q.get(name);
+        if (v == null || v.isEmpty()) throw new IllegalArgumentException("Missing parameter: " + name);
+        return v;
+    }
+
+    private static int intParam(Map<String, String> q, String name, int fallback) {
+        String v = q.get(name);
+        if (v == null || v.isEmpty()) return fallback;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + name + "=" + v);
+        }
+    }
+
+    private static LocalDate dateParam(Map<String, String> q, String name) {
+        String v = q.get(name);
+        return v == null || v.isEmpty() ? null : LocalDate.parse(v);
+    }
+
+    /**
+     * A full UUID, or a unique prefix of one such as the short ID.
+     */
+    private UUID uuid(String s) {
+        if (s.length() == 36) return UUID.fromString(s);
+        return service.findByShortId(s).map(Person::getId)
+                .orElseThrow(() -> new NoSuchElementException("Unknown person: " + s));
+    }
+
+    private interface Body {
+        void write(JsonWriter out) throws IOException;
+    }
+
+    /**
+     * The path exists but not for this method; answered with 405.
+     */
+    private static final class MethodNotAllowedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MethodNotAllowedException(String method) {
+            super(method + " not allowed here");
+        }
+    }
+
+    /**
+     * A status with either a body still to write or the bytes it was rendered to.
+     */
+    private static final class Reply {
+        final int status;
+        final Body body;
+        final boolean streamed;
+        final byte[] bytes;
+
+        Reply(int status, Body body) {
+            this(status, body, false);
+        }
+
+        Reply(int status, Body body, boolean streamed) {
+            this.status = status;
+            this.body = body;
+            this.streamed = streamed;
+            this.bytes = null;
+        }
+
+        Reply(int status, byte[] bytes) {
+            this.status = status;
+            this.body = null;
+            this.streamed = false;
+            this.bytes = bytes;
+        }
+    }
+}
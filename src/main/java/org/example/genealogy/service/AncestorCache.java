@@ -0,0 +1,195 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.model.Person;
+import org.example.genealogy.storage.IntList;
+import org.example.genealogy.storage.KinshipGraph;
+import org.example.genealogy.storage.Repository;
+import org.example.genealogy.storage.RepositoryListener;
+import org.example.genealogy.storage.VisitMarks;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * LRU cache of per-person ancestor sets with their generation distance. Memory is bounded
+ * by the total number of cached (ancestor, depth) pairs. A parent/child change for child C
+ * evicts exactly the entries that contain C, i.e. C itself and its cached descendants.
+ * They are found by walking down from C; a per-ordinal count of the entries containing
+ * it skips the walk when there are none and ends it once the last one is gone. Only a
+ * walk that runs longer than the cache is big falls back to checking every entry.
+ */
+class AncestorCache implements RepositoryListener {
+
+    static final class Ancestry {
+        final int[] ordinals;
+        final int[] depths;
+
+        Ancestry(int[] ordinals, int[] depths) {
+            this.ordinals = ordinals;
+            this.depths = depths;
+        }
+
+        int depthOf(int ordinal) {
+            int i = Arrays.binarySearch(ordinals, ordinal);
+            return i < 0 ? -1 : depths[i];
+        }
+    }
+
+    private final Repository repo;
+    private final long capacity;
+    private final VisitMarks marks = new VisitMarks();
+    private final LinkedHashMap<Integer, Ancestry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    /** Number of cached entries that contain each ordinal. */
+    private int[] containing = new int[0];
+    private long cachedPairs;
+    private long hits;
+    private long misses;
+
+    AncestorCache(Repository repo, long capacity) {
+        this.repo = repo;
+        this.capacity = capacity;
+    }
+
+    synchronized Ancestry get(int ordinal) {
+        Ancestry a = entries.get(ordinal);
+        if (a != null) {
+            hits++;
+            return a;
+        }
+        misses++;
+        a = compute(ordinal);
+        entries.put(ordinal, a);
+        cachedPairs += a.ordinals.length;
+        int max = a.ordinals.length == 0 ? -1 : a.ordinals[a.ordinals.length - 1];
+        if (max >= containing.length) containing = Arrays.copyOf(containing, Math.max(max + 1, containing.length * 2));
+        for (int x : a.ordinals) containing[x]++;
+        Iterator<Map.Entry<Integer, Ancestry>> it = entries.entrySet().iterator();
+        while (cachedPairs > capacity && entries.size() > 1 && it.hasNext()) {
+            Map.Entry<Integer, Ancestry> eldest = it.next();
+            if (eldest.getKey() == ordinal) continue;
+            drop(eldest.getValue());
+            it.remove();
+        }
+        return a;
+    }
+
+    private void drop(Ancestry a) {
+        cachedPairs -= a.ordinals.length;
+        for (int x : a.ordinals) containing[x]--;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private Ancestry compute(int start) {
+        KinshipGraph graph = repo.graph();
+        marks.reset(graph.size());
+        marks.mark(start);
+        IntList order = new IntList();
+        IntList depth = new IntList();
+        order.add(start);
+        depth.add(0);
+        IntList parents = new IntList(4);
+        for (int head = 0; head < order.size(); head++) {
+            parents.clear();
+            graph.appendParents(order.get(head), parents);
+            for (int i = 0; i < parents.size(); i++) {
+                int p = parents.get(i);
+                if (repo.findByOrdinal(p) == null || !marks.mark(p)) continue;
+                order.add(p);
+                depth.add(depth.get(head) + 1);
+            }
+        }
+        long[] packed = new long[order.size()];
+        for (int i = 0; i < packed.length; i++) packed[i] = ((long) order.get(i) << 32) | depth.get(i);
+        Arrays.sort(packed);
+        int[] ords = new int[packed.length];
+        int[] depths = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            ords[i] = (int) (packed[i] >>> 32);
+            depths[i] = (int) packed[i];
+        }
+        return new Ancestry(ords, depths);
+    }
+
+
+    synchronized void invalidate(int ordinal) {
+        if (ordinal < 0 || ordinal >= containing.length || containing[ordinal] == 0) return;
+        KinshipGraph graph = repo.graph();
+        marks.reset(graph.size());
+        marks.mark(ordinal);
+        IntList queue = new IntList();
+        queue.add(ordinal);
+        IntList children = new IntList(4);
+        int budget = entries.size() + 64;
+        for (int head = 0; head < queue.size() && head < budget && containing[ordinal] > 0; head++) {
+            int v = queue.get(head);
+            Ancestry a = entries.remove(v);
+            if (a != null) drop(a);
+            children.clear();
+            graph.appendChildren(v, children);
+            for (int i = 0; i < children.size(); i++) {
+                if (marks.mark(children.get(i))) queue.add(children.get(i));
+            }
+        }
+        if (containing[ordinal] == 0) return;
+        // links already gone (a deleted person), or a walk longer than the cache is big
+        Iterator<Ancestry> it = entries.values().iterator();
+        while (it.hasNext() && containing[ordinal] > 0) {
+            Ancestry a = it.next();
+            if (a.depthOf(ordinal) >= 0) {
+                drop(a);
+                it.remove();
+            }
+        }
+    }
+
+    private void invalidate(UUID id) {
+        invalidate(repo.graph().ordinalOf(id));
+    }
+
+    /**
+     * Saving a person changes ancestries only when it linked the person to new parents
+     * or children; then those of the person and of each of its children may be stale.
+     */
+    @Override
+    public void onSave(Person p, boolean linksAdded) {
+        if (!linksAdded) return;
+        invalidate(p.getId());
+        for (UUID childId : p.getChildIds()) invalidate(childId);
+    }
+
+    @Override
+    public void onDelete(UUID id) {
+        invalidate(id);
+    }
+
+    @Override
+    public void onLinkParentChild(UUID parentId, UUID childId) {
+        invalidate(childId);
+    }
+
+    @Override
+    public void onUnlinkParentChild(UUID parentId, UUID childId) {
+        invalidate(childId);
+    }
+
+    @Override
+    public synchronized void onClear() {
+        entries.clear();
+        Arrays.fill(containing, 0);
+        cachedPairs = 0;
+    }
+}
@@ -1,32 +1,99 @@
 package org.example.genealogy.service;
 
+import org.example.genealogy.metrics.Metrics;
+import org.example.genealogy.metrics.Timer;
 import org.example.genealogy.model.Gender;
 import org.example.genealogy.model.Person;
+import org.example.genealogy.storage.FuzzyNameIndex;
+import org.example.genealogy.storage.IntList;
+import org.example.genealogy.storage.KinshipGraph;
+import org.example.genealogy.storage.Mutation;
 import org.example.genealogy.storage.Repository;
+import org.example.genealogy.storage.VisitMarks;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 public class GenealogyService {
+    private static final Timer ADD_PERSON = Metrics.timer("service.addPerson");
+    private static final Timer EDIT_PERSON = Metrics.timer("service.editPerson");
+    private static final Timer DELETE_PERSON = Metrics.timer("service.deletePerson");
+    private static final Timer LINK_PARENT_CHILD = Metrics.timer("service.linkParentChild");
+    private static final Timer UNLINK_PARENT_CHILD = Metrics.timer("service.unlinkParentChild");
+    private static final Timer LINK_SPOUSES = Metrics.timer("service.linkSpouses");
+    private static final Timer UNLINK_SPOUSES = Metrics.timer("service.unlinkSpouses");
+    private static final Timer APPLY_BATCH = Metrics.timer("service.applyBatch");
+    private static final Timer SEARCH_BY_NAME = Metrics.timer("service.searchByName");
+    private static final Timer FUZZY_SEARCH = Metrics.timer("service.fuzzySearch");
+    private static final Timer BORN_BETWEEN = Metrics.timer("service.bornBetween");
+    private static final Timer DIED_BETWEEN = Metrics.timer("service.diedBetween");
+    private static final Timer ALIVE_AT = Metrics.timer("service.aliveAt");
+    private static final Timer GET_BY_ID = Metrics.timer("service.getById");
+    private static final Timer FIND_BY_SHORT_ID = Metrics.timer("service.findByShortId");
+    private static final Timer LIST_PAGE = Metrics.timer("service.listPage");
+    private static final Timer ANCESTORS = Metrics.timer("service.buildAncestorsLevels");
+    private static final Timer DESCENDANTS = Metrics.timer("service.buildDescendantsLevels");
+    private static final Timer ANCESTORS_PARALLEL = Metrics.timer("service.buildAncestorsLevels.parallel");
+    private static final Timer DESCENDANTS_PARALLEL = Metrics.timer("service.buildDescendantsLevels.parallel");
+    private static final Timer SHORTEST_KINSHIP_PATH = Metrics.timer("service.shortestKinshipPath");
+    private static final Timer SHORTEST_KINSHIP_PATHS = Metrics.timer("service.shortestKinshipPaths");
+    private static final Timer KINSHIP_DISTANCES = Metrics.timer("service.kinshipDistances");
+    private static final Timer IS_RELATED = Metrics.timer("service.isRelated");
+    private static final Timer RELATIONSHIP = Metrics.timer("service.relationship");
+    private static final Timer COMPONENT_OF = Metrics.timer("service.componentOf");
+    private static final Timer COMPONENT_SIZE = Metrics.timer("service.componentSize");
+    private static final Timer GENERATION_OF = Metrics.timer("service.generationOf");
+    private static final Timer GENERATION = Metrics.timer("service.generation");
+
     private final Repository repo;
+    private final ThreadLocal<LevelScratch> levelScratch = ThreadLocal.withInitial(LevelScratch::new);
+    private final ThreadLocal<KinshipSearch> kinship;
+    private final RelationshipCalculator relationships;
+    private final ParallelLevels parallelLevels;
+    private final KinshipBatch kinshipBatch;
 
     public GenealogyService(Repository repo) {
+        this(repo, ForkJoinPool.commonPool());
+    }
+
+    public GenealogyService(Repository repo, ForkJoinPool pool) {
         this.repo = repo;
+        this.parallelLevels = new ParallelLevels(repo, pool, ParallelLevels.DEFAULT_THRESHOLD);
+        this.kinship = ThreadLocal.withInitial(() -> new KinshipSearch(repo));
+        this.relationships = new RelationshipCalculator(repo);
+        this.kinshipBatch = new KinshipBatch(repo, pool);
     }
 
 
     public Person addPerson(String last, String first, String middle,
                             LocalDate birth, LocalDate death, Gender gender) {
-        Person p = new Person(last, first, middle, birth, death, gender);
-        repo.save(p);
-        return p;
+        long t = ADD_PERSON.start();
+        try {
+            Person p = new Person(last, first, middle, birth, death, gender);
+            repo.save(p);
+            return p;
+        } finally {
+            ADD_PERSON.stop(t);
+        }
     }
 
     public boolean editPerson(UUID id, String last, String first, String middle,
                               LocalDate birth, LocalDate death, Gender gender) {
+        long t = EDIT_PERSON.start();
+        try {
+            return repo.write(() -> applyEdit(id, last, first, middle, birth, death, gender));
+        } finally {
+            EDIT_PERSON.stop(t);
+        }
+    }
+
+    private boolean applyEdit(UUID id, String last, String first, String middle,
+                              LocalDate birth, LocalDate death, Gender gender) {
         Optional<Person> opt = repo.findById(id);
         if (opt.isEmpty()) return false;
         Person p = opt.get();
@@ -41,17 +108,26 @@ public class GenealogyService {
     }
 
     public boolean deletePerson(UUID id) {
+        long t = DELETE_PERSON.start();
+        try {
+            return repo.write(() -> applyDelete(id));
+        } finally {
+            DELETE_PERSON.stop(t);
+        }
+    }
+
+    private boolean applyDelete(UUID id) {
         Optional<Person> opt = repo.findById(id);
         if (opt.isEmpty()) return false;
         Person p = opt.get();
-        for (UUID parentId : new HashSet<>(p.getParentIds())) {
-            repo.findById(parentId).ifPresent(parent -> parent.getChildIds().remove(p.getId()));
+        for (UUID parentId : new ArrayList<>(p.getParentIds())) {
+            repo.unlinkParentChild(parentId, id);
         }
-        for (UUID childId : new HashSet<>(p.getChildIds())) {
-            repo.findById(childId).ifPresent(child -> child.getParentIds().remove(p.getId()));
+        for (UUID childId : new ArrayList<>(p.getChildIds())) {
+            repo.unlinkParentChild(id, childId);
         }
         if (p.getSpouseId() != null) {
-            repo.findById(p.getSpouseId()).ifPresent(sp -> sp.setSpouseId(null));
+            repo.unlinkSpouses(id, p.getSpouseId());
         }
 
         repo.delete(id);
@@ -60,63 +136,164 @@ public class GenealogyService {
 
 
     public boolean linkParentChild(UUID parentId, UUID childId) {
-        Optional<Person> pOpt = repo.findById(parentId);
-        Optional<Person> cOpt = repo.findById(childId);
-        if (pOpt.isEmpty() || cOpt.isEmpty()) return false;
-        Person parent = pOpt.get();
-        Person child = cOpt.get();
-        parent.getChildIds().add(child.getId());
-        child.getParentIds().add(parent.getId());
-        return true;
+        long t = LINK_PARENT_CHILD.start();
+        try {
+            return repo.linkParentChild(parentId, childId);
+        } finally {
+            LINK_PARENT_CHILD.stop(t);
+        }
     }
 
     public boolean unlinkParentChild(UUID parentId, UUID childId) {
-        Optional<Person> pOpt = repo.findById(parentId);
-        Optional<Person> cOpt = repo.findById(childId);
-        if (pOpt.isEmpty() || cOpt.isEmpty()) return false;
-        Person parent = pOpt.get();
-        Person child = cOpt.get();
-        parent.getChildIds().remove(child.getId());
-        child.getParentIds().remove(parent.getId());
-        return true;
+        long t = UNLINK_PARENT_CHILD.start();
+        try {
+            return repo.unlinkParentChild(parentId, childId);
+        } finally {
+            UNLINK_PARENT_CHILD.stop(t);
+        }
     }
 
     public boolean linkSpouses(UUID aId, UUID bId) {
-        Optional<Person> aOpt = repo.findById(aId);
-        Optional<Person> bOpt = repo.findById(bId);
-        if (aOpt.isEmpty() || bOpt.isEmpty()) return false;
-        Person a = aOpt.get();
-        Person b = bOpt.get();
-        if (a.getSpouseId() != null || b.getSpouseId() != null) return false;
-        a.setSpouseId(b.getId());
-        b.setSpouseId(a.getId());
-        return true;
+        long t = LINK_SPOUSES.start();
+        try {
+            return repo.linkSpouses(aId, bId);
+        } finally {
+            LINK_SPOUSES.stop(t);
+        }
     }
 
     public boolean unlinkSpouses(UUID aId, UUID bId) {
-        Optional<Person> aOpt = repo.findById(aId);
-        Optional<Person> bOpt = repo.findById(bId);
-        if (aOpt.isEmpty() || bOpt.isEmpty()) return false;
-        Person a = aOpt.get();
-        Person b = bOpt.get();
-        if (!Objects.equals(a.getSpouseId(), b.getId())) return false;
-        a.setSpouseId(null);
-        b.setSpouseId(null);
-        return true;
+        long t = UNLINK_SPOUSES.start();
+        try {
+            return repo.unlinkSpouses(aId, bId);
+        } finally {
+            UNLINK_SPOUSES.stop(t);
+        }
+    }
+
+
+    /**
+     * Applies all mutations or none; see {@link Repository#applyBatch}.
+     */
+    public int applyBatch(List<Mutation> batch) {
+        long t = APPLY_BATCH.start();
+        try {
+            return repo.applyBatch(batch);
+        } finally {
+            APPLY_BATCH.stop(t);
+        }
     }
 
 
     public List<Person> searchByName(String query) {
-        String q = query.toLowerCase(Locale.ROOT);
-        return repo.findAll().stream()
-                .filter(p -> p.getFullName().toLowerCase(Locale.ROOT).contains(q))
-                .sorted(Comparator.comparing(Person::getLastName, Comparator.nullsLast(String::compareTo))
-                        .thenComparing(Person::getFirstName, Comparator.nullsLast(String::compareTo)))
-                .collect(Collectors.toList());
+        return searchByName(query, 0, Integer.MAX_VALUE);
+    }
+
+    public List<Person> searchByName(String query, int offset, int limit) {
+        long t = SEARCH_BY_NAME.start();
+        try {
+            return repo.read(() -> toPersons(repo.names().search(query, offset, limit)));
+        } finally {
+            SEARCH_BY_NAME.stop(t);
+        }
+    }
+
+    /**
+     * Name search that tolerates misspellings and transliteration: each query word may be
+     * up to {@code maxDistance} edits from a name word, or sound alike. Closest first.
+     */
+    public List<NameMatch> fuzzySearch(String query, int maxDistance, int limit) {
+        long t = FUZZY_SEARCH.start();
+        try {
+            return repo.read(() -> {
+                List<NameMatch> matches = new ArrayList<>();
+                for (FuzzyNameIndex.Hit h : repo.fuzzyNames().search(query, maxDistance, limit)) {
+                    matches.add(new NameMatch(repo.findByOrdinal(h.ordinal()), h.cost()));
+                }
+                return matches;
+            });
+        } finally {
+            FUZZY_SEARCH.stop(t);
+        }
+    }
+
+    /**
+     * People born within {@code [from, to]}, oldest first; a null bound is open.
+     */
+    public List<Person> bornBetween(LocalDate from, LocalDate to, int offset, int limit) {
+        long t = BORN_BETWEEN.start();
+        try {
+            return repo.read(() -> toPersons(repo.dates().bornBetween(from, to, offset, limit)));
+        } finally {
+            BORN_BETWEEN.stop(t);
+        }
+    }
+
+    /**
+     * People who died within {@code [from, to]}, earliest first; a null bound is open.
+     */
+    public List<Person> diedBetween(LocalDate from, LocalDate to, int offset, int limit) {
+        long t = DIED_BETWEEN.start();
+        try {
+            return repo.read(() -> toPersons(repo.dates().diedBetween(from, to, offset, limit)));
+        } finally {
+            DIED_BETWEEN.stop(t);
+        }
+    }
+
+    /**
+     * People with a known birth on or before {@code date} and no death before it, oldest
+     * first. A missing death date counts as still alive.
+     */
+    public List<Person> aliveAt(LocalDate date, int offset, int limit) {
+        long t = ALIVE_AT.start();
+        try {
+            return repo.read(() -> toPersons(repo.dates().aliveAt(date, offset, limit)));
+        } finally {
+            ALIVE_AT.stop(t);
+        }
     }
 
     public Optional<Person> getById(UUID id) {
-        return repo.findById(id);
+        long t = GET_BY_ID.start();
+        try {
+            return repo.findById(id);
+        } finally {
+            GET_BY_ID.stop(t);
+        }
+    }
+
+    /**
+     * The person whose id starts with {@code prefix}: a short ID, any longer hex prefix
+     * or the full UUID, dashes optional.
+     *
+     * @throws IllegalArgumentException if the prefix is not hex or fits more than one person
+     */
+    public Optional<Person> findByShortId(String prefix) {
+        long t = FIND_BY_SHORT_ID.start();
+        try {
+            return repo.read(() -> {
+                IntList found = repo.ids().withPrefix(prefix, 2);
+                if (found.size() > 1) throw new IllegalArgumentException("Ambiguous ID prefix: " + prefix);
+                return found.isEmpty() ? Optional.<Person>empty() : Optional.of(repo.findByOrdinal(found.get(0)));
+            });
+        } finally {
+            FIND_BY_SHORT_ID.stop(t);
+        }
+    }
+
+    /**
+     * Everyone in id order, a page at a time: up to {@code limit} people after {@code after},
+     * from the start when it is null. The last id of a page is the cursor for the next; the
+     * order is stable under inserts and deletes elsewhere.
+     */
+    public List<Person> listPage(UUID after, int limit) {
+        long t = LIST_PAGE.start();
+        try {
+            return repo.read(() -> toPersons(repo.ids().after(after, limit)));
+        } finally {
+            LIST_PAGE.stop(t);
+        }
     }
 
     public Collection<Person> getAll() {
@@ -125,92 +302,274 @@ public class GenealogyService {
 
 
     public List<List<Person>> buildAncestorsLevels(UUID personId, int maxDepth) {
-        List<List<Person>> levels = new ArrayList<>();
-        Person start = repo.findById(personId).orElse(null);
-        if (start == null) return levels;
-        Set<UUID> visited = new HashSet<>();
-        List<Person> current = Collections.singletonList(start);
-        visited.add(start.getId());
-        for (int depth = 0; depth <= maxDepth; depth++) {
-            levels.add(current);
-            List<Person> next = new ArrayList<>();
-            for (Person p : current) {
-                for (UUID pid : p.getParentIds()) {
-                    if (visited.add(pid)) {
-                        repo.findById(pid).ifPresent(next::add);
-                    }
-                }
-            }
-            current = next;
-            if (current.isEmpty()) break;
-        }
-        return levels;
+        return buildLevels(personId, maxDepth, true);
     }
 
     public List<List<Person>> buildDescendantsLevels(UUID personId, int maxDepth) {
+        return buildLevels(personId, maxDepth, false);
+    }
+
+    /**
+     * Same levels as the two-argument form; with {@code parallel} set, frontiers of a few
+     * thousand people and more are expanded on the service's fork-join pool.
+     */
+    public List<List<Person>> buildAncestorsLevels(UUID personId, int maxDepth, boolean parallel) {
+        return parallel ? buildLevelsParallel(personId, maxDepth, true) : buildLevels(personId, maxDepth, true);
+    }
+
+    public List<List<Person>> buildDescendantsLevels(UUID personId, int maxDepth, boolean parallel) {
+        return parallel ? buildLevelsParallel(personId, maxDepth, false) : buildLevels(personId, maxDepth, false);
+    }
+
+    /**
+     * Lazy form of {@link #buildAncestorsLevels}: each level is computed when the stream
+     * asks for it, so {@code limit} or an early terminal operation stops the traversal.
+     */
+    public Stream<List<Person>> streamAncestorsLevels(UUID personId, int maxDepth) {
+        return streamLevels(personId, maxDepth, true);
+    }
+
+    public Stream<List<Person>> streamDescendantsLevels(UUID personId, int maxDepth) {
+        return streamLevels(personId, maxDepth, false);
+    }
+
+    public Iterator<List<Person>> iterateAncestorsLevels(UUID personId, int maxDepth) {
+        return new LevelIterator(repo, personId, maxDepth, true);
+    }
+
+    public Iterator<List<Person>> iterateDescendantsLevels(UUID personId, int maxDepth) {
+        return new LevelIterator(repo, personId, maxDepth, false);
+    }
+
+    private Stream<List<Person>> streamLevels(UUID personId, int maxDepth, boolean ancestors) {
+        Iterator<List<Person>> it = new LevelIterator(repo, personId, maxDepth, ancestors);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private List<List<Person>> buildLevels(UUID personId, int maxDepth, boolean ancestors) {
+        Timer timer = ancestors ? ANCESTORS : DESCENDANTS;
+        long t = timer.start();
+        try {
+            return repo.optimisticRead(() -> collectLevels(personId, maxDepth, ancestors));
+        } finally {
+            timer.stop(t);
+        }
+    }
+
+    private List<List<Person>> buildLevelsParallel(UUID personId, int maxDepth, boolean ancestors) {
+        Timer timer = ancestors ? ANCESTORS_PARALLEL : DESCENDANTS_PARALLEL;
+        long t = timer.start();
+        try {
+            return repo.read(() -> {
+                List<List<Person>> levels = new ArrayList<>();
+                int start = repo.graph().ordinalOf(personId);
+                if (repo.findByOrdinal(start) == null) return levels;
+                parallelLevels.traverse(start, maxDepth, ancestors, level -> levels.add(toPersons(level)));
+                return levels;
+            });
+        } finally {
+            timer.stop(t);
+        }
+    }
+
+    private List<List<Person>> collectLevels(UUID personId, int maxDepth, boolean ancestors) {
         List<List<Person>> levels = new ArrayList<>();
-        Person start = repo.findById(personId).orElse(null);
-        if (start == null) return levels;
-        Set<UUID> visited = new HashSet<>();
-        List<Person> current = Collections.singletonList(start);
-        visited.add(start.getId());
+        KinshipGraph graph = repo.graph();
+        int start = graph.ordinalOf(personId);
+        if (repo.findByOrdinal(start) == null) return levels;
+        LevelScratch scratch = levelScratch.get();
+        VisitMarks marks = scratch.marks;
+        marks.reset(graph.size());
+        marks.mark(start);
+        IntList current = scratch.frontier;
+        IntList next = scratch.next;
+        current.clear();
+        current.add(start);
         for (int depth = 0; depth <= maxDepth; depth++) {
-            levels.add(current);
-            List<Person> next = new ArrayList<>();
-            for (Person p : current) {
-                for (UUID cid : p.getChildIds()) {
-                    if (visited.add(cid)) {
-                        repo.findById(cid).ifPresent(next::add);
-                    }
+            levels.add(toPersons(current));
+            next.clear();
+            for (int i = 0; i < current.size(); i++) {
+                int from = next.size();
+                if (ancestors) {
+                    graph.appendParents(current.get(i), next);
+                } else {
+                    graph.appendChildren(current.get(i), next);
+                }
+                int kept = from;
+                for (int j = from; j < next.size(); j++) {
+                    int v = next.get(j);
+                    if (marks.mark(v) && repo.findByOrdinal(v) != null) next.set(kept++, v);
                 }
+                next.truncate(kept);
             }
+            IntList tmp = current;
             current = next;
+            next = tmp;
             if (current.isEmpty()) break;
         }
         return levels;
     }
 
+    private List<Person> toPersons(IntList ordinals) {
+        List<Person> list = new ArrayList<>(ordinals.size());
+        for (int i = 0; i < ordinals.size(); i++) list.add(repo.findByOrdinal(ordinals.get(i)));
+        return list;
+    }
+
 
     public Optional<List<Person>> shortestKinshipPath(UUID aId, UUID bId) {
-        if (Objects.equals(aId, bId)) {
-            return getById(aId).map(Collections::singletonList);
-        }
-        Map<UUID, UUID> prev = new HashMap<>();
-        Deque<UUID> q = new ArrayDeque<>();
-        Set<UUID> visited = new HashSet<>();
-        q.add(aId);
-        visited.add(aId);
-        while (!q.isEmpty()) {
-            UUID cur = q.remove();
-            Person p = repo.findById(cur).orElse(null);
-            if (p == null) continue;
-            List<UUID> neighbors = new ArrayList<>();
-            neighbors.addAll(p.getParentIds());
-            neighbors.addAll(p.getChildIds());
-            if (p.getSpouseId() != null) neighbors.add(p.getSpouseId());
-            for (UUID nb : neighbors) {
-                if (visited.add(nb)) {
-                    prev.put(nb, cur);
-                    if (nb.equals(bId)) {
-                        // restore path
-                        LinkedList<Person> path = new LinkedList<>();
-                        UUID x = bId;
-                        while (x != null) {
-                            UUID pr = prev.get(x);
-                            Person node = repo.findById(x).orElse(null);
-                            if (node != null) path.addFirst(node);
-                            x = pr;
-                        }
-                        return Optional.of(path);
-                    }
-                    q.add(nb);
-                }
+        long t = SHORTEST_KINSHIP_PATH.start();
+        try {
+            if (Objects.equals(aId, bId)) {
+                return repo.findById(aId).map(Collections::singletonList);
             }
+            if (!related(aId, bId)) return Optional.empty();
+            return repo.optimisticRead(() -> {
+                KinshipGraph graph = repo.graph();
+                int a = graph.ordinalOf(aId);
+                int b = graph.ordinalOf(bId);
+                if (repo.findByOrdinal(a) == null || repo.findByOrdinal(b) == null) return Optional.empty();
+                return kinship.get().shortestPath(a, b);
+            });
+        } finally {
+            SHORTEST_KINSHIP_PATH.stop(t);
+        }
+    }
+
+    public Map<UUID, List<Person>> shortestKinshipPaths(UUID sourceId, Collection<UUID> targetIds) {
+        return shortestKinshipPaths(sourceId, targetIds, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Shortest kinship path from one person to each of many, from a single BFS that stops
+     * once the last reachable target is found. Keyed by target in the given order; unknown
+     * and unrelated targets, and those more than {@code maxDistance} links away, are left out.
+     */
+    public Map<UUID, List<Person>> shortestKinshipPaths(UUID sourceId, Collection<UUID> targetIds, int maxDistance) {
+        long t = SHORTEST_KINSHIP_PATHS.start();
+        try {
+            return repo.read(() -> kinshipBatch.paths(sourceId, targetIds, maxDistance));
+        } finally {
+            SHORTEST_KINSHIP_PATHS.stop(t);
+        }
+    }
+
+    public KinshipMatrix kinshipDistances(Collection<UUID> ids) {
+        return kinshipDistances(ids, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Kinship distance between every pair of the given (known) people, up to
+     * {@code maxDistance}. Runs one BFS per person against the later people of the same
+     * family, in parallel on the service's pool.
+     */
+    public KinshipMatrix kinshipDistances(Collection<UUID> ids, int maxDistance) {
+        long t = KINSHIP_DISTANCES.start();
+        try {
+            return repo.read(() -> kinshipBatch.matrix(ids, maxDistance));
+        } finally {
+            KINSHIP_DISTANCES.stop(t);
         }
-        return Optional.empty();
     }
 
     public boolean isRelated(UUID aId, UUID bId) {
-        return shortestKinshipPath(aId, bId).isPresent();
+        long t = IS_RELATED.start();
+        try {
+            return related(aId, bId);
+        } finally {
+            IS_RELATED.stop(t);
+        }
+    }
+
+    private boolean related(UUID aId, UUID bId) {
+        return repo.read(() -> {
+            KinshipGraph graph = repo.graph();
+            int a = graph.ordinalOf(aId);
+            int b = graph.ordinalOf(bId);
+            if (repo.findByOrdinal(a) == null || repo.findByOrdinal(b) == null) return false;
+            return repo.components().connected(a, b);
+        });
+    }
+
+    public Optional<Relationship> relationship(UUID aId, UUID bId) {
+        long t = RELATIONSHIP.start();
+        try {
+            return relationships.relationship(aId, bId);
+        } finally {
+            RELATIONSHIP.stop(t);
+        }
+    }
+
+    public Optional<UUID> componentOf(UUID id) {
+        long t = COMPONENT_OF.start();
+        try {
+            return repo.read(() -> {
+                int ord = repo.graph().ordinalOf(id);
+                if (repo.findByOrdinal(ord) == null) return Optional.empty();
+                return Optional.of(repo.graph().idOf(repo.components().componentOf(ord)));
+            });
+        } finally {
+            COMPONENT_OF.stop(t);
+        }
+    }
+
+    public int componentSize(UUID id) {
+        long t = COMPONENT_SIZE.start();
+        try {
+            return repo.read(() -> {
+                int ord = repo.graph().ordinalOf(id);
+                if (repo.findByOrdinal(ord) == null) return 0;
+                return repo.components().componentSize(ord);
+            });
+        } finally {
+            COMPONENT_SIZE.stop(t);
+        }
+    }
+
+    /**
+     * 0 for someone without recorded parents, otherwise one more than their latest parent.
+     */
+    public OptionalInt generationOf(UUID id) {
+        long t = GENERATION_OF.start();
+        try {
+            return repo.read(() -> {
+                int ord = repo.graph().ordinalOf(id);
+                if (repo.findByOrdinal(ord) == null) return OptionalInt.empty();
+                return OptionalInt.of(repo.graph().generationOf(ord));
+            });
+        } finally {
+            GENERATION_OF.stop(t);
+        }
+    }
+
+    /**
+     * Everyone whose {@link #generationOf} is {@code generation}, in insertion order.
+     */
+    public List<Person> generation(int generation, int offset, int limit) {
+        long t = GENERATION.start();
+        try {
+            return repo.read(() -> {
+                IntList ords = new IntList();
+                repo.graph().appendGeneration(generation, ords);
+                List<Person> page = new ArrayList<>();
+                int skip = Math.max(offset, 0);
+                for (int i = 0; i < ords.size() && page.size() < limit; i++) {
+                    Person p = repo.findByOrdinal(ords.get(i));
+                    if (p == null) continue;
+                    if (skip > 0) skip--;
+                    else page.add(p);
+                }
+                return page;
+            });
+        } finally {
+            GENERATION.stop(t);
+        }
+    }
+
+
+    private static final class LevelScratch {
+        final VisitMarks marks = new VisitMarks();
+        final IntList frontier = new IntList();
+        final IntList next = new IntList();
     }
 }
@@ -0,0 +1,302 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.model.Person;
+import org.example.genealogy.storage.ComponentIndex;
+import org.example.genealogy.storage.IntList;
+import org.example.genealogy.storage.KinshipGraph;
+import org.example.genealogy.storage.Repository;
+import org.example.genealogy.storage.VisitMarks;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Kinship distances from one person to many. A single BFS from the source answers every
+ * target and stops once the last of them is settled; targets in another component are
+ * dropped up front, so they never force a walk over the whole component. The pairwise
+ * mode walks from up to 64 members of a component at once, each node carrying a bit per
+ * source, so a level costs one pass for all of them; the batches are spread over a
+ * fork-join pool. The search buffers are sized to the graph, so only one idle set of each
+ * kind is kept between calls. Callers hold the repository's read lock; the pool workers
+ * only read.
+ */
+final class KinshipBatch {
+    private final Repository repo;
+    private final ForkJoinPool pool;
+    private final AtomicReference<Bfs> spareBfs = new AtomicReference<>();
+    private final AtomicReference<Labels> spareLabels = new AtomicReference<>();
+
+    KinshipBatch(Repository repo, ForkJoinPool pool) {
+        this.repo = repo;
+        this.pool = pool;
+    }
+
+    private static <T> T take(AtomicReference<T> spare, Supplier<T> fresh) {
+        T t = spare.getAndSet(null);
+        return t != null ? t : fresh.get();
+    }
+
+    Map<UUID, List<Person>> paths(UUID sourceId, Collection<UUID> targetIds, int maxDistance) {
+        KinshipGraph graph = repo.graph();
+        ComponentIndex components = repo.components();
+        int source = graph.ordinalOf(sourceId);
+        if (repo.findByOrdinal(source) == null) return Map.of();
+        IntList targets = new IntList(targetIds.size());
+        for (UUID id : targetIds) {
+            int t = graph.ordinalOf(id);
+            if (repo.findByOrdinal(t) != null && components.connected(source, t)) targets.add(t);
+        }
+        Bfs search = take(spareBfs, Bfs::new);
+        try {
+            search.run(source, targets, maxDistance);
+            Map<UUID, List<Person>> paths = new LinkedHashMap<>();
+            for (int i = 0; i < targets.size(); i++) {
+                int t = targets.get(i);
+                if (search.distance(t) >= 0) paths.put(graph.idOf(t), search.path(t));
+            }
+            return paths;
+        } finally {
+            spareBfs.set(search);
+        }
+    }
+
+    KinshipMatrix matrix(Collection<UUID> ids, int maxDistance) {
+        KinshipGraph graph = repo.graph();
+        ComponentIndex components = repo.components();
+        List<Person> persons = new ArrayList<>();
+        IntList ordinals = new IntList();
+        Map<Integer, IntList> groups = new LinkedHashMap<>();
+        for (UUID id : new LinkedHashSet<>(ids)) {
+            int ord = graph.ordinalOf(id);
+            Person p = repo.findByOrdinal(ord);
+            if (p == null) continue;
+            groups.computeIfAbsent(components.componentOf(ord), k -> new IntList()).add(persons.size());
+            persons.add(p);
+            ordinals.add(ord);
+        }
+        KinshipMatrix matrix = new KinshipMatrix(persons);
+        List<IntList> sourceGroup = new ArrayList<>();
+        IntList sourceAt = new IntList();
+        for (IntList members : groups.values()) {
+            for (int k = 0; k + 1 < members.size(); k += Labels.WIDTH) {
+                sourceGroup.add(members);
+                sourceAt.add(k);
+            }
+        }
+        Sources all = new Sources(sourceGroup, sourceAt, ordinals, matrix, maxDistance, 0, sourceAt.size());
+        if (sourceAt.size() < 2) all.compute();
+        else pool.invoke(all);
+        return matrix;
+    }
+
+    /**
+     * Splits the batches down to one per task; a batch is up to {@link Labels#WIDTH}
+     * consecutive members of a component, walked together against the members after the
+     * first of them, filling in their rows of the triangle.
+     */
+    @SuppressWarnings("serial")
+    private final class Sources extends RecursiveAction {
+        private final List<IntList> group;
+        private final IntList at;
+        private final IntList ordinals;
+        private final KinshipMatrix matrix;
+        private final int maxDistance;
+        private final int from;
+        private final int to;
+
+        Sources(List<IntList> group, IntList at, IntList ordinals, KinshipMatrix matrix, int maxDistance,
+                int from, int to) {
+            this.group = group;
+            this.at = at;
+            this.ordinals = ordinals;
+            this.matrix = matrix;
+            this.maxDistance = maxDistance;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Sources(group, at, ordinals, matrix, maxDistance, from, mid),
+                        new Sources(group, at, ordinals, matrix, maxDistance, mid, to));
+                return;
+            }
+            if (from == to) return;
+            IntList members = group.get(from);
+            int start = at.get(from);
+            int end = Math.min(start + Labels.WIDTH, members.size() - 1);
+            Labels search = take(spareLabels, Labels::new);
+            try {
+                search.run(members, ordinals, start, end, matrix, maxDistance);
+            } finally {
+                spareLabels.set(search);
+            }
+        }
+    }
+
+    /**
+     * BFS from up to 64 sources at once. {@code reach} holds, per node, a bit for every
+     * source that has got there; {@code current} and {@code upcoming} hold the bits that
+     * arrived on this level and the next, so each source still walks level by level and
+     * the first level a bit lands on a member is that pair's distance. Only the nodes
+     * reached are cleared afterwards.
+     */
+    private final class Labels {
+        static final int WIDTH = Long.SIZE;
+
+        private final VisitMarks wanted = new VisitMarks();
+        private final IntList touched = new IntList();
+        private final IntList neighbours = new IntList();
+        private IntList frontier = new IntList();
+        private IntList next = new IntList();
+        private long[] reach = new long[0];
+        private long[] current = new long[0];
+        private long[] upcoming = new long[0];
+        /** Member position of a wanted node. */
+        private int[] position = new int[0];
+
+        /**
+         * Fills in the distances from members {@code start} to {@code end - 1} of
+         * {@code members} to every member after them, up to {@code maxDepth} links.
+         */
+        void run(IntList members, IntList ordinals, int start, int end, KinshipMatrix matrix, int maxDepth) {
+            KinshipGraph graph = repo.graph();
+            int n = graph.size();
+            if (reach.length < n) {
+                int cap = Math.max(n, reach.length * 2);
+                reach = new long[cap];
+                current = new long[cap];
+                upcoming = new long[cap];
+                position = new int[cap];
+            }
+            wanted.reset(n);
+            for (int j = start + 1; j < members.size(); j++) {
+                int ord = ordinals.get(members.get(j));
+                wanted.mark(ord);
+                position[ord] = j;
+            }
+            long remaining = 0;
+            frontier.clear();
+            for (int k = start; k < end; k++) {
+                int ord = ordinals.get(members.get(k));
+                reach[ord] = current[ord] = 1L << (k - start);
+                touched.add(ord);
+                frontier.add(ord);
+                remaining += members.size() - 1 - k;
+            }
+            for (int depth = 0; remaining > 0 && depth < maxDepth && !frontier.isEmpty(); depth++) {
+                next.clear();
+                for (int i = 0; i < frontier.size() && remaining > 0; i++) {
+                    int v = frontier.get(i);
+                    long bits = current[v];
+                    current[v] = 0;
+                    neighbours.clear();
+                    graph.appendNeighbours(v, neighbours);
+                    for (int j = 0; j < neighbours.size(); j++) {
+                        int nb = neighbours.get(j);
+                        long add = bits & ~reach[nb];
+                        if (add == 0 || repo.findByOrdinal(nb) == null) continue;
+                        if (reach[nb] == 0) touched.add(nb);
+                        reach[nb] |= add;
+                        if (upcoming[nb] == 0) next.add(nb);
+                        upcoming[nb] |= add;
+                        if (!wanted.isMarked(nb)) continue;
+                        int target = position[nb];
+                        // Only sources before the target own the pair.
+                        long owned = target - start >= WIDTH ? add : add & ((1L << (target - start)) - 1);
+                        for (; owned != 0; owned &= owned - 1) {
+                            int k = start + Long.numberOfTrailingZeros(owned);
+                            matrix.set(members.get(k), members.get(target), depth + 1);
+                            remaining--;
+                        }
+                    }
+                }
+                IntList t = frontier;
+                frontier = next;
+                next = t;
+                long[] bits = current;
+                current = upcoming;
+                upcoming = bits;
+            }
+            for (int i = 0; i < touched.size(); i++) {
+                int v = touched.get(i);
+                reach[v] = current[v] = upcoming[v] = 0;
+            }
+            touched.clear();
+        }
+    }
+
+    /**
+     * Plain level-by-level BFS with reusable buffers.
+     */
+    private final class Bfs {
+        private final VisitMarks seen = new VisitMarks();
+        private final VisitMarks wanted = new VisitMarks();
+        private final IntList neighbours = new IntList();
+        private IntList frontier = new IntList();
+        private IntList next = new IntList();
+        private int[] prev = new int[0];
+        private int[] dist = new int[0];
+
+        /**
+         * Visits nodes up to {@code maxDepth} links from {@code source}, stopping early once
+         * every one of {@code targets} has been reached.
+         */
+        void run(int source, IntList targets, int maxDepth) {
+            KinshipGraph graph = repo.graph();
+            int n = graph.size();
+            if (prev.length < n) {
+                int cap = Math.max(n, prev.length * 2);
+                prev = new int[cap];
+                dist = new int[cap];
+            }
+            seen.reset(n);
+            wanted.reset(n);
+            seen.mark(source);
+            prev[source] = KinshipGraph.NONE;
+            dist[source] = 0;
+            int remaining = 0;
+            for (int i = 0; i < targets.size(); i++) {
+                int t = targets.get(i);
+                if (t != source && wanted.mark(t)) remaining++;
+            }
+            frontier.clear();
+            frontier.add(source);
+            for (int depth = 0; remaining > 0 && depth < maxDepth && !frontier.isEmpty(); depth++) {
+                next.clear();
+                for (int i = 0; i < frontier.size() && remaining > 0; i++) {
+                    int v = frontier.get(i);
+                    neighbours.clear();
+                    graph.appendNeighbours(v, neighbours);
+                    for (int j = 0; j < neighbours.size(); j++) {
+                        int nb = neighbours.get(j);
+                        if (repo.findByOrdinal(nb) == null || !seen.mark(nb)) continue;
+                        prev[nb] = v;
+                        dist[nb] = depth + 1;
+                        next.add(nb);
+                        if (wanted.isMarked(nb) && --remaining == 0) break;
+                    }
+                }
+                IntList t = frontier;
+                frontier = next;
+                next = t;
+            }
+        }
+
+        int distance(int node) {
+            return seen.isMarked(node) ? dist[node] : -1;
+        }
+
+        List<Person> path(int node) {
+            List<Person> path = new ArrayList<>(dist[node] + 1);
+            for (int x = node; x != KinshipGraph.NONE; x = prev[x]) path.add(repo.findByOrdinal(x));
+            Collections.reverse(path);
+            return path;
+        }
+    }
+}
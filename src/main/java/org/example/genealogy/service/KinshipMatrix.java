@@ -0,0 +1,52 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.model.Person;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kinship distances between every pair of a set of people: the number of parent, child
+ * or spouse links on a shortest path, -1 for people who are unrelated or further apart
+ * than the query allowed. Only the upper triangle is stored.
+ */
+public class KinshipMatrix {
+    private final List<Person> persons;
+    private final int[] cells;
+
+    KinshipMatrix(List<Person> persons) {
+        long n = persons.size();
+        if (n * (n - 1) / 2 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many people for a distance matrix: " + n);
+        }
+        this.persons = persons;
+        this.cells = new int[(int) (n * (n - 1) / 2)];
+        Arrays.fill(cells, -1);
+    }
+
+    public List<Person> getPersons() { return persons; }
+    public int size() { return persons.size(); }
+
+    /**
+     * Distance between the {@code i}-th and {@code j}-th person of {@link #getPersons()}.
+     */
+    public int distance(int i, int j) {
+        if (i == j) return 0;
+        return cells[cell(i, j)];
+    }
+
+    void set(int i, int j, int distance) {
+        cells[cell(i, j)] = distance;
+    }
+
+    private int cell(int i, int j) {
+        int n = persons.size();
+        if (i < 0 || j < 0 || i >= n || j >= n) throw new IndexOutOfBoundsException(i + ", " + j);
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        return (int) ((long) i * (2L * n - i - 1) / 2 + (j - i - 1));
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.model.Person;
+import org.example.genealogy.storage.IntList;
+import org.example.genealogy.storage.KinshipGraph;
+import org.example.genealogy.storage.Repository;
+import org.example.genealogy.storage.VisitMarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bidirectional BFS over the kinship graph. Always expands the smaller frontier by one
+ * full level; buffers are kept between calls, so an instance is not thread-safe.
+ */
+class KinshipSearch {
+    private final Repository repo;
+    private final Side left = new Side();
+    private final Side right = new Side();
+
+    KinshipSearch(Repository repo) {
+        this.repo = repo;
+    }
+
+    Optional<List<Person>> shortestPath(int a, int b) {
+        int meet = search(a, b);
+        if (meet == KinshipGraph.NONE) return Optional.empty();
+        List<Person> path = new ArrayList<>(left.dist[meet] + right.dist[meet] + 1);
+        for (int x = meet; x != a; x = left.prev[x]) path.add(repo.findByOrdinal(x));
+        path.add(repo.findByOrdinal(a));
+        Collections.reverse(path);
+        for (int x = meet; x != b; ) {
+            x = right.prev[x];
+            path.add(repo.findByOrdinal(x));
+        }
+        return Optional.of(path);
+    }
+
+    private int search(int a, int b) {
+        KinshipGraph graph = repo.graph();
+        int n = graph.size();
+        left.reset(n, a);
+        right.reset(n, b);
+        if (a == b) return a;
+        while (!left.frontier.isEmpty() && !right.frontier.isEmpty()) {
+            int meet = left.frontier.size() <= right.frontier.size()
+                    ? expand(graph, left, right)
+                    : expand(graph, right, left);
+            if (meet != KinshipGraph.NONE) return meet;
+        }
+        return KinshipGraph.NONE;
+    }
+
+    private int expand(KinshipGraph graph, Side self, Side other) {
+        IntList frontier = self.frontier;
+        IntList next = self.next;
+        next.clear();
+        int best = KinshipGraph.NONE;
+        int bestLen = Integer.MAX_VALUE;
+        for (int i = 0; i < frontier.size(); i++) {
+            int v = frontier.get(i);
+            int from = next.size();
+            graph.appendNeighbours(v, next);
+            int kept = from;
+            for (int j = from; j < next.size(); j++) {
+                int nb = next.get(j);
+                if (repo.findByOrdinal(nb) == null || !self.marks.mark(nb)) continue;
+                self.prev[nb] = v;
+                self.dist[nb] = self.dist[v] + 1;
+                if (other.marks.isMarked(nb)) {
+                    int len = self.dist[nb] + other.dist[nb];
+                    if (len < bestLen) {
+                        bestLen = len;
+                        best = nb;
+                    }
+                }
+                next.set(kept++, nb);
+            }
+            next.truncate(kept);
+        }
+        self.frontier = next;
+        self.next = frontier;
+        return best;
+    }
+
+
+    private static final class Side {
+        final VisitMarks marks = new VisitMarks();
+        int[] prev = new int[0];
+        int[] dist = new int[0];
+        IntList frontier = new IntList();
+        IntList next = new IntList();
+
+        void reset(int n, int start) {
+            if (prev.length < n) {
+                int cap = Math.max(n, prev.length * 2);
+                prev = new int[cap];
+                dist = new int[cap];
+            }
+            marks.reset(n);
+            marks.mark(start);
+            dist[start] = 0;
+            frontier.clear();
+            frontier.add(start);
+        }
+    }
+}
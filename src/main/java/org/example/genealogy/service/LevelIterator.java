@@ -0,0 +1,97 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.metrics.Metrics;
+import org.example.genealogy.metrics.Timer;
+import org.example.genealogy.model.Person;
+import org.example.genealogy.storage.IntList;
+import org.example.genealogy.storage.KinshipGraph;
+import org.example.genealogy.storage.Repository;
+import org.example.genealogy.storage.VisitMarks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Ancestor or descendant levels computed one at a time: {@link #next} returns the
+ * current level and expands the following one under a short read, so a consumer that
+ * stops early never pays for the deeper levels. The iterator keeps its own visited
+ * marks between calls; people deleted in between are skipped.
+ */
+final class LevelIterator implements Iterator<List<Person>> {
+    private static final Timer NEXT = Metrics.timer("service.levelIterator.next");
+
+    private final Repository repo;
+    private final int maxDepth;
+    private final boolean ancestors;
+    private final VisitMarks marks = new VisitMarks();
+    private IntList current = new IntList();
+    private IntList next = new IntList();
+    private int depth;
+
+    LevelIterator(Repository repo, UUID personId, int maxDepth, boolean ancestors) {
+        this.repo = repo;
+        this.maxDepth = maxDepth;
+        this.ancestors = ancestors;
+        repo.read(() -> {
+            int start = repo.graph().ordinalOf(personId);
+            if (maxDepth >= 0 && repo.findByOrdinal(start) != null) {
+                marks.reset(repo.graph().size());
+                marks.mark(start);
+                current.add(start);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !current.isEmpty();
+    }
+
+    @Override
+    public List<Person> next() {
+        if (current.isEmpty()) throw new NoSuchElementException();
+        long t = NEXT.start();
+        try {
+            return repo.read(() -> {
+                List<Person> level = new ArrayList<>(current.size());
+                for (int i = 0; i < current.size(); i++) {
+                    Person p = repo.findByOrdinal(current.get(i));
+                    if (p != null) level.add(p);
+                }
+                advance();
+                return level;
+            });
+        } finally {
+            NEXT.stop(t);
+        }
+    }
+
+    private void advance() {
+        next.clear();
+        if (depth++ < maxDepth) {
+            KinshipGraph graph = repo.graph();
+            marks.grow(graph.size());
+            for (int i = 0; i < current.size(); i++) {
+                int from = next.size();
+                if (ancestors) {
+                    graph.appendParents(current.get(i), next);
+                } else {
+                    graph.appendChildren(current.get(i), next);
+                }
+                int kept = from;
+                for (int j = from; j < next.size(); j++) {
+                    int v = next.get(j);
+                    if (marks.mark(v) && repo.findByOrdinal(v) != null) next.set(kept++, v);
+                }
+                next.truncate(kept);
+            }
+        }
+        IntList tmp = current;
+        current = next;
+        next = tmp;
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.model.Person;
+
+/**
+ * One fuzzy search hit; a lower cost is a closer match, 0 an exact one.
+ */
+public class NameMatch {
+    private final Person person;
+    private final int cost;
+
+    NameMatch(Person person, int cost) {
+        this.person = person;
+        this.cost = cost;
+    }
+
+    public Person getPerson() { return person; }
+    public int getCost() { return cost; }
+
+    @Override
+    public String toString() {
+        return person + " [" + cost + "]";
+    }
+}
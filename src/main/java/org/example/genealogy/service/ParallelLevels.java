@@ -0,0 +1,157 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.storage.ConcurrentBitSet;
+import org.example.genealogy.storage.IntList;
+import org.example.genealogy.storage.KinshipGraph;
+import org.example.genealogy.storage.Repository;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Level-synchronous BFS over parent or child edges that expands large frontiers on a
+ * fork-join pool. A node reached from several frontier members is kept by the first of
+ * them (the lowest frontier index wins a CAS race), so every level comes out in exactly
+ * the order the sequential traversal produces. Frontiers below the threshold are
+ * expanded on the calling thread.
+ */
+final class ParallelLevels {
+    static final int DEFAULT_THRESHOLD = 2048;
+    private static final int CHUNK = 512;
+
+    private final Repository repo;
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    ParallelLevels(Repository repo, ForkJoinPool pool, int threshold) {
+        this.repo = repo;
+        this.pool = pool;
+        this.threshold = Math.max(threshold, CHUNK);
+    }
+
+    /**
+     * Calls {@code level} with each level from the start node down to {@code maxDepth}.
+     */
+    void traverse(int start, int maxDepth, boolean ancestors, Consumer<IntList> level) {
+        if (maxDepth < 0) return;
+        KinshipGraph graph = repo.graph();
+        ConcurrentBitSet visited = new ConcurrentBitSet(graph.size());
+        AtomicIntegerArray owner = null;
+        visited.set(start);
+        IntList current = new IntList();
+        current.add(start);
+        for (int depth = 0; ; depth++) {
+            level.accept(current);
+            if (depth == maxDepth) break;
+            IntList next;
+            if (current.size() < threshold) {
+                next = expandSequential(graph, current, visited, ancestors);
+            } else {
+                if (owner == null) owner = new AtomicIntegerArray(graph.size());
+                next = expandParallel(graph, current, visited, owner, ancestors);
+            }
+            if (next.isEmpty()) break;
+            current = next;
+        }
+    }
+
+    private IntList expandSequential(KinshipGraph graph, IntList frontier, ConcurrentBitSet visited, boolean ancestors) {
+        IntList next = new IntList();
+        for (int i = 0; i < frontier.size(); i++) {
+            int from = next.size();
+            append(graph, frontier.get(i), ancestors, next);
+            int kept = from;
+            for (int j = from; j < next.size(); j++) {
+                int v = next.get(j);
+                if (visited.set(v) && repo.findByOrdinal(v) != null) next.set(kept++, v);
+            }
+            next.truncate(kept);
+        }
+        return next;
+    }
+
+    /**
+     * Two passes over the frontier: the first records, for every unvisited neighbour, the
+     * lowest frontier index that reaches it ({@code owner} holds {@code MAX_VALUE - index}
+     * so the untouched zero loses every comparison); the second keeps each neighbour only
+     * in its owner's chunk. Chunks are concatenated in frontier order.
+     */
+    private IntList expandParallel(KinshipGraph graph, IntList frontier, ConcurrentBitSet visited,
+                                   AtomicIntegerArray owner, boolean ancestors) {
+        int n = frontier.size();
+        int chunks = (n + CHUNK - 1) / CHUNK;
+        pool.invoke(new Chunks(0, chunks, c -> {
+            IntList buf = new IntList();
+            for (int i = c * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                buf.clear();
+                append(graph, frontier.get(i), ancestors, buf);
+                int claim = Integer.MAX_VALUE - i;
+                for (int j = 0; j < buf.size(); j++) {
+                    int v = buf.get(j);
+                    if (visited.get(v) || repo.findByOrdinal(v) == null) continue;
+                    int cur;
+                    while ((cur = owner.get(v)) < claim && !owner.compareAndSet(v, cur, claim)) {
+                        // lost a race to another frontier member, compare again
+                    }
+                }
+            }
+        }));
+        IntList[] parts = new IntList[chunks];
+        pool.invoke(new Chunks(0, chunks, c -> {
+            IntList part = new IntList();
+            for (int i = c * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                int from = part.size();
+                append(graph, frontier.get(i), ancestors, part);
+                int claim = Integer.MAX_VALUE - i;
+                int kept = from;
+                for (int j = from; j < part.size(); j++) {
+                    int v = part.get(j);
+                    if (!visited.get(v) && owner.get(v) == claim) part.set(kept++, v);
+                }
+                part.truncate(kept);
+            }
+            parts[c] = part;
+        }));
+        IntList next = new IntList();
+        for (IntList part : parts) {
+            for (int j = 0; j < part.size(); j++) visited.set(part.get(j));
+            next.addAll(part);
+        }
+        return next;
+    }
+
+    private static void append(KinshipGraph graph, int ord, boolean ancestors, IntList out) {
+        if (ancestors) {
+            graph.appendParents(ord, out);
+        } else {
+            graph.appendChildren(ord, out);
+        }
+    }
+
+
+    @SuppressWarnings("serial")
+    private static final class Chunks extends RecursiveAction {
+        private final int lo;
+        private final int hi;
+        private final IntConsumer body;
+
+        Chunks(int lo, int hi, IntConsumer body) {
+            this.lo = lo;
+            this.hi = hi;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                body.accept(lo);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Chunks(lo, mid, body), new Chunks(mid, hi, body));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+
+import java.util.List;
+
+/**
+ * How {@code relative} is related to {@code person}: the closest common ancestors and the
+ * number of generations from each of them up to those ancestors.
+ */
+public class Relationship {
+    private final Person person;
+    private final Person relative;
+    private final List<Person> commonAncestors;
+    private final int generationsFromPerson;
+    private final int generationsFromRelative;
+    private final String description;
+
+    Relationship(Person person, Person relative, List<Person> commonAncestors,
+                 int generationsFromPerson, int generationsFromRelative, String description) {
+        this.person = person;
+        this.relative = relative;
+        this.commonAncestors = commonAncestors;
+        this.generationsFromPerson = generationsFromPerson;
+        this.generationsFromRelative = generationsFromRelative;
+        this.description = description;
+    }
+
+    public Person getPerson() { return person; }
+    public Person getRelative() { return relative; }
+    public List<Person> getCommonAncestors() { return commonAncestors; }
+    public int getGenerationsFromPerson() { return generationsFromPerson; }
+    public int getGenerationsFromRelative() { return generationsFromRelative; }
+    public String getDescription() { return description; }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+
+    static String describe(int up, int down, Gender gender, List<Person> common) {
+        boolean female = gender == Gender.FEMALE;
+        if (up == 0 && down == 0) return "тот же человек";
+        if (up == 0) return greatPrefix(down - 2) + (down == 1 ? pick(female, "сын", "дочь") : pick(female, "внук", "внучка"));
+        if (down == 0) return greatPrefix(up - 2) + (up == 1 ? pick(female, "отец", "мать") : pick(female, "дедушка", "бабушка"));
+        int degree = Math.min(up, down) - 1;
+        int removed = Math.abs(up - down);
+        if (removed == 0) {
+            if (degree == 0 && common.size() == 1 && common.get(0).getGender() != null) {
+                return common.get(0).getGender() == Gender.MALE
+                        ? pick(female, "единокровный брат", "единокровная сестра")
+                        : pick(female, "единоутробный брат", "единоутробная сестра");
+            }
+            return cousinPrefix(degree, female) + pick(female, "брат", "сестра");
+        }
+        if (up > down) {
+            if (removed == 1) return cousinPrefix(degree, female) + pick(female, "дядя", "тётя");
+            return cousinPrefix(degree + 1, female) + greatPrefix(removed - 2) + pick(female, "дедушка", "бабушка");
+        }
+        if (removed == 1) return cousinPrefix(degree, female) + pick(female, "племянник", "племянница");
+        return cousinPrefix(degree, female) + greatPrefix(removed - 2)
+                + pick(female, "внучатый племянник", "внучатая племянница");
+    }
+
+    private static String cousinPrefix(int degree, boolean female) {
+        String ending = female ? "ая " : "ый ";
+        switch (degree) {
+            case 0:
+                return "";
+            case 1:
+                return "двоюродн" + ending;
+            case 2:
+                return "троюродн" + ending;
+            case 3:
+                return "четвероюродн" + ending;
+            default:
+                return (degree + 1) + "-юродн" + ending;
+        }
+    }
+
+    private static String greatPrefix(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) sb.append("пра");
+        return sb.toString();
+    }
+
+    private static String pick(boolean female, String male, String fem) {
+        return female ? fem : male;
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.genealogy.service;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+import org.example.genealogy.storage.KinshipGraph;
+import org.example.genealogy.storage.Repository;
+import org.example.genealogy.storage.RepositoryListener;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Names blood relationships from the lowest common ancestors of two people. Ancestor
+ * sets come from an {@link AncestorCache} that the repository keeps up to date. The
+ * repository only holds the cache weakly, so a calculator (and the service owning it)
+ * that is dropped while the repository lives on takes its listener with it.
+ */
+public class RelationshipCalculator {
+    public static final long DEFAULT_CAPACITY = 2_000_000;
+
+    private final Repository repo;
+    private final AncestorCache cache;
+
+    public RelationshipCalculator(Repository repo) {
+        this(repo, DEFAULT_CAPACITY);
+    }
+
+    public RelationshipCalculator(Repository repo, long maxCachedAncestors) {
+        this.repo = repo;
+        this.cache = new AncestorCache(repo, maxCachedAncestors);
+        repo.addListener(new CacheListener(repo, cache));
+    }
+
+    public Optional<Relationship> relationship(UUID aId, UUID bId) {
+        return repo.read(() -> {
+            KinshipGraph graph = repo.graph();
+            int a = graph.ordinalOf(aId);
+            int b = graph.ordinalOf(bId);
+            Person pa = repo.findByOrdinal(a);
+            Person pb = repo.findByOrdinal(b);
+            if (pa == null || pb == null) return Optional.empty();
+            return Optional.ofNullable(compute(a, b, pa, pb));
+        });
+    }
+
+    public long cacheHits() {
+        return cache.hits();
+    }
+
+    public long cacheMisses() {
+        return cache.misses();
+    }
+
+    private Relationship compute(int a, int b, Person pa, Person pb) {
+        AncestorCache.Ancestry ancA = cache.get(a);
+        AncestorCache.Ancestry ancB = cache.get(b);
+        int best = Integer.MAX_VALUE;
+        int up = 0;
+        int down = 0;
+        List<Person> common = new ArrayList<>();
+        for (int i = 0, j = 0; i < ancA.ordinals.length && j < ancB.ordinals.length; ) {
+            int x = ancA.ordinals[i];
+            int y = ancB.ordinals[j];
+            if (x < y) {
+                i++;
+            } else if (x > y) {
+                j++;
+            } else {
+                int da = ancA.depths[i];
+                int db = ancB.depths[j];
+                if (da + db < best) {
+                    best = da + db;
+                    up = da;
+                    down = db;
+                    common.clear();
+                }
+                if (da == up && db == down) common.add(repo.findByOrdinal(x));
+                i++;
+                j++;
+            }
+        }
+        if (best == Integer.MAX_VALUE) {
+            if (repo.graph().spouseOf(a) == b) {
+                String name = pb.getGender() == Gender.FEMALE ? "жена" : pb.getGender() == Gender.MALE ? "муж" : "супруг(а)";
+                return new Relationship(pa, pb, List.of(), 0, 0, name);
+            }
+            return null;
+        }
+        return new Relationship(pa, pb, common, up, down, Relationship.describe(up, down, pb.getGender(), common));
+    }
+
+    /**
+     * Forwards to the cache while it is reachable and unregisters itself on the first
+     * event after it was collected.
+     */
+    private static final class CacheListener implements RepositoryListener {
+        private final Repository repo;
+        private final WeakReference<AncestorCache> cache;
+
+        CacheListener(Repository repo, AncestorCache cache) {
+            this.repo = repo;
+            this.cache = new WeakReference<>(cache);
+        }
+
+        private AncestorCache cache() {
+            AncestorCache c = cache.get();
+            if (c == null) repo.removeListener(this);
+            return c;
+        }
+
+        @Override
+        public void onSave(Person p, boolean linksAdded) {
+            AncestorCache c = cache();
+            if (c != null) c.onSave(p, linksAdded);
+        }
+
+        @Override
+        public void onDelete(UUID id) {
+            AncestorCache c = cache();
+            if (c != null) c.onDelete(id);
+        }
+
+        @Override
+        public void onLinkParentChild(UUID parentId, UUID childId) {
+            AncestorCache c = cache();
+            if (c != null) c.onLinkParentChild(parentId, childId);
+        }
+
+        @Override
+        public void onUnlinkParentChild(UUID parentId, UUID childId) {
+            AncestorCache c = cache();
+            if (c != null) c.onUnlinkParentChild(parentId, childId);
+        }
+
+        @Override
+        public void onClear() {
+            AncestorCache c = cache();
+            if (c != null) c.onClear();
+        }
+    }
+}
@@ -1,18 +1,53 @@
 package org.example.genealogy.service;
 
 import org.example.genealogy.model.Person;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 
 public class TreePrinter {
 
     public static void printLevels(List<List<Person>> levels, String title) {
-        System.out.println("\n=== " + title + " ===");
-        for (int i = 0; i < levels.size(); i++) {
-            System.out.println("Уровень " + i + ":");
-            for (Person p : levels.get(i)) {
-                System.out.println("  - " + p);
+        printLevels(levels.iterator(), title);
+    }
+
+    public static void printLevels(Stream<List<Person>> levels, String title) {
+        printLevels(levels.iterator(), title);
+    }
+
+    /**
+     * Prints levels as they are pulled from the iterator, flushing after each one so the
+     * first lines show up before deeper levels are computed. System.out is left open.
+     */
+    public static void printLevels(Iterator<List<Person>> levels, String title) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16);
+        printLevels(levels, title, out);
+    }
+
+    public static void printLevels(Iterator<List<Person>> levels, String title, Writer out) {
+        try {
+            out.write("\n=== " + title + " ===\n");
+            for (int i = 0; levels.hasNext(); i++) {
+                List<Person> level = levels.next();
+                out.write("Уровень " + i + ":\n");
+                for (Person p : level) {
+                    out.write("  - ");
+                    out.write(String.valueOf(p));
+                    out.write('\n');
+                }
+                out.flush();
             }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
@@ -0,0 +1,213 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.metrics.Metrics;
+import org.example.genealogy.metrics.Timer;
+import org.example.genealogy.model.Person;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves the repository to JSON on a background thread. A save takes a snapshot under the
+ * read lock: a shallow copy of every person that shares its parent and child sets, which
+ * the repository replaces rather than edits, so writers are held back only for the copy
+ * and serialisation runs unlocked. Nothing is kept between saves. Files are written to
+ * {@code <name>.tmp}, forced, then renamed over the target.
+ * <p>
+ * Automatic saves go to {@code target} every {@code periodMillis} when anything changed,
+ * and as soon as {@code dirtyThreshold} changes have piled up. They snapshot on the
+ * worker thread, so they need a repository that is safe to read concurrently, such as
+ * {@link ConcurrentRepository}.
+ */
+public class Autosaver implements RepositoryListener, Closeable {
+    private static final Timer WRITE = Metrics.timer("autosave.write");
+
+    private final Repository repo;
+    private final JsonStorage storage;
+    private final Path target;
+    private final long dirtyThreshold;
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "autosave");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong dirty = new AtomicLong();
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private volatile long saves;
+    private volatile IOException lastError;
+
+    /**
+     * Manual saves only, via {@link #saveAsync(Path)}.
+     */
+    public Autosaver(Repository repo, JsonStorage storage) {
+        this(repo, storage, null, 0, 0);
+    }
+
+    public Autosaver(Repository repo, JsonStorage storage, Path target, long periodMillis, long dirtyThreshold) {
+        this.repo = repo;
+        this.storage = storage;
+        this.target = target;
+        this.dirtyThreshold = dirtyThreshold;
+        repo.addListener(this);
+        if (target != null && periodMillis > 0) {
+            worker.scheduleWithFixedDelay(() -> {
+                if (dirty.get() > 0) autosave();
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Snapshots the repository on the calling thread and writes the snapshot to
+     * {@code path} in the background; completes with the number of people written.
+     */
+    public CompletableFuture<Integer> saveAsync(Path path) {
+        List<Person> people = snapshot();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return write(people, path);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, worker);
+    }
+
+    /**
+     * Changes not yet folded into a save.
+     */
+    public long dirty() {
+        return dirty.get();
+    }
+
+    public long saves() {
+        return saves;
+    }
+
+    /**
+     * The failure of the latest automatic save, or null if it succeeded.
+     */
+    public IOException lastError() {
+        return lastError;
+    }
+
+    private void autosave() {
+        queued.set(false);
+        try {
+            write(snapshot(), target);
+            lastError = null;
+        } catch (IOException e) {
+            lastError = e;
+        }
+    }
+
+    private List<Person> snapshot() {
+        return repo.read(() -> {
+            dirty.set(0);
+            List<Person> people = new ArrayList<>(repo.size());
+            for (Person p : repo.findAll()) people.add(frozen(p));
+            return people;
+        });
+    }
+
+    private int write(List<Person> people, Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long t = WRITE.start();
+        try {
+            storage.save(tmp.toString(), people);
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            WRITE.stop(t);
+        }
+        saves++;
+        return people.size();
+    }
+
+    private void changed(int n) {
+        long d = dirty.addAndGet(n);
+        if (target != null && dirtyThreshold > 0 && d >= dirtyThreshold && queued.compareAndSet(false, true)) {
+            worker.execute(this::autosave);
+        }
+    }
+
+    private static Person frozen(Person p) {
+        Person c = new Person();
+        c.setId(p.getId());
+        c.setLastName(p.getLastName());
+        c.setFirstName(p.getFirstName());
+        c.setMiddleName(p.getMiddleName());
+        c.setBirthDate(p.getBirthDate());
+        c.setDeathDate(p.getDeathDate());
+        c.setGender(p.getGender());
+        c.setParentIds(p.getParentIds());
+        c.setChildIds(p.getChildIds());
+        c.setSpouseId(p.getSpouseId());
+        return c;
+    }
+
+    @Override
+    public void onSave(Person p) {
+        changed(1);
+    }
+
+    @Override
+    public void onDelete(UUID id) {
+        changed(1);
+    }
+
+    @Override
+    public void onLinkParentChild(UUID parentId, UUID childId) {
+        changed(2);
+    }
+
+    @Override
+    public void onUnlinkParentChild(UUID parentId, UUID childId) {
+        changed(2);
+    }
+
+    @Override
+    public void onLinkSpouses(UUID aId, UUID bId) {
+        changed(2);
+    }
+
+    @Override
+    public void onUnlinkSpouses(UUID aId, UUID bId) {
+        changed(2);
+    }
+
+    @Override
+    public void onClear() {
+        changed(1);
+    }
+
+    /**
+     * Stops listening, writes pending changes to the target if there is one, and waits
+     * for the worker to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        repo.removeListener(this);
+        Future<?> last = target != null && dirty.get() > 0 ? saveAsync(target) : null;
+        worker.shutdown();
+        try {
+            if (last != null) last.get();
+            worker.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Versioned binary snapshot: a header, a deduplicated UTF-8 string table, fixed-width
+ * person records sorted by UUID and two int edge arrays (parents, children) holding
+ * record indexes. Edges to people that are not part of the snapshot are dropped.
+ *
+ * <pre>
+ * header   magic, version, persons, strings, stringsOffset, recordsOffset, edgesOffset
+ * strings  int[strings + 1] byte offsets, then UTF-8 bytes
+ * records  msb, lsb, last, first, middle, birth, death, gender, spouse,
+ *          parentStart, parentCount, childStart, childCount, pad  (64 bytes each)
+ * edges    parentEdges, childEdges, int[parentEdges], int[childEdges]
+ * </pre>
+ */
+public class BinarySnapshotStorage {
+    static final int MAGIC = 0x47454E53; // "GENS"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 64;
+    static final int NO_DATE = Integer.MIN_VALUE;
+    static final int NONE = -1;
+
+    static final Comparator<UUID> UNSIGNED_ORDER = (a, b) -> {
+        int c = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return c != 0 ? c : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    /**
+     * People in {@link #UNSIGNED_ORDER} with their positions, so a snapshot can be written
+     * without a sorted copy of everyone. The writer iterates twice: strings, then records.
+     */
+    interface Source extends Iterable<Person> {
+        int size();
+
+        /**
+         * Position of the person with this id, or {@link #NONE} if they are not included.
+         */
+        int indexOf(UUID id);
+    }
+
+    public void save(String path, Collection<Person> persons) throws IOException {
+        List<Person> sorted = new ArrayList<>(persons);
+        sorted.sort(Comparator.comparing(Person::getId, UNSIGNED_ORDER));
+        Map<UUID, Integer> index = new HashMap<>(sorted.size() * 2);
+        for (int i = 0; i < sorted.size(); i++) index.put(sorted.get(i).getId(), i);
+        write(path, new Source() {
+            @Override
+            public int size() {
+                return sorted.size();
+            }
+
+            @Override
+            public int indexOf(UUID id) {
+                return index.getOrDefault(id, NONE);
+            }
+
+            @Override
+            public Iterator<Person> iterator() {
+                return sorted.iterator();
+            }
+        });
+    }
+
+    void write(String path, Source people) throws IOException {
+        int size = people.size();
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        for (Person p : people) {
+            intern(p.getLastName(), dictionary, strings);
+            intern(p.getFirstName(), dictionary, strings);
+            intern(p.getMiddleName(), dictionary, strings);
+        }
+
+        long stringBytes = 0;
+        for (byte[] b : strings) stringBytes += b.length;
+        long stringsOffset = HEADER_SIZE;
+        long recordsOffset = align(stringsOffset + 4L * (strings.size() + 1) + stringBytes);
+        long edgesOffset = recordsOffset + (long) RECORD_SIZE * size;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(Paths.get(path)), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(strings.size());
+            out.writeLong(stringsOffset);
+            out.writeLong(recordsOffset);
+            out.writeLong(edgesOffset);
+            pad(out, HEADER_SIZE - 40);
+
+            int offset = 0;
+            for (byte[] b : strings) {
+                out.writeInt(offset);
+                offset += b.length;
+            }
+            out.writeInt(offset);
+            for (byte[] b : strings) out.write(b);
+            pad(out, (int) (recordsOffset - stringsOffset - 4L * (strings.size() + 1) - stringBytes));
+
+            IntList parentEdges = new IntList(Math.max(16, size));
+            IntList childEdges = new IntList(Math.max(16, size));
+            int written = 0;
+            for (Person p : people) {
+                int parentStart = parentEdges.size();
+                for (UUID id : p.getParentIds()) {
+                    int j = people.indexOf(id);
+                    if (j != NONE) parentEdges.add(j);
+                }
+                int childStart = childEdges.size();
+                for (UUID id : p.getChildIds()) {
+                    int j = people.indexOf(id);
+                    if (j != NONE) childEdges.add(j);
+                }
+                int spouse = p.getSpouseId() == null ? NONE : people.indexOf(p.getSpouseId());
+
+                out.writeLong(p.getId().getMostSignificantBits());
+                out.writeLong(p.getId().getLeastSignificantBits());
+                out.writeInt(code(p.getLastName(), dictionary));
+                out.writeInt(code(p.getFirstName(), dictionary));
+                out.writeInt(code(p.getMiddleName(), dictionary));
+                out.writeInt(epochDay(p.getBirthDate()));
+                out.writeInt(epochDay(p.getDeathDate()));
+                out.writeInt(p.getGender() == null ? NONE : p.getGender().ordinal());
+                out.writeInt(spouse);
+                out.writeInt(parentStart);
+                out.writeInt(parentEdges.size() - parentStart);
+                out.writeInt(childStart);
+                out.writeInt(childEdges.size() - childStart);
+                out.writeInt(0);
+                written++;
+            }
+            if (written != size) throw new IOException("Snapshot source yielded " + written + " of " + size + " people");
+
+            out.writeInt(parentEdges.size());
+            out.writeInt(childEdges.size());
+            for (int i = 0; i < parentEdges.size(); i++) out.writeInt(parentEdges.get(i));
+            for (int i = 0; i < childEdges.size(); i++) out.writeInt(childEdges.get(i));
+        }
+    }
+
+    public MappedSnapshot open(String path) throws IOException {
+        return new MappedSnapshot(Paths.get(path));
+    }
+
+    public List<Person> load(String path) throws IOException {
+        try (MappedSnapshot snapshot = open(path)) {
+            List<Person> list = new ArrayList<>(snapshot.size());
+            for (Person p : snapshot) list.add(p);
+            return list;
+        }
+    }
+
+    public int loadInto(String path, Repository repo) throws IOException {
+        try (MappedSnapshot snapshot = open(path)) {
+            for (Person p : snapshot) repo.saveSkippingCycles(p);
+            repo.compact();
+            return snapshot.size();
+        }
+    }
+
+
+    static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    static LocalDate fromEpochDay(int day) {
+        return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+    }
+
+    static Gender gender(int code) {
+        return code == NONE ? null : Gender.values()[code];
+    }
+
+    private static int code(String s, Map<String, Integer> dictionary) {
+        return s == null ? NONE : dictionary.get(s);
+    }
+
+    private static int intern(String s, Map<String, Integer> dictionary, List<byte[]> strings) {
+        if (s == null) return NONE;
+        Integer code = dictionary.get(s);
+        if (code != null) return code;
+        int c = strings.size();
+        dictionary.put(s, c);
+        strings.add(s.getBytes(StandardCharsets.UTF_8));
+        return c;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static void pad(DataOutputStream out, int n) throws IOException {
+        for (int i = 0; i < n; i++) out.writeByte(0);
+    }
+}
@@ -0,0 +1,356 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Column-per-field person store: ids as two longs, names as {@link StringDictionary}
+ * codes, dates as epoch days, gender as a byte, and parent/child ids as exact-size
+ * {@code long[]} pairs instead of hash sets. {@link #get} hands out a flyweight
+ * {@code Person} whose getters, setters and id sets read and write the columns, so the
+ * repository's in-place updates land directly in the store. People passed to
+ * {@link #put} are copied; read them back through the repository to see later changes.
+ */
+public class CompactPersonStore implements PersonStore {
+    private static final byte PRESENT = 1;
+    private static final byte MARRIED = 2;
+
+    private final StringDictionary names = new StringDictionary();
+    private long[] idHi = new long[0];
+    private long[] idLo = new long[0];
+    private int[] last = new int[0];
+    private int[] first = new int[0];
+    private int[] middle = new int[0];
+    private int[] birth = new int[0];
+    private int[] death = new int[0];
+    private byte[] gender = new byte[0];
+    private byte[] flags = new byte[0];
+    private long[] spouseHi = new long[0];
+    private long[] spouseLo = new long[0];
+    private long[][] parents = new long[0][];
+    private long[][] children = new long[0][];
+    private int size;
+
+    @Override
+    public Person get(int ordinal) {
+        return ordinal >= 0 && ordinal < flags.length && (flags[ordinal] & PRESENT) != 0 ? new View(ordinal) : null;
+    }
+
+    @Override
+    public void put(int ordinal, Person p) {
+        boolean own = p instanceof View && ((View) p).store() == this && ((View) p).ord == ordinal;
+        if (!own) ensure(ordinal + 1);
+        if ((flags[ordinal] & PRESENT) == 0) size++;
+        if (own) {
+            flags[ordinal] |= PRESENT;
+            return;
+        }
+        flags[ordinal] = PRESENT;
+        setId(ordinal, p.getId());
+        last[ordinal] = names.encode(p.getLastName());
+        first[ordinal] = names.encode(p.getFirstName());
+        middle[ordinal] = names.encode(p.getMiddleName());
+        birth[ordinal] = BinarySnapshotStorage.epochDay(p.getBirthDate());
+        death[ordinal] = BinarySnapshotStorage.epochDay(p.getDeathDate());
+        gender[ordinal] = (byte) (p.getGender() == null ? BinarySnapshotStorage.NONE : p.getGender().ordinal());
+        setSpouse(ordinal, p.getSpouseId());
+        parents[ordinal] = pack(p.getParentIds());
+        children[ordinal] = pack(p.getChildIds());
+    }
+
+    @Override
+    public void remove(int ordinal, Person p) {
+        if (ordinal >= flags.length || (flags[ordinal] & PRESENT) == 0) return;
+        flags[ordinal] &= ~PRESENT;
+        size--;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(flags, (byte) 0);
+        Arrays.fill(parents, null);
+        Arrays.fill(children, null);
+        names.clear();
+        size = 0;
+    }
+
+    @Override
+    public Collection<Person> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Person> iterator() {
+                return new Iterator<>() {
+                    private int next = advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < flags.length;
+                    }
+
+                    @Override
+                    public Person next() {
+                        if (next >= flags.length) throw new NoSuchElementException();
+                        Person p = new View(next);
+                        next = advance(next + 1);
+                        return p;
+                    }
+
+                    private int advance(int from) {
+                        while (from < flags.length && (flags[from] & PRESENT) == 0) from++;
+                        return from;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public StringDictionary names() {
+        return names;
+    }
+
+    /**
+     * Heap used by the columns, the inline id arrays and the name dictionary, next to an
+     * estimate for the same people as plain {@code Person} objects with hash sets. The
+     * repository's indexes are not included; see {@link CompactRepository#footprint()}.
+     */
+    public Footprint footprint() {
+        int cap = flags.length;
+        long columns = 6 * 16L + cap * (8L + 8 + 4 + 4 + 4 + 4 + 4 + 1 + 1 + 8 + 8 + 4 + 4);
+        long relations = 0;
+        long plain = 0;
+        for (int i = 0; i < cap; i++) {
+            if ((flags[i] & PRESENT) == 0) continue;
+            if (parents[i] != null) relations += 16 + 8L * parents[i].length;
+            if (children[i] != null) relations += 16 + 8L * children[i].length;
+            plain += plainBytes(i);
+        }
+        return new Footprint(size, columns + relations + names.footprint(), plain, 0, names.size());
+    }
+
+    private long plainBytes(int i) {
+        long bytes = 56 + 32;
+        for (int code : new int[]{last[i], first[i], middle[i]}) {
+            if (code != 0) bytes += 24 + 16 + 2L * names.decode(code).length();
+        }
+        if (birth[i] != BinarySnapshotStorage.NO_DATE) bytes += 24;
+        if (death[i] != BinarySnapshotStorage.NO_DATE) bytes += 24;
+        if ((flags[i] & MARRIED) != 0) bytes += 32;
+        bytes += setBytes(parents[i]) + setBytes(children[i]);
+        return bytes;
+    }
+
+    private static long setBytes(long[] ids) {
+        int n = ids == null ? 0 : ids.length / 2;
+        if (n == 0) return 0;
+        return 16 + 48 + 16 + 4L * Math.max(16, Integer.highestOneBit(n * 4 / 3) * 2) + n * (32L + 32);
+    }
+
+    private void ensure(int n) {
+        if (n <= flags.length) return;
+        int cap = Math.max(n, Math.max(16, flags.length * 2));
+        idHi = Arrays.copyOf(idHi, cap);
+        idLo = Arrays.copyOf(idLo, cap);
+        last = Arrays.copyOf(last, cap);
+        first = Arrays.copyOf(first, cap);
+        middle = Arrays.copyOf(middle, cap);
+        birth = Arrays.copyOf(birth, cap);
+        death = Arrays.copyOf(death, cap);
+        gender = Arrays.copyOf(gender, cap);
+        flags = Arrays.copyOf(flags, cap);
+        spouseHi = Arrays.copyOf(spouseHi, cap);
+        spouseLo = Arrays.copyOf(spouseLo, cap);
+        parents = Arrays.copyOf(parents, cap);
+        children = Arrays.copyOf(children, cap);
+    }
+
+    private void setId(int ord, UUID id) {
+        idHi[ord] = id.getMostSignificantBits();
+        idLo[ord] = id.getLeastSignificantBits();
+    }
+
+    private void setSpouse(int ord, UUID id) {
+        if (id == null) {
+            flags[ord] &= ~MARRIED;
+        } else {
+            flags[ord] |= MARRIED;
+            spouseHi[ord] = id.getMostSignificantBits();
+            spouseLo[ord] = id.getLeastSignificantBits();
+        }
+    }
+
+    private static long[] pack(Set<UUID> ids) {
+        if (ids == null || ids.isEmpty()) return null;
+        long[] a = new long[ids.size() * 2];
+        int i = 0;
+        for (UUID id : ids) {
+            a[i++] = id.getMostSignificantBits();
+            a[i++] = id.getLeastSignificantBits();
+        }
+        return a;
+    }
+
+
+    public static final class Footprint {
+        private final int persons;
+        private final long bytes;
+        private final long plainBytes;
+        private final long indexBytes;
+        private final int distinctNames;
+
+        Footprint(int persons, long bytes, long plainBytes, long indexBytes, int distinctNames) {
+            this.persons = persons;
+            this.bytes = bytes;
+            this.plainBytes = plainBytes;
+            this.indexBytes = indexBytes;
+            this.distinctNames = distinctNames;
+        }
+
+        /**
+         * This footprint with index bytes added to both layouts, which keep the same indexes.
+         */
+        Footprint withIndexes(long bytes) {
+            return new Footprint(persons, this.bytes + bytes, plainBytes + bytes, indexBytes + bytes, distinctNames);
+        }
+
+        public int persons() {
+            return persons;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long plainBytes() {
+            return plainBytes;
+        }
+
+        public long indexBytes() {
+            return indexBytes;
+        }
+
+        public double bytesPerPerson() {
+            return persons == 0 ? 0 : (double) bytes / persons;
+        }
+
+        public double plainBytesPerPerson() {
+            return persons == 0 ? 0 : (double) plainBytes / persons;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Людей: %d, байт на человека: %.0f, из них индексы %.0f (обычное хранение ~%.0f), различных имён: %d",
+                    persons, bytesPerPerson(), persons == 0 ? 0.0 : (double) indexBytes / persons, plainBytesPerPerson(), distinctNames);
+        }
+    }
+
+    /**
+     * Flyweight over one ordinal; carries no state of its own beyond the position.
+     */
+    private final class View extends Person {
+        final int ord;
+
+        View(int ord) {
+            this.ord = ord;
+        }
+
+        CompactPersonStore store() {
+            return CompactPersonStore.this;
+        }
+
+        @Override public UUID getId() { return new UUID(idHi[ord], idLo[ord]); }
+        @Override public void setId(UUID id) { CompactPersonStore.this.setId(ord, id); }
+
+        @Override public String getLastName() { return names.decode(last[ord]); }
+        @Override public void setLastName(String lastName) { last[ord] = names.encode(lastName); }
+
+        @Override public String getFirstName() { return names.decode(first[ord]); }
+        @Override public void setFirstName(String firstName) { first[ord] = names.encode(firstName); }
+
+        @Override public String getMiddleName() { return names.decode(middle[ord]); }
+        @Override public void setMiddleName(String middleName) { middle[ord] = names.encode(middleName); }
+
+        @Override public LocalDate getBirthDate() { return BinarySnapshotStorage.fromEpochDay(birth[ord]); }
+        @Override public void setBirthDate(LocalDate birthDate) { birth[ord] = BinarySnapshotStorage.epochDay(birthDate); }
+
+        @Override public LocalDate getDeathDate() { return BinarySnapshotStorage.fromEpochDay(death[ord]); }
+        @Override public void setDeathDate(LocalDate deathDate) { death[ord] = BinarySnapshotStorage.epochDay(deathDate); }
+
+        @Override public Gender getGender() { return BinarySnapshotStorage.gender(gender[ord]); }
+        @Override public void setGender(Gender g) { gender[ord] = (byte) (g == null ? BinarySnapshotStorage.NONE : g.ordinal()); }
+
+        @Override public Set<UUID> getParentIds() { return new IdSet(parents[ord]); }
+        @Override public void setParentIds(Set<UUID> ids) { parents[ord] = pack(ids); }
+
+        @Override public Set<UUID> getChildIds() { return new IdSet(children[ord]); }
+        @Override public void setChildIds(Set<UUID> ids) { children[ord] = pack(ids); }
+
+        @Override
+        public UUID getSpouseId() {
+            return (flags[ord] & MARRIED) == 0 ? null : new UUID(spouseHi[ord], spouseLo[ord]);
+        }
+
+        @Override
+        public void setSpouseId(UUID spouseId) {
+            setSpouse(ord, spouseId);
+        }
+    }
+
+    /**
+     * Read-only set over one inline id array. Arrays are never changed once packed, so the
+     * set is a snapshot; the repository replaces relation sets rather than editing them.
+     */
+    private static final class IdSet extends AbstractSet<UUID> {
+        private final long[] ids;
+
+        IdSet(long[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public int size() {
+            return ids == null ? 0 : ids.length / 2;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof UUID) || ids == null) return false;
+            UUID u = (UUID) o;
+            for (int i = 0; i < ids.length; i += 2) {
+                if (ids[i] == u.getMostSignificantBits() && ids[i + 1] == u.getLeastSignificantBits()) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<UUID> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return ids != null && next < ids.length;
+                }
+
+                @Override
+                public UUID next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    next += 2;
+                    return new UUID(ids[next - 2], ids[next - 1]);
+                }
+            };
+        }
+    }
+}
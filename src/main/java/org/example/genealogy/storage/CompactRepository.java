@@ -0,0 +1,30 @@
+package org.example.genealogy.storage;
+
+/**
+ * Repository backed by a {@link CompactPersonStore}: the same indexes as the plain one,
+ * with people kept as columns instead of one object graph per person.
+ */
+public class CompactRepository extends Repository {
+    private final CompactPersonStore store;
+
+    public CompactRepository() {
+        this(new CompactPersonStore());
+    }
+
+    private CompactRepository(CompactPersonStore store) {
+        super(store);
+        this.store = store;
+    }
+
+    public CompactPersonStore store() {
+        return store;
+    }
+
+    /**
+     * The store's footprint plus the per-person index data: name keys and posting lists,
+     * fuzzy-index words and the id to ordinal mapping.
+     */
+    public CompactPersonStore.Footprint footprint() {
+        return store.footprint().withIndexes(names().footprint() + fuzzyNames().footprint() + graph().ordinalFootprint());
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.genealogy.storage;
+
+import java.util.Arrays;
+
+/**
+ * Union-find over parent/child/spouse edges. Links union eagerly; unlinks only mark the
+ * component dirty, and a dirty component is split again from the graph on next lookup.
+ * Lookups may rebuild, so all methods synchronize on the index.
+ */
+public class ComponentIndex {
+    private final KinshipGraph graph;
+    private int[] parent = new int[0];
+    private int[] size = new int[0];
+    private int[] next = new int[0];
+    private boolean[] dirty = new boolean[0];
+    private int count;
+
+    public ComponentIndex(KinshipGraph graph) {
+        this.graph = graph;
+    }
+
+    public synchronized void union(int a, int b) {
+        ensure(Math.max(a, b) + 1);
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) return;
+        if (size[ra] < size[rb]) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+        int t = next[ra];
+        next[ra] = next[rb];
+        next[rb] = t;
+        dirty[ra] |= dirty[rb];
+    }
+
+    public synchronized void markDirty(int v) {
+        ensure(v + 1);
+        dirty[find(v)] = true;
+    }
+
+    public synchronized int componentOf(int v) {
+        if (v < 0) return KinshipGraph.NONE;
+        ensure(v + 1);
+        int root = find(v);
+        if (dirty[root]) {
+            rebuild(root);
+            root = find(v);
+        }
+        return root;
+    }
+
+    public synchronized int componentSize(int v) {
+        int root = componentOf(v);
+        return root == KinshipGraph.NONE ? 0 : size[root];
+    }
+
+    public synchronized boolean connected(int a, int b) {
+        int ra = componentOf(a);
+        return ra != KinshipGraph.NONE && ra == componentOf(b);
+    }
+
+    public synchronized void clear() {
+        count = 0;
+    }
+
+    private void rebuild(int root) {
+        IntList members = new IntList();
+        int v = root;
+        do {
+            members.add(v);
+            v = next[v];
+        } while (v != root);
+        for (int i = 0; i < members.size(); i++) singleton(members.get(i));
+        IntList neighbours = new IntList();
+        for (int i = 0; i < members.size(); i++) {
+            int m = members.get(i);
+            neighbours.clear();
+            graph.appendNeighbours(m, neighbours);
+            for (int j = 0; j < neighbours.size(); j++) union(m, neighbours.get(j));
+        }
+    }
+
+    private int find(int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private void ensure(int n) {
+        if (n > parent.length) {
+            int cap = Math.max(n, parent.length * 2);
+            parent = Arrays.copyOf(parent, cap);
+            size = Arrays.copyOf(size, cap);
+            next = Arrays.copyOf(next, cap);
+            dirty = Arrays.copyOf(dirty, cap);
+        }
+        while (count < n) singleton(count++);
+    }
+
+    private void singleton(int v) {
+        parent[v] = v;
+        size[v] = 1;
+        next[v] = v;
+        dirty[v] = false;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.genealogy.storage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size bitmap over dense ordinals whose bits can be set from many threads at once.
+ */
+public class ConcurrentBitSet {
+    private final AtomicLongArray words;
+
+    public ConcurrentBitSet(int capacity) {
+        this.words = new AtomicLongArray((capacity + 63) >>> 6);
+    }
+
+    /**
+     * Sets the bit and returns {@code true} if this call changed it.
+     */
+    public boolean set(int ordinal) {
+        int w = ordinal >>> 6;
+        long bit = 1L << ordinal;
+        long old;
+        do {
+            old = words.get(w);
+            if ((old & bit) != 0) return false;
+        } while (!words.compareAndSet(w, old, old | bit));
+        return true;
+    }
+
+    public boolean get(int ordinal) {
+        return (words.get(ordinal >>> 6) & (1L << ordinal)) != 0;
+    }
+}
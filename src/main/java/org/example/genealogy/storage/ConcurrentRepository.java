@@ -0,0 +1,142 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Repository that can be shared between threads. Lookups by id go straight to a
+ * ConcurrentHashMap and take no lock; every mutation, including the two-person
+ * relationship updates, runs under the write side of a StampedLock so it is applied
+ * completely or not at all. Everything keyed by ordinal - {@link #findByOrdinal}, the
+ * graph and the indexes - is only safe under {@link #read} or {@link #optimisticRead},
+ * the latter falling back to the read lock when a writer interfered. The write lock is
+ * reentrant for its owner thread.
+ */
+public class ConcurrentRepository extends Repository {
+    private final StampedLock lock = new StampedLock();
+    private final Map<UUID, Person> persons;
+    private volatile Thread writer;
+
+    public ConcurrentRepository() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    private ConcurrentRepository(ConcurrentHashMap<UUID, Person> persons) {
+        super(persons);
+        this.persons = persons;
+    }
+
+    @Override
+    public Optional<Person> findById(UUID id) {
+        return Optional.ofNullable(persons.get(id));
+    }
+
+    @Override
+    public <T> T read(Supplier<T> action) {
+        if (writer == Thread.currentThread()) return action.get();
+        long stamp = lock.readLock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public <T> T optimisticRead(Supplier<T> action) {
+        if (writer == Thread.currentThread()) return action.get();
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = action.get();
+                if (lock.validate(stamp)) return result;
+            } catch (RuntimeException raced) {
+                if (lock.validate(stamp)) throw raced;
+            }
+        }
+        return read(action);
+    }
+
+    @Override
+    public <T> T write(Supplier<T> action) {
+        if (writer == Thread.currentThread()) return action.get();
+        long stamp = lock.writeLock();
+        writer = Thread.currentThread();
+        try {
+            return action.get();
+        } finally {
+            writer = null;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+
+    @Override
+    public void save(Person p) {
+        write(() -> {
+            super.save(p);
+            return null;
+        });
+    }
+
+    @Override
+    public int saveSkippingCycles(Person p) {
+        return write(() -> super.saveSkippingCycles(p));
+    }
+
+    @Override
+    public int saveAll(Collection<Person> list) {
+        return write(() -> super.saveAll(list));
+    }
+
+    @Override
+    public void compact() {
+        write(() -> {
+            super.compact();
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(UUID id) {
+        write(() -> {
+            super.delete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            super.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public boolean linkParentChild(UUID parentId, UUID childId) {
+        return write(() -> super.linkParentChild(parentId, childId));
+    }
+
+    @Override
+    public boolean unlinkParentChild(UUID parentId, UUID childId) {
+        return write(() -> super.unlinkParentChild(parentId, childId));
+    }
+
+    @Override
+    public boolean linkSpouses(UUID aId, UUID bId) {
+        return write(() -> super.linkSpouses(aId, bId));
+    }
+
+    @Override
+    public boolean unlinkSpouses(UUID aId, UUID bId) {
+        return write(() -> super.unlinkSpouses(aId, bId));
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Birth and death dates by ordinal, with range and "alive at" queries. Like the graph,
+ * it keeps a sorted base built at the last compaction plus a small delta: base entries
+ * are packed {@code (epochDay << 32) | ordinal} longs, and ordinals changed since then
+ * are checked one by one and hidden from the base. Lifespans form a static interval
+ * tree over the birth order: a max-death tree over that array prunes every subtree in
+ * which nobody lived up to the queried day.
+ * <p>
+ * A person without a birth date has no lifespan; one without a death date is taken to
+ * be alive from birth on. Results are ordered by date, then ordinal.
+ */
+public class DateIndex {
+    private static final int NO_DATE = BinarySnapshotStorage.NO_DATE;
+    private static final int OPEN_END = Integer.MAX_VALUE;
+
+    private int[] birth = new int[16];
+    private int[] death = new int[16];
+    private boolean[] indexed = new boolean[16];
+    private boolean[] changed = new boolean[16];
+    private final IntList delta = new IntList();
+
+    private long[] byBirth = new long[0];
+    private long[] byDeath = new long[0];
+    /** Death day (or OPEN_END) of each {@code byBirth} entry. */
+    private int[] ends = new int[0];
+    /** Implicit segment tree of max {@code ends}; leaf i sits at {@code leaves + i}. */
+    private int[] maxEnd = new int[2];
+    private int leaves = 1;
+
+    public synchronized void index(int ordinal, Person p) {
+        ensure(ordinal + 1);
+        birth[ordinal] = BinarySnapshotStorage.epochDay(p.getBirthDate());
+        death[ordinal] = BinarySnapshotStorage.epochDay(p.getDeathDate());
+        indexed[ordinal] = true;
+        touch(ordinal);
+    }
+
+    public synchronized void remove(int ordinal) {
+        if (ordinal < 0 || ordinal >= indexed.length || !indexed[ordinal]) return;
+        indexed[ordinal] = false;
+        touch(ordinal);
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(indexed, false);
+        Arrays.fill(changed, false);
+        delta.clear();
+        build();
+    }
+
+    /**
+     * Folds the delta into the sorted arrays and the interval tree.
+     */
+    public synchronized void compact() {
+        if (!delta.isEmpty()) build();
+    }
+
+    /**
+     * People born within {@code [from, to]}; a null bound is open.
+     */
+    public synchronized IntList bornBetween(LocalDate from, LocalDate to, int offset, int limit) {
+        maybeCompact();
+        return range(byBirth, birth, from, to, offset, limit);
+    }
+
+    /**
+     * People who died within {@code [from, to]}; a null bound is open.
+     */
+    public synchronized IntList diedBetween(LocalDate from, LocalDate to, int offset, int limit) {
+        maybeCompact();
+        return range(byDeath, death, from, to, offset, limit);
+    }
+
+    /**
+     * People born on or before {@code date} and not dead before it, by birth date.
+     */
+    public synchronized IntList aliveAt(LocalDate date, int offset, int limit) {
+        maybeCompact();
+        int day = (int) date.toEpochDay();
+        int want = wanted(offset, limit);
+        int prefix = upperBound(byBirth, day);
+        IntList base = new IntList(Math.min(want, 64));
+        if (prefix > 0) collectAlive(1, 0, leaves, prefix, day, want, base);
+        LongArray extra = new LongArray();
+        for (int i = 0; i < delta.size(); i++) {
+            int ord = delta.get(i);
+            if (indexed[ord] && birth[ord] != NO_DATE && birth[ord] <= day && end(ord) >= day) {
+                extra.add(pack(birth[ord], ord));
+            }
+        }
+        return merge(base, byBirth, extra, offset, limit);
+    }
+
+    private IntList range(long[] sorted, int[] column, LocalDate from, LocalDate to, int offset, int limit) {
+        long lo = from == null ? Long.MIN_VALUE : pack((int) from.toEpochDay(), 0);
+        long hi = to == null ? Long.MAX_VALUE : pack((int) to.toEpochDay(), -1);
+        int want = wanted(offset, limit);
+        IntList base = new IntList(Math.min(want, 64));
+        for (int i = lowerBound(sorted, lo); i < sorted.length && sorted[i] <= hi && base.size() < want; i++) {
+            if (visible((int) sorted[i])) base.add(i);
+        }
+        LongArray extra = new LongArray();
+        for (int i = 0; i < delta.size(); i++) {
+            int ord = delta.get(i);
+            if (!indexed[ord] || column[ord] == NO_DATE) continue;
+            long key = pack(column[ord], ord);
+            if (key >= lo && key <= hi) extra.add(key);
+        }
+        return merge(base, sorted, extra, offset, limit);
+    }
+
+    /**
+     * Left-to-right walk of the max-death tree over positions {@code [lo, hi)}, restricted to
+     * the first {@code prefix} positions; appends matching positions in ascending order.
+     */
+    private void collectAlive(int node, int lo, int hi, int prefix, int day, int want, IntList out) {
+        if (out.size() >= want || lo >= prefix || maxEnd[node] < day) return;
+        if (hi - lo == 1) {
+            if (visible((int) byBirth[lo])) out.add(lo);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        collectAlive(2 * node, lo, mid, prefix, day, want, out);
+        collectAlive(2 * node + 1, mid, hi, prefix, day, want, out);
+    }
+
+    /**
+     * Merges base positions (already in key order) with delta keys and cuts the page.
+     */
+    private static IntList merge(IntList basePositions, long[] sorted, LongArray extra, int offset, int limit) {
+        extra.sort();
+        int from = Math.max(offset, 0);
+        int want = wanted(offset, limit);
+        IntList result = new IntList(Math.max(Math.min(limit, 64), 1));
+        int i = 0;
+        int j = 0;
+        for (int n = 0; n < want; n++) {
+            long key;
+            if (i < basePositions.size() && (j >= extra.size || sorted[basePositions.get(i)] < extra.data[j])) {
+                key = sorted[basePositions.get(i++)];
+            } else if (j < extra.size) {
+                key = extra.data[j++];
+            } else {
+                break;
+            }
+            if (n >= from) result.add((int) key);
+        }
+        return result;
+    }
+
+    private boolean visible(int ord) {
+        return indexed[ord] && !changed[ord];
+    }
+
+    private int end(int ord) {
+        return death[ord] == NO_DATE ? OPEN_END : death[ord];
+    }
+
+    private void touch(int ord) {
+        if (!changed[ord]) {
+            changed[ord] = true;
+            delta.add(ord);
+        }
+    }
+
+    private void maybeCompact() {
+        if (delta.size() > 64 + byBirth.length / 16) build();
+    }
+
+    private void build() {
+        int nBirth = 0;
+        int nDeath = 0;
+        for (int ord = 0; ord < indexed.length; ord++) {
+            if (!indexed[ord]) continue;
+            if (birth[ord] != NO_DATE) nBirth++;
+            if (death[ord] != NO_DATE) nDeath++;
+        }
+        byBirth = new long[nBirth];
+        byDeath = new long[nDeath];
+        nBirth = 0;
+        nDeath = 0;
+        for (int ord = 0; ord < indexed.length; ord++) {
+            if (!indexed[ord]) continue;
+            if (birth[ord] != NO_DATE) byBirth[nBirth++] = pack(birth[ord], ord);
+            if (death[ord] != NO_DATE) byDeath[nDeath++] = pack(death[ord], ord);
+        }
+        Arrays.sort(byBirth);
+        Arrays.sort(byDeath);
+
+        ends = new int[byBirth.length];
+        for (int i = 0; i < ends.length; i++) ends[i] = end((int) byBirth[i]);
+        leaves = Math.max(1, Integer.highestOneBit(Math.max(1, ends.length - 1)) << 1);
+        maxEnd = new int[2 * leaves];
+        Arrays.fill(maxEnd, Integer.MIN_VALUE);
+        System.arraycopy(ends, 0, maxEnd, leaves, ends.length);
+        for (int node = leaves - 1; node >= 1; node--) {
+            maxEnd[node] = Math.max(maxEnd[2 * node], maxEnd[2 * node + 1]);
+        }
+
+        for (int i = 0; i < delta.size(); i++) changed[delta.get(i)] = false;
+        delta.clear();
+    }
+
+    private void ensure(int n) {
+        if (n <= indexed.length) return;
+        int cap = Math.max(n, indexed.length * 2);
+        birth = Arrays.copyOf(birth, cap);
+        death = Arrays.copyOf(death, cap);
+        indexed = Arrays.copyOf(indexed, cap);
+        changed = Arrays.copyOf(changed, cap);
+    }
+
+    private static long pack(int day, int ord) {
+        return ((long) day << 32) | (ord & 0xFFFFFFFFL);
+    }
+
+    private static int wanted(int offset, int limit) {
+        return (int) Math.min((long) Math.max(offset, 0) + Math.max(limit, 0), Integer.MAX_VALUE);
+    }
+
+    private static int lowerBound(long[] a, long key) {
+        int lo = 0;
+        int hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * First position whose day is after {@code day}.
+     */
+    private static int upperBound(long[] a, int day) {
+        return lowerBound(a, pack(day + 1, 0));
+    }
+
+
+    private static final class LongArray {
+        long[] data = new long[8];
+        int size;
+
+        void add(long v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void sort() {
+            Arrays.sort(data, 0, size);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * People on disk with an LRU cache of hot {@code Person} objects. The data file is
+ * append-only; a slot file maps each ordinal to {@code [long offset][int length]} of its
+ * latest record, so a cache miss costs two positional reads. Changed people stay in the
+ * cache as dirty and are written back when evicted or on {@link #flush}. Once dead
+ * record versions outweigh live ones the data file is rewritten.
+ * <p>
+ * The files are scratch space for one process: they are truncated on open and deleted
+ * on close; durability stays with the journal and snapshots.
+ */
+public class DiskPersonStore implements PersonStore, Closeable {
+    private static final int SLOT = 12;
+    private static final long MIN_GARBAGE = 16L << 20;
+
+    private final Path dataPath;
+    private final Path slotPath;
+    private final FileChannel slots;
+    private FileChannel data;
+    private final int cacheSize;
+    private final LinkedHashMap<Integer, Cached> cache;
+    private final BitSet present = new BitSet();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final ByteBuffer slot = ByteBuffer.allocate(SLOT);
+    private int size;
+    private long dataEnd;
+    private long garbage;
+    private long hits;
+    private long misses;
+    private long writes;
+
+    public DiskPersonStore(Path dir, int cacheSize) throws IOException {
+        if (cacheSize < 1) throw new IllegalArgumentException("Cache size must be positive: " + cacheSize);
+        Files.createDirectories(dir);
+        this.dataPath = dir.resolve("persons.dat");
+        this.slotPath = dir.resolve("persons.slots");
+        this.data = open(dataPath);
+        this.slots = open(slotPath);
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Cached> eldest) {
+                if (size() <= DiskPersonStore.this.cacheSize) return false;
+                if (eldest.getValue().dirty) writeBack(eldest.getKey(), eldest.getValue().person);
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public synchronized Person get(int ordinal) {
+        if (ordinal < 0 || !present.get(ordinal)) return null;
+        Cached e = cache.get(ordinal);
+        if (e != null) {
+            hits++;
+            return e.person;
+        }
+        misses++;
+        Person p = load(ordinal);
+        cache.put(ordinal, new Cached(p, false));
+        return p;
+    }
+
+    @Override
+    public synchronized void put(int ordinal, Person p) {
+        if (!present.get(ordinal)) {
+            present.set(ordinal);
+            size++;
+        }
+        Cached e = cache.get(ordinal);
+        if (e != null) {
+            e.person = p;
+            e.dirty = true;
+        } else {
+            cache.put(ordinal, new Cached(p, true));
+        }
+    }
+
+    @Override
+    public synchronized void remove(int ordinal, Person p) {
+        if (!present.get(ordinal)) return;
+        cache.remove(ordinal);
+        try {
+            long[] old = readSlot(ordinal);
+            garbage += old[1];
+            writeSlot(ordinal, 0, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        present.clear(ordinal);
+        size--;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        cache.clear();
+        present.clear();
+        size = 0;
+        dataEnd = 0;
+        garbage = 0;
+        try {
+            data.truncate(0);
+            slots.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Iterates in ordinal order; people read from disk here do not enter the cache.
+     */
+    @Override
+    public Collection<Person> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Person> iterator() {
+                return new Iterator<>() {
+                    private int next = nextPresent(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Person next() {
+                        if (next < 0) throw new NoSuchElementException();
+                        Person p = peek(next);
+                        next = nextPresent(next + 1);
+                        return p;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return DiskPersonStore.this.size();
+            }
+        };
+    }
+
+    public synchronized void flush() throws IOException {
+        try {
+            for (Map.Entry<Integer, Cached> e : cache.entrySet()) {
+                Cached entry = e.getValue();
+                if (entry.dirty) {
+                    writeBack(e.getKey(), entry.person);
+                    entry.dirty = false;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        data.force(false);
+        slots.force(false);
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Records written to disk so far, by eviction or flush.
+     */
+    public synchronized long writes() {
+        return writes;
+    }
+
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        writes = 0;
+    }
+
+    public synchronized int cached() {
+        return cache.size();
+    }
+
+    public int cacheSize() {
+        return cacheSize;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        cache.clear();
+        data.close();
+        slots.close();
+        Files.deleteIfExists(dataPath);
+        Files.deleteIfExists(slotPath);
+    }
+
+    private synchronized int nextPresent(int from) {
+        return present.nextSetBit(from);
+    }
+
+    private synchronized Person peek(int ordinal) {
+        Cached e = cache.get(ordinal);
+        return e != null ? e.person : load(ordinal);
+    }
+
+    private void writeBack(int ordinal, Person p) {
+        try {
+            bytes.reset();
+            writeRecord(p);
+            long[] old = readSlot(ordinal);
+            garbage += old[1];
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            long offset = dataEnd;
+            writeFully(data, buf, offset);
+            dataEnd += buf.capacity();
+            writeSlot(ordinal, offset, buf.capacity());
+            writes++;
+            if (garbage > MIN_GARBAGE && garbage > dataEnd - garbage) compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Person load(int ordinal) {
+        try {
+            long[] s = readSlot(ordinal);
+            ByteBuffer buf = ByteBuffer.allocate((int) s[1]);
+            readFully(data, buf, s[0]);
+            return readRecord(new DataInputStream(new ByteArrayInputStream(buf.array())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies the live records into a fresh data file in ordinal order.
+     */
+    private void compact() throws IOException {
+        Path tmp = dataPath.resolveSibling(dataPath.getFileName() + ".tmp");
+        long end = 0;
+        try (FileChannel fresh = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int ord = present.nextSetBit(0); ord >= 0; ord = present.nextSetBit(ord + 1)) {
+                long[] s = readSlot(ord);
+                if (s[1] == 0) continue;
+                ByteBuffer buf = ByteBuffer.allocate((int) s[1]);
+                readFully(data, buf, s[0]);
+                buf.flip();
+                writeFully(fresh, buf, end);
+                writeSlot(ord, end, (int) s[1]);
+                end += s[1];
+            }
+        }
+        data.close();
+        Files.move(tmp, dataPath, StandardCopyOption.REPLACE_EXISTING);
+        data = FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dataEnd = end;
+        garbage = 0;
+    }
+
+    private long[] readSlot(int ordinal) throws IOException {
+        long pos = (long) ordinal * SLOT;
+        if (pos + SLOT > slots.size()) return new long[]{0, 0};
+        slot.clear();
+        readFully(slots, slot, pos);
+        return new long[]{slot.getLong(0), slot.getInt(8)};
+    }
+
+    private void writeSlot(int ordinal, long offset, int length) throws IOException {
+        slot.clear();
+        slot.putLong(offset).putInt(length).flip();
+        writeFully(slots, slot, (long) ordinal * SLOT);
+    }
+
+    private void writeRecord(Person p) throws IOException {
+        MutationJournal.writeId(out, p.getId());
+        MutationJournal.writeString(out, p.getLastName());
+        MutationJournal.writeString(out, p.getFirstName());
+        MutationJournal.writeString(out, p.getMiddleName());
+        out.writeInt(BinarySnapshotStorage.epochDay(p.getBirthDate()));
+        out.writeInt(BinarySnapshotStorage.epochDay(p.getDeathDate()));
+        out.writeByte(p.getGender() == null ? BinarySnapshotStorage.NONE : p.getGender().ordinal());
+        out.writeInt(p.getParentIds().size());
+        for (UUID id : p.getParentIds()) MutationJournal.writeId(out, id);
+        out.writeInt(p.getChildIds().size());
+        for (UUID id : p.getChildIds()) MutationJournal.writeId(out, id);
+        out.writeBoolean(p.getSpouseId() != null);
+        if (p.getSpouseId() != null) MutationJournal.writeId(out, p.getSpouseId());
+        out.flush();
+    }
+
+    private static Person readRecord(DataInputStream in) throws IOException {
+        Person p = new Person();
+        p.setId(MutationJournal.readId(in));
+        p.setLastName(MutationJournal.readString(in));
+        p.setFirstName(MutationJournal.readString(in));
+        p.setMiddleName(MutationJournal.readString(in));
+        p.setBirthDate(BinarySnapshotStorage.fromEpochDay(in.readInt()));
+        p.setDeathDate(BinarySnapshotStorage.fromEpochDay(in.readInt()));
+        p.setGender(BinarySnapshotStorage.gender(in.readByte()));
+        for (int i = in.readInt(); i > 0; i--) p.getParentIds().add(MutationJournal.readId(in));
+        for (int i = in.readInt(); i > 0; i--) p.getChildIds().add(MutationJournal.readId(in));
+        if (in.readBoolean()) p.setSpouseId(MutationJournal.readId(in));
+        return p;
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new EOFException("Truncated person store");
+            pos += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) pos += ch.write(buf, pos);
+    }
+
+
+    private static final class Cached {
+        Person person;
+        boolean dirty;
+
+        Cached(Person person, boolean dirty) {
+            this.person = person;
+            this.dirty = dirty;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.genealogy.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Repository whose {@code Person} objects live in a {@link DiskPersonStore} with at most
+ * {@code cacheSize} of them on the heap. The graph, component and name indexes stay in
+ * memory as int arrays and name keys, so traversals only touch the store for the
+ * people they return.
+ */
+public class DiskRepository extends Repository implements Closeable {
+    private final DiskPersonStore store;
+
+    public DiskRepository(Path dir, int cacheSize) throws IOException {
+        this(new DiskPersonStore(dir, cacheSize));
+    }
+
+    private DiskRepository(DiskPersonStore store) {
+        super(store);
+        this.store = store;
+    }
+
+    public DiskPersonStore store() {
+        return store;
+    }
+
+    public void flush() throws IOException {
+        store.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
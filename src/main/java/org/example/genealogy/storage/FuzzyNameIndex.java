@@ -0,0 +1,361 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.util.*;
+
+/**
+ * Spelling-tolerant name lookup. Every name is split into words and transliterated to a
+ * Latin skeleton, so Cyrillic, Kalmyk and Latin spellings of a name land on the same
+ * string. Distinct words live in a BK-tree searched by Levenshtein distance, and each
+ * word also has a phonetic key (consonant classes, vowels dropped) that catches variants
+ * such as {@code в}/{@code б} or {@code дж}/{@code j} beyond the edit budget.
+ * <p>
+ * A person matches when every query word matches one of their words. The cost of a
+ * word match is twice its edit distance, one less when the phonetic keys agree, and
+ * {@code 2 * maxDistance + 1} for a phonetic-only match; hits are ranked by total cost.
+ * Words are never removed from the tree, only from their posting lists. People keep
+ * their words as codes into a dictionary of distinct words.
+ */
+public class FuzzyNameIndex {
+    private static final String[] CYRILLIC = {
+            "a", "b", "v", "g", "d", "e", "zh", "z", "i", "y", "k", "l", "m", "n", "o", "p",
+            "r", "s", "t", "u", "f", "kh", "ts", "ch", "sh", "shch", "", "y", "", "e", "yu", "ya"};
+
+    private final Map<String, IntList> postings = new HashMap<>();
+    private final Map<String, List<String>> phonetic = new HashMap<>();
+    private final BkTree tree = new BkTree();
+    private final StringDictionary dictionary = new StringDictionary();
+    private int[][] words = new int[16][];
+
+    public synchronized void index(int ordinal, Person p) {
+        if (ordinal >= words.length) words = Arrays.copyOf(words, Math.max(ordinal + 1, words.length * 2));
+        String[] spelled = words(Objects.toString(p.getLastName(), "") + " " + Objects.toString(p.getFirstName(), "")
+                + " " + Objects.toString(p.getMiddleName(), ""));
+        int[] fresh = new int[spelled.length];
+        for (int i = 0; i < spelled.length; i++) fresh[i] = dictionary.encode(spelled[i]);
+        int[] old = words[ordinal];
+        if (Arrays.equals(fresh, old)) return;
+        if (old != null) unindex(ordinal, old);
+        words[ordinal] = fresh;
+        for (int code : fresh) {
+            String w = dictionary.decode(code);
+            IntList list = postings.get(w);
+            if (list == null) {
+                list = new IntList(2);
+                postings.put(w, list);
+                tree.add(w);
+                phonetic.computeIfAbsent(phoneticKey(w), k -> new ArrayList<>(1)).add(w);
+            }
+            int pos = list.binarySearch(ordinal);
+            if (pos < 0) list.insert(-pos - 1, ordinal);
+        }
+    }
+
+    public synchronized void remove(int ordinal) {
+        if (ordinal < 0 || ordinal >= words.length || words[ordinal] == null) return;
+        unindex(ordinal, words[ordinal]);
+        words[ordinal] = null;
+    }
+
+    /**
+     * Approximate heap bytes of the per-person data: each person's array of word codes
+     * and their entries in the posting lists, plus the word dictionary. The word tree is
+     * shared by all spellings and not counted.
+     */
+    public synchronized long footprint() {
+        long bytes = 16 + 4L * words.length + dictionary.footprint();
+        for (int[] w : words) {
+            if (w != null) bytes += 16 + 4L * w.length + 4L * w.length;
+        }
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        phonetic.clear();
+        tree.clear();
+        dictionary.clear();
+        Arrays.fill(words, null);
+    }
+
+    /**
+     * Best matches first, ties by ordinal; at most {@code limit} of them. Candidates come
+     * from the posting lists of the query word with the fewest, cheapest words first, and
+     * the scan stops once no remaining word can beat the current {@code limit}-th hit.
+     */
+    public synchronized List<Hit> search(String query, int maxDistance, int limit) {
+        String[] q = words(query);
+        if (q.length == 0 || limit <= 0) return List.of();
+        List<Map<String, Integer>> near = new ArrayList<>(q.length);
+        int driver = 0;
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < q.length; i++) {
+            Map<String, Integer> costs = costs(q[i], maxDistance);
+            if (costs.isEmpty()) return List.of();
+            near.add(costs);
+            long postings = 0;
+            for (String w : costs.keySet()) postings += this.postings.get(w).size();
+            if (postings < fewest) {
+                fewest = postings;
+                driver = i;
+            }
+        }
+        List<Map.Entry<String, Integer>> order = new ArrayList<>(near.get(driver).entrySet());
+        order.sort(Map.Entry.comparingByValue());
+        Set<Integer> seen = new HashSet<>();
+        LongList ranked = new LongList();
+        long bound = Long.MAX_VALUE;
+        for (Map.Entry<String, Integer> token : order) {
+            if (token.getValue() >= bound) break;
+            IntList list = postings.get(token.getKey());
+            for (int i = 0; i < list.size(); i++) {
+                int ord = list.get(i);
+                if (!seen.add(ord)) continue;
+                int total = total(words[ord], near);
+                if (total >= 0) ranked.add(((long) total << 32) | ord);
+            }
+            if (ranked.size >= limit) {
+                ranked.sort();
+                bound = (ranked.data[limit - 1] >>> 32) + 1;
+                ranked.size = limit;
+            }
+        }
+        ranked.sort();
+        List<Hit> hits = new ArrayList<>(Math.min(ranked.size, limit));
+        for (int i = 0; i < ranked.size && i < limit; i++) {
+            hits.add(new Hit((int) ranked.data[i], (int) (ranked.data[i] >>> 32)));
+        }
+        return hits;
+    }
+
+    /**
+     * Indexed words matching {@code w}, with their cost.
+     */
+    private Map<String, Integer> costs(String w, int maxDistance) {
+        String key = phoneticKey(w);
+        Map<String, Integer> near = tree.search(w, maxDistance);
+        for (Map.Entry<String, Integer> e : near.entrySet()) {
+            int d = e.getValue();
+            if (d > 0 && key.equals(phoneticKey(e.getKey()))) e.setValue(2 * d - 1);
+            else e.setValue(2 * d);
+        }
+        for (String s : phonetic.getOrDefault(key, List.of())) near.putIfAbsent(s, 2 * maxDistance + 1);
+        near.keySet().removeIf(s -> postings.get(s).isEmpty());
+        return near;
+    }
+
+    /**
+     * Sum over query words of the cheapest matching word of the person, or -1 if some
+     * query word matches none of them.
+     */
+    private int total(int[] personWords, List<Map<String, Integer>> near) {
+        int total = 0;
+        for (Map<String, Integer> costs : near) {
+            int best = Integer.MAX_VALUE;
+            for (int w : personWords) {
+                Integer c = costs.get(dictionary.decode(w));
+                if (c != null && c < best) best = c;
+            }
+            if (best == Integer.MAX_VALUE) return -1;
+            total += best;
+        }
+        return total;
+    }
+
+    private void unindex(int ordinal, int[] old) {
+        for (int w : old) {
+            IntList list = postings.get(dictionary.decode(w));
+            int pos = list.binarySearch(ordinal);
+            if (pos >= 0) list.removeAt(pos);
+        }
+    }
+
+    /**
+     * Lower-cased, transliterated, distinct words of {@code s}.
+     */
+    static String[] words(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = Character.toLowerCase(s.charAt(i));
+            if (c >= 'а' && c <= 'я') sb.append(CYRILLIC[c - 'а']);
+            else if (c == 'ё') sb.append('e');
+            else if (c == 'ә') sb.append('a');
+            else if (c == 'ө') sb.append('o');
+            else if (c == 'ү') sb.append('u');
+            else if (c == 'җ') sb.append("zh");
+            else if (c == 'ң') sb.append("ng");
+            else if (c == 'һ') sb.append('h');
+            else if (c >= 'a' && c <= 'z') sb.append(c);
+            else sb.append(' ');
+        }
+        return Arrays.stream(sb.toString().split(" +"))
+                .filter(w -> !w.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Consonant classes of a transliterated word with vowels dropped and repeats
+     * collapsed; a leading vowel is kept as {@code A}.
+     */
+    static String phoneticKey(String w) {
+        StringBuilder key = new StringBuilder(w.length());
+        int i = 0;
+        while (i < w.length()) {
+            char code;
+            int len = 1;
+            if (w.startsWith("shch", i)) {
+                code = 'S';
+                len = 4;
+            } else if (w.startsWith("dzh", i)) {
+                code = 'J';
+                len = 3;
+            } else if (w.startsWith("zh", i) || w.startsWith("dj", i)) {
+                code = 'J';
+                len = 2;
+            } else if (w.startsWith("sh", i) || w.startsWith("ch", i) || w.startsWith("sch", i)) {
+                code = 'S';
+                len = w.startsWith("sch", i) ? 3 : 2;
+            } else if (w.startsWith("kh", i) || w.startsWith("ts", i) || w.startsWith("tz", i)) {
+                code = w.charAt(i) == 'k' ? 'G' : 'Z';
+                len = 2;
+            } else {
+                switch (w.charAt(i)) {
+                    case 'b': case 'p': case 'v': case 'f': case 'w': code = 'B'; break;
+                    case 'd': case 't': code = 'D'; break;
+                    case 'g': case 'k': case 'q': case 'h': case 'x': code = 'G'; break;
+                    case 'z': case 's': case 'c': code = 'Z'; break;
+                    case 'j': code = 'J'; break;
+                    case 'l': code = 'L'; break;
+                    case 'm': code = 'M'; break;
+                    case 'n': code = 'N'; break;
+                    case 'r': code = 'R'; break;
+                    default: code = i == 0 ? 'A' : 0;
+                }
+            }
+            if (code != 0 && (key.length() == 0 || key.charAt(key.length() - 1) != code)) key.append(code);
+            i += len;
+        }
+        return key.toString();
+    }
+
+    private static final class LongList {
+        long[] data = new long[16];
+        int size;
+
+        void add(long v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void sort() {
+            Arrays.sort(data, 0, size);
+        }
+    }
+
+    public static final class Hit {
+        private final int ordinal;
+        private final int cost;
+
+        Hit(int ordinal, int cost) {
+            this.ordinal = ordinal;
+            this.cost = cost;
+        }
+
+        public int ordinal() {
+            return ordinal;
+        }
+
+        public int cost() {
+            return cost;
+        }
+    }
+
+    /**
+     * Burkhard–Keller tree in flat arrays: children of a node are a linked list of
+     * {@code (distance, child)} edges.
+     */
+    private static final class BkTree {
+        private String[] word = new String[16];
+        private int[] firstChild = new int[16];
+        private int[] nextSibling = new int[16];
+        private int[] edge = new int[16];
+        private int size;
+        private int[] prev = new int[32];
+        private int[] cur = new int[32];
+
+        void add(String w) {
+            if (size == word.length) {
+                int cap = size * 2;
+                word = Arrays.copyOf(word, cap);
+                firstChild = Arrays.copyOf(firstChild, cap);
+                nextSibling = Arrays.copyOf(nextSibling, cap);
+                edge = Arrays.copyOf(edge, cap);
+            }
+            int node = size++;
+            word[node] = w;
+            firstChild[node] = -1;
+            nextSibling[node] = -1;
+            if (node == 0) return;
+            int cur = 0;
+            while (true) {
+                int d = distance(w, word[cur]);
+                if (d == 0) {
+                    size--;
+                    return;
+                }
+                int child = firstChild[cur];
+                while (child >= 0 && edge[child] != d) child = nextSibling[child];
+                if (child < 0) {
+                    edge[node] = d;
+                    nextSibling[node] = firstChild[cur];
+                    firstChild[cur] = node;
+                    return;
+                }
+                cur = child;
+            }
+        }
+
+        Map<String, Integer> search(String w, int max) {
+            Map<String, Integer> found = new HashMap<>();
+            if (size == 0 || max < 0) return found;
+            IntList stack = new IntList();
+            stack.add(0);
+            while (!stack.isEmpty()) {
+                int node = stack.removeLast();
+                int d = distance(w, word[node]);
+                if (d <= max) found.put(word[node], d);
+                for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+                    if (edge[c] >= d - max && edge[c] <= d + max) stack.add(c);
+                }
+            }
+            return found;
+        }
+
+        void clear() {
+            Arrays.fill(word, 0, size, null);
+            size = 0;
+        }
+
+        private int distance(String a, String b) {
+            if (prev.length <= b.length()) {
+                prev = new int[b.length() + 1];
+                cur = new int[b.length() + 1];
+            }
+            for (int j = 0; j <= b.length(); j++) prev[j] = j;
+            for (int i = 1; i <= a.length(); i++) {
+                cur[0] = i;
+                char ca = a.charAt(i - 1);
+                for (int j = 1; j <= b.length(); j++) {
+                    int sub = prev[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                    cur[j] = Math.min(sub, Math.min(prev[j], cur[j - 1]) + 1);
+                }
+                int[] t = prev;
+                prev = cur;
+                cur = t;
+            }
+            return prev[b.length()];
+        }
+    }
+}
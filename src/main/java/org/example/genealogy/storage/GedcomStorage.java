@@ -0,0 +1,457 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * GEDCOM 5.5 (UTF-8, lineage-linked) reader and writer. The reader streams the file
+ * line by line: each INDI becomes a {@link Repository#save saved} person as soon as the
+ * record ends, and each FAM becomes {@code linkSpouses} (HUSB + WIFE) and
+ * {@code linkParentChild} (each parent to each CHIL). Xrefs map to ids on first sight;
+ * edges whose people have not been read yet are parked and applied after the last line,
+ * so only the id map and forward edges are held in memory.
+ */
+public class GedcomStorage {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+
+    public Report importInto(String path, Repository repo) throws IOException {
+        try (Reader r = new InputStreamReader(Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8)) {
+            return read(r, repo);
+        }
+    }
+
+    public Report read(Reader reader, Repository repo) throws IOException {
+        Importer importer = new Importer(repo);
+        BufferedReader in = new BufferedReader(reader, BUFFER_SIZE);
+        String line;
+        while ((line = in.readLine()) != null) importer.line(line);
+        importer.finish();
+        repo.compact();
+        return importer.report;
+    }
+
+    public int export(String path, Iterable<Person> persons) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(Paths.get(path)), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            return write(w, persons);
+        }
+    }
+
+    /**
+     * Writes one INDI per person and one FAM per couple or parent set: children are
+     * grouped by their parents, and spouses without children get a FAM of their own.
+     */
+    public int write(Writer out, Iterable<Person> persons) throws IOException {
+        Map<UUID, Integer> xrefs = new HashMap<>();
+        Map<UUID, Gender> genders = new HashMap<>();
+        for (Person p : persons) {
+            xrefs.put(p.getId(), xrefs.size() + 1);
+            genders.put(p.getId(), p.getGender());
+        }
+
+        Map<Couple, Family> families = new LinkedHashMap<>();
+        Map<UUID, List<Family>> asSpouse = new HashMap<>();
+        Map<UUID, List<Family>> asChild = new HashMap<>();
+        for (Person p : persons) {
+            List<UUID> parents = new ArrayList<>();
+            for (UUID parentId : p.getParentIds()) {
+                if (xrefs.containsKey(parentId)) parents.add(parentId);
+            }
+            if (parents.size() == 2) {
+                addChild(family(families, asSpouse, genders, parents.get(0), parents.get(1)), p.getId(), asChild);
+            } else {
+                for (UUID parentId : parents) addChild(family(families, asSpouse, genders, parentId, null), p.getId(), asChild);
+            }
+            if (p.getSpouseId() != null && xrefs.containsKey(p.getSpouseId())) {
+                family(families, asSpouse, genders, p.getId(), p.getSpouseId());
+            }
+        }
+
+        out.write("0 HEAD\n1 SOUR genealogy-app\n1 GEDC\n2 VERS 5.5\n2 FORM LINEAGE-LINKED\n1 CHAR UTF-8\n");
+        int n = 0;
+        for (Person p : persons) {
+            out.write("0 @I" + xrefs.get(p.getId()) + "@ INDI\n");
+            String given = join(p.getFirstName(), p.getMiddleName());
+            out.write("1 NAME " + given + (given.isEmpty() ? "" : " ") + "/" + nullToEmpty(p.getLastName()) + "/\n");
+            if (!given.isEmpty()) out.write("2 GIVN " + given + "\n");
+            if (p.getLastName() != null) out.write("2 SURN " + p.getLastName() + "\n");
+            if (p.getGender() != null) out.write(p.getGender() == Gender.MALE ? "1 SEX M\n" : "1 SEX F\n");
+            writeEvent(out, "BIRT", p.getBirthDate());
+            writeEvent(out, "DEAT", p.getDeathDate());
+            for (Family f : asChild.getOrDefault(p.getId(), List.of())) out.write("1 FAMC @F" + f.index + "@\n");
+            for (Family f : asSpouse.getOrDefault(p.getId(), List.of())) out.write("1 FAMS @F" + f.index + "@\n");
+            n++;
+        }
+        for (Family f : families.values()) {
+            out.write("0 @F" + f.index + "@ FAM\n");
+            if (f.husband != null) out.write("1 HUSB @I" + xrefs.get(f.husband) + "@\n");
+            if (f.wife != null) out.write("1 WIFE @I" + xrefs.get(f.wife) + "@\n");
+            for (UUID c : f.children) out.write("1 CHIL @I" + xrefs.get(c) + "@\n");
+        }
+        out.write("0 TRLR\n");
+        out.flush();
+        return n;
+    }
+
+    private static Family family(Map<Couple, Family> families, Map<UUID, List<Family>> asSpouse,
+                                 Map<UUID, Gender> genders, UUID a, UUID b) {
+        return families.computeIfAbsent(new Couple(a, b), k -> {
+            Family f = new Family(families.size() + 1);
+            boolean swap = b != null && genders.get(a) == Gender.FEMALE && genders.get(b) != Gender.FEMALE;
+            UUID first = swap ? b : a;
+            UUID second = swap ? a : b;
+            if (second == null && genders.get(first) == Gender.FEMALE) {
+                f.wife = first;
+            } else {
+                f.husband = first;
+                f.wife = second;
+            }
+            asSpouse.computeIfAbsent(a, x -> new ArrayList<>()).add(f);
+            if (b != null) asSpouse.computeIfAbsent(b, x -> new ArrayList<>()).add(f);
+            return f;
+        });
+    }
+
+    private static void addChild(Family f, UUID child, Map<UUID, List<Family>> asChild) {
+        f.children.add(child);
+        asChild.computeIfAbsent(child, x -> new ArrayList<>()).add(f);
+    }
+
+    private static void writeEvent(Writer out, String tag, LocalDate date) throws IOException {
+        if (date == null) return;
+        out.write("1 " + tag + "\n2 DATE " + date.getDayOfMonth() + " " + MONTHS[date.getMonthValue() - 1] + " " + date.getYear() + "\n");
+    }
+
+    private static String join(String first, String middle) {
+        if (first == null || first.isEmpty()) return nullToEmpty(middle);
+        return middle == null || middle.isEmpty() ? first : first + " " + middle;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    /**
+     * Parses {@code [ABT|EST|CAL|BEF|AFT] [[day] month] year}; a missing day or month is
+     * taken as the first one. Returns null for anything else.
+     */
+    static LocalDate parseDate(String value) {
+        if (value.isBlank()) return null;
+        String[] t = value.trim().toUpperCase(Locale.ROOT).split("\\s+");
+        int i = 0;
+        if (t.length > 0 && (t[0].equals("ABT") || t[0].equals("EST") || t[0].equals("CAL")
+                || t[0].equals("BEF") || t[0].equals("AFT") || t[0].equals("FROM") || t[0].equals("BET"))) {
+            i = 1;
+        }
+        try {
+            int day = 1;
+            int month = 1;
+            if (i < t.length && Character.isDigit(t[i].charAt(0)) && i + 1 < t.length && !Character.isDigit(t[i + 1].charAt(0))) {
+                day = Integer.parseInt(t[i++]);
+            }
+            if (i < t.length && !Character.isDigit(t[i].charAt(0))) {
+                month = Arrays.asList(MONTHS).indexOf(t[i++]) + 1;
+                if (month == 0) return null;
+            }
+            if (i >= t.length) return null;
+            return LocalDate.of(Integer.parseInt(t[i]), month, day);
+        } catch (NumberFormatException | DateTimeException e) {
+            return null;
+        }
+    }
+
+
+    public static final class Report {
+        public static final int MAX_REASONS = 100;
+
+        private final long startNanos = System.nanoTime();
+        private long elapsedNanos;
+        private int records;
+        private int persons;
+        private int families;
+        private int links;
+        private int skipped;
+        private final List<String> reasons = new ArrayList<>();
+        private int unlisted;
+
+        public int records() {
+            return records;
+        }
+
+        public int persons() {
+            return persons;
+        }
+
+        public int families() {
+            return families;
+        }
+
+        /**
+         * Parent-child and spouse links that were applied.
+         */
+        public int links() {
+            return links;
+        }
+
+        /**
+         * Links that could not be applied: unknown xrefs, a second spouse, or a parent-child
+         * link that would make a person their own ancestor.
+         */
+        public int skipped() {
+            return skipped;
+        }
+
+        /**
+         * Why each skipped link was skipped, in file order; only the first
+         * {@value #MAX_REASONS} are kept.
+         */
+        public List<String> skippedReasons() {
+            return Collections.unmodifiableList(reasons);
+        }
+
+        /**
+         * Skipped links beyond the first {@value #MAX_REASONS}, whose reasons were not kept.
+         */
+        public int unlistedSkips() {
+            return unlisted;
+        }
+
+        private void skip(String reason) {
+            skipped++;
+            if (reasons.size() < MAX_REASONS) reasons.add(reason);
+            else unlisted++;
+        }
+
+        public double seconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double recordsPerSecond() {
+            return elapsedNanos == 0 ? 0 : records / seconds();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Записей: %d (людей %d, семей %d), связей %d, пропущено %d за %.2f с (%.0f записей/с)",
+                    records, persons, families, links, skipped, seconds(), recordsPerSecond());
+        }
+    }
+
+    private static final class Importer {
+        private final Repository repo;
+        private final Report report = new Report();
+        private final Map<String, UUID> ids = new HashMap<>();
+        /** Xrefs of the INDI records read so far; pending links keep xrefs for the report. */
+        private final Set<String> defined = new HashSet<>();
+        private final List<String[]> pendingParentChild = new ArrayList<>();
+        private final List<String[]> pendingSpouses = new ArrayList<>();
+
+        private String type;
+        private Person person;
+        private String personXref;
+        private String eventTag;
+        private String given;
+        private String husband;
+        private String wife;
+        private final List<String> children = new ArrayList<>();
+
+        Importer(Repository repo) {
+            this.repo = repo;
+        }
+
+        void line(String line) {
+            int i = 0;
+            int n = line.length();
+            while (i < n && (line.charAt(i) == ' ' || line.charAt(i) == '\uFEFF')) i++;
+            int level = 0;
+            int digits = i;
+            while (i < n && Character.isDigit(line.charAt(i))) level = level * 10 + (line.charAt(i++) - '0');
+            if (i == digits) return;
+            while (i < n && line.charAt(i) == ' ') i++;
+            String xref = null;
+            if (i < n && line.charAt(i) == '@') {
+                int end = line.indexOf('@', i + 1);
+                if (end < 0) return;
+                xref = line.substring(i, end + 1);
+                i = end + 1;
+                while (i < n && line.charAt(i) == ' ') i++;
+            }
+            int tagEnd = line.indexOf(' ', i);
+            if (tagEnd < 0) tagEnd = n;
+            String tag = line.substring(i, tagEnd);
+            String value = tagEnd < n ? line.substring(tagEnd + 1) : "";
+
+            if (level == 0) {
+                endRecord();
+                type = tag;
+                if ("INDI".equals(tag) && xref != null) {
+                    person = new Person();
+                    person.setId(id(xref));
+                    personXref = xref;
+                    given = null;
+                } else if (!"FAM".equals(tag)) {
+                    type = null;
+                }
+                return;
+            }
+            if ("INDI".equals(type)) {
+                indi(level, tag, value);
+            } else if ("FAM".equals(type) && level == 1) {
+                if ("HUSB".equals(tag)) husband = value.trim();
+                else if ("WIFE".equals(tag)) wife = value.trim();
+                else if ("CHIL".equals(tag)) children.add(value.trim());
+            }
+        }
+
+        private void indi(int level, String tag, String value) {
+            if (level == 1) {
+                eventTag = tag;
+                switch (tag) {
+                    case "NAME":
+                        int slash = value.indexOf('/');
+                        if (slash >= 0) {
+                            int close = value.indexOf('/', slash + 1);
+                            person.setLastName(emptyToNull(value.substring(slash + 1, close < 0 ? value.length() : close).trim()));
+                            given = value.substring(0, slash).trim();
+                        } else {
+                            given = value.trim();
+                        }
+                        break;
+                    case "SEX":
+                        if (value.startsWith("M")) person.setGender(Gender.MALE);
+                        else if (value.startsWith("F")) person.setGender(Gender.FEMALE);
+                        break;
+                    default:
+                        break;
+                }
+            } else if (level == 2) {
+                if ("NAME".equals(eventTag)) {
+                    if ("GIVN".equals(tag)) given = value.trim();
+                    else if ("SURN".equals(tag)) person.setLastName(emptyToNull(value.trim()));
+                } else if ("DATE".equals(tag)) {
+                    if ("BIRT".equals(eventTag)) person.setBirthDate(parseDate(value));
+                    else if ("DEAT".equals(eventTag)) person.setDeathDate(parseDate(value));
+                }
+            }
+        }
+
+        private void endRecord() {
+            if (person != null) {
+                if (given != null && !given.isEmpty()) {
+                    int space = given.indexOf(' ');
+                    person.setFirstName(space < 0 ? given : given.substring(0, space));
+                    if (space >= 0) person.setMiddleName(emptyToNull(given.substring(space + 1).trim()));
+                }
+                repo.save(person);
+                defined.add(personXref);
+                report.persons++;
+                report.records++;
+                person = null;
+            } else if ("FAM".equals(type)) {
+                if (husband != null && wife != null) link(false, husband, wife);
+                for (String child : children) {
+                    if (husband != null) link(true, husband, child);
+                    if (wife != null) link(true, wife, child);
+                }
+                husband = null;
+                wife = null;
+                children.clear();
+                report.families++;
+                report.records++;
+            }
+            type = null;
+            eventTag = null;
+        }
+
+        private void link(boolean parentChild, String a, String b) {
+            if (defined.contains(a) && defined.contains(b)) {
+                apply(parentChild, a, b);
+            } else {
+                (parentChild ? pendingParentChild : pendingSpouses).add(new String[]{a, b});
+            }
+        }
+
+        private void apply(boolean parentChild, String a, String b) {
+            try {
+                UUID x = ids.get(a);
+                UUID y = ids.get(b);
+                boolean ok = parentChild ? repo.linkParentChild(x, y) : repo.linkSpouses(x, y);
+                if (ok) report.links++;
+                else skip(parentChild, a, b, parentChild ? "not applied" : "a spouse is already set");
+            } catch (IllegalArgumentException e) {
+                skip(parentChild, a, b, e.getMessage());
+            }
+        }
+
+        private void skip(boolean parentChild, String a, String b, String reason) {
+            report.skip((parentChild ? "CHIL " : "HUSB/WIFE ") + a + " " + b + ": " + reason);
+        }
+
+        void finish() {
+            endRecord();
+            resolve(pendingSpouses, false);
+            resolve(pendingParentChild, true);
+            report.elapsedNanos = System.nanoTime() - report.startNanos;
+        }
+
+        private void resolve(List<String[]> edges, boolean parentChild) {
+            for (String[] e : edges) {
+                if (defined.contains(e[0]) && defined.contains(e[1])) apply(parentChild, e[0], e[1]);
+                else skip(parentChild, e[0], e[1], "no INDI record for " + (defined.contains(e[0]) ? e[1] : e[0]));
+            }
+            edges.clear();
+        }
+
+        private UUID id(String xref) {
+            return ids.computeIfAbsent(xref, x -> UUID.randomUUID());
+        }
+
+        private static String emptyToNull(String s) {
+            return s == null || s.isEmpty() ? null : s;
+        }
+    }
+
+
+    private static final class Couple {
+        final UUID a;
+        final UUID b;
+
+        Couple(UUID a, UUID b) {
+            boolean swap = b != null && a.compareTo(b) > 0;
+            this.a = swap ? b : a;
+            this.b = swap ? a : b;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Couple)) return false;
+            Couple c = (Couple) o;
+            return a.equals(c.a) && Objects.equals(b, c.b);
+        }
+
+        @Override
+        public int hashCode() {
+            return a.hashCode() * 31 + Objects.hashCode(b);
+        }
+    }
+
+    private static final class Family {
+        final int index;
+        final List<UUID> children = new ArrayList<>();
+        UUID husband;
+        UUID wife;
+
+        Family(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.example.genealogy.storage;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Person ids in the order of their canonical text, for short-ID lookup and cursor paging.
+ * That order is the unsigned order of the two 64-bit halves, which is not what
+ * {@link UUID#compareTo} gives. Like {@link DateIndex} it keeps a sorted base built at the
+ * last compaction plus a small delta of ordinals changed since then, hidden from the base.
+ * The delta is kept in id order too, so a lookup is a binary search of each and a merge,
+ * and compaction merges the two instead of sorting everything again.
+ */
+public class IdPrefixIndex {
+    private long[] msb = new long[16];
+    private long[] lsb = new long[16];
+    private boolean[] indexed = new boolean[16];
+    private boolean[] changed = new boolean[16];
+    /** Changed ordinals in id order, ties by ordinal; removed ones keep their id until compaction. */
+    private final IntList delta = new IntList();
+
+    /** Base ordinals sorted by id, with their halves sign-flipped so signed order is unsigned order. */
+    private int[] sorted = new int[0];
+    private long[] hi = new long[0];
+    private long[] lo = new long[0];
+
+    public synchronized void index(int ordinal, UUID id) {
+        ensure(ordinal + 1);
+        if (indexed[ordinal]) return;
+        if (changed[ordinal]) {
+            // A reused ordinal may get another id; take it out before its key moves.
+            delta.removeAt(deltaPosition(msb[ordinal], lsb[ordinal], ordinal));
+            changed[ordinal] = false;
+        }
+        msb[ordinal] = id.getMostSignificantBits() ^ Long.MIN_VALUE;
+        lsb[ordinal] = id.getLeastSignificantBits() ^ Long.MIN_VALUE;
+        indexed[ordinal] = true;
+        touch(ordinal);
+    }
+
+    public synchronized void remove(int ordinal) {
+        if (ordinal < 0 || ordinal >= indexed.length || !indexed[ordinal]) return;
+        indexed[ordinal] = false;
+        touch(ordinal);
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(indexed, false);
+        Arrays.fill(changed, false);
+        delta.clear();
+        sorted = new int[0];
+        hi = new long[0];
+        lo = new long[0];
+    }
+
+    public synchronized void compact() {
+        if (!delta.isEmpty()) build();
+    }
+
+    /**
+     * Up to {@code limit} ordinals whose id starts with {@code prefix}, in id order. The
+     * prefix is hex digits, dashes ignored, case-insensitive.
+     *
+     * @throws IllegalArgumentException if the prefix is empty or not hex
+     */
+    public synchronized IntList withPrefix(String prefix, int limit) {
+        String hex = prefix.replace("-", "").toLowerCase(Locale.ROOT);
+        if (hex.isEmpty() || hex.length() > 32 || !hex.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IllegalArgumentException("Not an ID prefix: " + prefix);
+        }
+        String low = pad(hex, '0');
+        String high = pad(hex, 'f');
+        long loHi = Long.parseUnsignedLong(low.substring(0, 16), 16) ^ Long.MIN_VALUE;
+        long loLo = Long.parseUnsignedLong(low.substring(16), 16) ^ Long.MIN_VALUE;
+        long hiHi = Long.parseUnsignedLong(high.substring(0, 16), 16) ^ Long.MIN_VALUE;
+        long hiLo = Long.parseUnsignedLong(high.substring(16), 16) ^ Long.MIN_VALUE;
+        return range(loHi, loLo, true, hiHi, hiLo, limit);
+    }
+
+    /**
+     * Up to {@code limit} ordinals whose id comes after {@code cursor} in id order, from
+     * the first one when the cursor is null. The cursor need not be indexed any more.
+     */
+    public synchronized IntList after(UUID cursor, int limit) {
+        if (cursor == null) return range(Long.MIN_VALUE, Long.MIN_VALUE, true, Long.MAX_VALUE, Long.MAX_VALUE, limit);
+        return range(cursor.getMostSignificantBits() ^ Long.MIN_VALUE,
+                cursor.getLeastSignificantBits() ^ Long.MIN_VALUE, false, Long.MAX_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    private IntList range(long fromHi, long fromLo, boolean inclusive, long toHi, long toLo, int limit) {
+        maybeCompact();
+        IntList base = new IntList(Math.max(1, Math.min(limit, 64)));
+        int i = lowerBound(fromHi, fromLo);
+        if (!inclusive && i < sorted.length && hi[i] == fromHi && lo[i] == fromLo) i++;
+        for (; i < sorted.length && base.size() < limit && compare(hi[i], lo[i], toHi, toLo) <= 0; i++) {
+            if (!changed[sorted[i]]) base.add(sorted[i]);
+        }
+        IntList extra = new IntList();
+        int k = deltaLowerBound(fromHi, fromLo);
+        for (; k < delta.size() && extra.size() < limit; k++) {
+            int ord = delta.get(k);
+            if (compare(msb[ord], lsb[ord], toHi, toLo) > 0) break;
+            if (!indexed[ord]) continue;
+            if (!inclusive && msb[ord] == fromHi && lsb[ord] == fromLo) continue;
+            extra.add(ord);
+        }
+        if (extra.isEmpty()) return base;
+        int[] e = extra.toArray();
+        IntList result = new IntList(Math.max(1, Math.min(limit, base.size() + e.length)));
+        int a = 0;
+        int b = 0;
+        while (result.size() < limit && (a < base.size() || b < e.length)) {
+            if (b == e.length || (a < base.size() && less(base.get(a), e[b]))) result.add(base.get(a++));
+            else result.add(e[b++]);
+        }
+        return result;
+    }
+
+    private void touch(int ord) {
+        if (!changed[ord]) {
+            changed[ord] = true;
+            delta.insert(deltaPosition(msb[ord], lsb[ord], ord), ord);
+        }
+    }
+
+    private void maybeCompact() {
+        // Each touch shifts the delta and each compaction walks the base, so about sqrt(n)
+        // entries balances the two.
+        if (delta.size() > Math.max(64, (int) Math.sqrt(sorted.length))) build();
+    }
+
+    /** Merges the unchanged part of the base with the live part of the delta, both in id order. */
+    private void build() {
+        int n = 0;
+        for (int ord : sorted) if (!changed[ord]) n++;
+        for (int k = 0; k < delta.size(); k++) if (indexed[delta.get(k)]) n++;
+        int[] merged = new int[n];
+        int a = 0;
+        int b = 0;
+        n = 0;
+        while (true) {
+            while (a < sorted.length && changed[sorted[a]]) a++;
+            while (b < delta.size() && !indexed[delta.get(b)]) b++;
+            if (a == sorted.length && b == delta.size()) break;
+            if (b == delta.size() || (a < sorted.length && less(sorted[a], delta.get(b)))) merged[n++] = sorted[a++];
+            else merged[n++] = delta.get(b++);
+        }
+        sorted = merged;
+        hi = new long[n];
+        lo = new long[n];
+        for (int i = 0; i < n; i++) {
+            hi[i] = msb[sorted[i]];
+            lo[i] = lsb[sorted[i]];
+        }
+        for (int i = 0; i < delta.size(); i++) changed[delta.get(i)] = false;
+        delta.clear();
+    }
+
+    private int deltaLowerBound(long keyHi, long keyLo) {
+        int l = 0;
+        int r = delta.size();
+        while (l < r) {
+            int mid = (l + r) >>> 1;
+            int ord = delta.get(mid);
+            if (compare(msb[ord], lsb[ord], keyHi, keyLo) < 0) l = mid + 1;
+            else r = mid;
+        }
+        return l;
+    }
+
+    /** Where {@code ord} with the given key sits, or would be inserted, in the delta. */
+    private int deltaPosition(long keyHi, long keyLo, int ord) {
+        int k = deltaLowerBound(keyHi, keyLo);
+        while (k < delta.size()) {
+            int d = delta.get(k);
+            if (msb[d] != keyHi || lsb[d] != keyLo || d >= ord) break;
+            k++;
+        }
+        return k;
+    }
+
+    private int lowerBound(long keyHi, long keyLo) {
+        int l = 0;
+        int r = sorted.length;
+        while (l < r) {
+            int mid = (l + r) >>> 1;
+            if (compare(hi[mid], lo[mid], keyHi, keyLo) < 0) l = mid + 1;
+            else r = mid;
+        }
+        return l;
+    }
+
+    private boolean less(int a, int b) {
+        return compare(msb[a], lsb[a], msb[b], lsb[b]) < 0;
+    }
+
+    private void ensure(int n) {
+        if (n <= indexed.length) return;
+        int cap = Math.max(n, indexed.length * 2);
+        msb = Arrays.copyOf(msb, cap);
+        lsb = Arrays.copyOf(lsb, cap);
+        indexed = Arrays.copyOf(indexed, cap);
+        changed = Arrays.copyOf(changed, cap);
+    }
+
+    private static int compare(long aHi, long aLo, long bHi, long bLo) {
+        int c = Long.compare(aHi, bHi);
+        return c != 0 ? c : Long.compare(aLo, bLo);
+    }
+
+    private static String pad(String hex, char fill) {
+        StringBuilder sb = new StringBuilder(32).append(hex);
+        while (sb.length() < 32) sb.append(fill);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.genealogy.storage;
+
+import java.util.Arrays;
+
+
+public class IntList {
+    private int[] data;
+    private int size;
+
+    public IntList() {
+        this(8);
+    }
+
+    public IntList(int capacity) {
+        this.data = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int value) {
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        data[size++] = value;
+    }
+
+    public void addAll(IntList other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.data, 0, data, size, other.size);
+        size += other.size;
+    }
+
+    public void insert(int index, int value) {
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        System.arraycopy(data, index, data, index + 1, size - index);
+        data[index] = value;
+        size++;
+    }
+
+    public int removeAt(int index) {
+        int v = data[index];
+        System.arraycopy(data, index + 1, data, index, size - index - 1);
+        size--;
+        return v;
+    }
+
+    public int removeLast() {
+        return data[--size];
+    }
+
+    public int get(int index) { return data[index]; }
+    public void set(int index, int value) { data[index] = value; }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void truncate(int newSize) {
+        if (newSize < size) size = newSize;
+    }
+
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    public int indexOf(int value) {
+        for (int i = 0; i < size; i++) {
+            if (data[i] == value) return i;
+        }
+        return -1;
+    }
+
+    public int binarySearch(int value) {
+        return Arrays.binarySearch(data, 0, size, value);
+    }
+
+    public void sort() {
+        Arrays.sort(data, 0, size);
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,147 @@
+package org.example.genealogy.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Binary snapshot plus journal segments in one directory. {@code snapshot-N.bin} holds
+ * the state before segment {@code journal-N.log}; recovery loads the newest snapshot and
+ * replays the segments from N on. Compaction rotates to a new segment and folds the
+ * closed ones into the next snapshot on a background thread, without touching the live
+ * repository: the old snapshot stays mapped and only the people the segments touch are
+ * held in memory while the new one is written.
+ */
+public class JournaledStore implements Closeable {
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.bin");
+    private static final Pattern SEGMENT = Pattern.compile("journal-(\\d+)\\.log");
+
+    private final Path dir;
+    private final long commitIntervalMillis;
+    private final BinarySnapshotStorage snapshots = new BinarySnapshotStorage();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private MutationJournal journal;
+    private int base;
+    private int segment;
+
+    public JournaledStore(Path dir, long commitIntervalMillis) {
+        this.dir = dir;
+        this.commitIntervalMillis = commitIntervalMillis;
+    }
+
+    public synchronized int recover(Repository repo) throws IOException {
+        if (journal != null) throw new IllegalStateException("Already recovered");
+        Files.createDirectories(dir);
+        base = latest(SNAPSHOT, 0);
+        int replayed = restore(base, Integer.MAX_VALUE, repo);
+        segment = Math.max(latest(SEGMENT, 0), base) + 1;
+        journal = new MutationJournal(segmentPath(segment), commitIntervalMillis);
+        repo.addListener(journal);
+        return replayed;
+    }
+
+    public MutationJournal journal() {
+        return journal;
+    }
+
+    public void sync() throws IOException {
+        journal.sync();
+    }
+
+    public synchronized Future<?> compactAsync() throws IOException {
+        int upTo = segment;
+        segment++;
+        journal.rotate(segmentPath(segment));
+        return compactor.submit(() -> {
+            fold(upTo);
+            return null;
+        });
+    }
+
+    private void fold(int upTo) throws IOException {
+        int from;
+        synchronized (this) {
+            from = base;
+        }
+        int next = upTo + 1;
+        Path tmp = dir.resolve("snapshot-" + next + ".bin.tmp");
+        Path snapshot = snapshotPath(from);
+        try (MappedSnapshot base = Files.exists(snapshot) ? snapshots.open(snapshot.toString()) : null) {
+            SnapshotOverlay overlay = new SnapshotOverlay(base);
+            for (int s : numbers(SEGMENT)) {
+                if (s >= from && s <= upTo) MutationJournal.replay(segmentPath(s), overlay);
+            }
+            snapshots.write(tmp.toString(), overlay);
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, snapshotPath(next), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this) {
+            base = next;
+        }
+        Files.deleteIfExists(snapshotPath(from));
+        for (int s = from; s <= upTo; s++) Files.deleteIfExists(segmentPath(s));
+    }
+
+    private int restore(int from, int upTo, Repository repo) throws IOException {
+        Path snapshot = snapshotPath(from);
+        if (Files.exists(snapshot)) snapshots.loadInto(snapshot.toString(), repo);
+        int replayed = 0;
+        for (int s : numbers(SEGMENT)) {
+            if (s >= from && s <= upTo) replayed += MutationJournal.replay(segmentPath(s), repo);
+        }
+        repo.compact();
+        return replayed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (journal != null) journal.close();
+    }
+
+    private Path snapshotPath(int n) {
+        return dir.resolve("snapshot-" + n + ".bin");
+    }
+
+    private Path segmentPath(int n) {
+        return dir.resolve("journal-" + n + ".log");
+    }
+
+    private int latest(Pattern pattern, int none) throws IOException {
+        int max = none;
+        for (int n : numbers(pattern)) max = Math.max(max, n);
+        return max;
+    }
+
+    private List<Integer> numbers(Pattern pattern) throws IOException {
+        List<Integer> list = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) {
+                Matcher m = pattern.matcher(f.getFileName().toString());
+                if (m.matches()) list.add(Integer.parseInt(m.group(1)));
+            }
+        }
+        list.sort(null);
+        return list;
+    }
+}
@@ -1,42 +1,99 @@
 package org.example.genealogy.storage;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.genealogy.metrics.Metrics;
+import org.example.genealogy.metrics.Timer;
 import org.example.genealogy.model.Person;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.time.LocalDate;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public class JsonStorage {
-    private final Gson gson;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Timer SAVE = Metrics.timer("json.save");
+    private static final Timer LOAD = Metrics.timer("json.load");
+
+    private final PersonTypeAdapter adapter = new PersonTypeAdapter();
+    private final boolean pretty;
 
     public JsonStorage() {
-        this.gson = new GsonBuilder()
-                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-                .setPrettyPrinting()
-                .create();
+        this(true);
+    }
+
+    public JsonStorage(boolean pretty) {
+        this.pretty = pretty;
     }
 
-    public void save(String path, Collection<Person> persons) throws IOException {
-        try (FileWriter fw = new FileWriter(path)) {
-            gson.toJson(persons, fw);
+    public void save(String path, Iterable<Person> persons) throws IOException {
+        long t = SAVE.start();
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(Paths.get(path)), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            write(w, persons);
+        } finally {
+            SAVE.stop(t);
         }
     }
 
+    public void write(Writer w, Iterable<Person> persons) throws IOException {
+        JsonWriter out = new JsonWriter(w);
+        if (pretty) out.setIndent("  ");
+        out.beginArray();
+        for (Person p : persons) adapter.write(out, p);
+        out.endArray();
+        out.flush();
+    }
+
     public List<Person> load(String path) throws IOException {
-        try (FileReader fr = new FileReader(path)) {
-            Person[] arr = gson.fromJson(fr, Person[].class);
-            List<Person> list = new ArrayList<>();
-            if (arr != null) {
-                for (Person p : arr) list.add(p);
+        List<Person> list = new ArrayList<>();
+        load(path, list::add);
+        return list;
+    }
+
+    public int load(String path, Consumer<Person> sink) throws IOException {
+        long t = LOAD.start();
+        try (Reader r = new BufferedReader(new InputStreamReader(
+                Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            return read(r, sink);
+        } finally {
+            LOAD.stop(t);
+        }
+    }
+
+    public int loadInto(String path, Repository repo) throws IOException {
+        int n = load(path, repo::saveSkippingCycles);
+        repo.compact();
+        return n;
+    }
+
+    public int read(Reader r, Consumer<Person> sink) throws IOException {
+        JsonReader in = new JsonReader(r);
+        try {
+            in.peek();
+        } catch (EOFException empty) {
+            return 0;
+        }
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        int n = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            Person p = adapter.read(in);
+            if (p != null) {
+                sink.accept(p);
+                n++;
             }
-            return list;
         }
+        in.endArray();
+        return n;
     }
 }
@@ -0,0 +1,360 @@
+package org.example.genealogy.storage;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Parent/child/spouse edges over dense int ordinals. Each direction is kept as a CSR
+ * base (offsets + targets) plus a small per-node delta for edges added since the
+ * last compaction; removed base edges are tombstoned in place.
+ */
+public class KinshipGraph {
+    public static final int NONE = -1;
+
+    /**
+     * Open-addressing table of {@code ordinal + 1} (0 is empty) by id hash, at most half
+     * full, over the ids kept as two long columns. Slots are only ever filled and a grown
+     * table is built before it is published, so an optimistic reader's probe always ends.
+     */
+    private int[] table = new int[32];
+    private long[] idHi = new long[16];
+    private long[] idLo = new long[16];
+    private int[] spouses = new int[16];
+    private int size;
+    private int spouseEdges;
+
+    private final Adjacency parents = new Adjacency();
+    private final Adjacency children = new Adjacency();
+    private final TopoOrder order = new TopoOrder(this);
+
+    public int intern(UUID id) {
+        int existing = ordinalOf(id);
+        if (existing != NONE) return existing;
+        int ord = size++;
+        if (ord == idHi.length) {
+            int cap = idHi.length * 2;
+            idHi = Arrays.copyOf(idHi, cap);
+            idLo = Arrays.copyOf(idLo, cap);
+            spouses = Arrays.copyOf(spouses, cap);
+        }
+        idHi[ord] = id.getMostSignificantBits();
+        idLo[ord] = id.getLeastSignificantBits();
+        spouses[ord] = NONE;
+        if (2 * size > table.length) {
+            int[] grown = new int[table.length * 2];
+            for (int i = 0; i < size; i++) place(grown, i);
+            table = grown;
+        } else {
+            place(table, ord);
+        }
+        parents.ensureNodes(size);
+        children.ensureNodes(size);
+        order.addNode(ord);
+        return ord;
+    }
+
+    /**
+     * Approximate heap bytes of the id to ordinal mapping: the hash table and the two id
+     * columns.
+     */
+    public long ordinalFootprint() {
+        return 3 * 16L + 4L * table.length + 16L * idHi.length;
+    }
+
+    public int ordinalOf(UUID id) {
+        if (id == null) return NONE;
+        long hi = id.getMostSignificantBits();
+        long lo = id.getLeastSignificantBits();
+        int[] t = table;
+        int mask = t.length - 1;
+        for (int i = hash(hi, lo) & mask; ; i = (i + 1) & mask) {
+            int slot = t[i];
+            if (slot == 0) return NONE;
+            if (idHi[slot - 1] == hi && idLo[slot - 1] == lo) return slot - 1;
+        }
+    }
+
+    private void place(int[] t, int ord) {
+        int mask = t.length - 1;
+        int i = hash(idHi[ord], idLo[ord]) & mask;
+        while (t[i] != 0) i = (i + 1) & mask;
+        t[i] = ord + 1;
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    public UUID idOf(int ordinal) {
+        return new UUID(idHi[ordinal], idLo[ordinal]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * @throws IllegalArgumentException if the child is already an ancestor of the parent;
+     *                                  the graph is left unchanged
+     */
+    public boolean addParentChild(int parent, int child) {
+        if (children.contains(parent, child)) return false;
+        order.beforeEdge(parent, child);
+        children.add(parent, child);
+        parents.add(child, parent);
+        order.afterEdgeChange(child);
+        maybeCompact();
+        return true;
+    }
+
+    public boolean removeParentChild(int parent, int child) {
+        if (!children.remove(parent, child)) return false;
+        parents.remove(child, parent);
+        order.afterEdgeChange(child);
+        return true;
+    }
+
+    public boolean hasParentChild(int parent, int child) {
+        return children.contains(parent, child);
+    }
+
+    public void setSpouses(int a, int b) {
+        if (spouses[a] == b && spouses[b] == a) return;
+        clearSpouse(a);
+        clearSpouse(b);
+        spouses[a] = b;
+        spouses[b] = a;
+        spouseEdges++;
+    }
+
+    public void clearSpouse(int a) {
+        int b = spouses[a];
+        if (b == NONE) return;
+        spouses[a] = NONE;
+        if (spouses[b] == a) spouses[b] = NONE;
+        spouseEdges--;
+    }
+
+    public int spouseOf(int ordinal) {
+        return spouses[ordinal];
+    }
+
+
+    public int appendParents(int ordinal, IntList out) {
+        return parents.appendTo(ordinal, out);
+    }
+
+    public int appendChildren(int ordinal, IntList out) {
+        return children.appendTo(ordinal, out);
+    }
+
+    public int appendNeighbours(int ordinal, IntList out) {
+        int n = parents.appendTo(ordinal, out) + children.appendTo(ordinal, out);
+        if (spouses[ordinal] != NONE) {
+            out.add(spouses[ordinal]);
+            n++;
+        }
+        return n;
+    }
+
+    public int parentCount(int ordinal) {
+        return parents.count(ordinal);
+    }
+
+    public int childCount(int ordinal) {
+        return children.count(ordinal);
+    }
+
+    public int parentChildEdgeCount() {
+        return children.liveEdges();
+    }
+
+    public int spouseEdgeCount() {
+        return spouseEdges;
+    }
+
+    /**
+     * 0 for someone without parents, otherwise one more than their latest parent.
+     */
+    public int generationOf(int ordinal) {
+        return order.generationOf(ordinal);
+    }
+
+    /**
+     * Number of generations, i.e. the highest generation plus one.
+     */
+    public int generations() {
+        return order.generations();
+    }
+
+    public void appendGeneration(int generation, IntList out) {
+        order.appendGeneration(generation, out);
+    }
+
+
+    public void detach(int ordinal) {
+        IntList tmp = new IntList();
+        parents.appendTo(ordinal, tmp);
+        for (int i = 0; i < tmp.size(); i++) removeParentChild(tmp.get(i), ordinal);
+        tmp.clear();
+        children.appendTo(ordinal, tmp);
+        for (int i = 0; i < tmp.size(); i++) removeParentChild(ordinal, tmp.get(i));
+        clearSpouse(ordinal);
+    }
+
+    public void compact() {
+        parents.compact(size);
+        children.compact(size);
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        spouseEdges = 0;
+        parents.clear();
+        children.clear();
+        order.clear();
+    }
+
+    private void maybeCompact() {
+        if (children.deltaEdges > Math.max(4096, children.baseEdges / 4)) compact();
+    }
+
+
+    private static final class Adjacency {
+        private int[] offsets = new int[1];
+        private int[] targets = new int[0];
+        private int baseNodes;
+        private int baseEdges;
+
+        private int[][] delta = new int[16][];
+        private int[] deltaLen = new int[16];
+        private int deltaEdges;
+
+        void ensureNodes(int n) {
+            if (n > delta.length) {
+                int cap = Math.max(n, delta.length * 2);
+                delta = Arrays.copyOf(delta, cap);
+                deltaLen = Arrays.copyOf(deltaLen, cap);
+            }
+        }
+
+        boolean contains(int v, int t) {
+            if (v < baseNodes) {
+                for (int i = offsets[v], end = offsets[v + 1]; i < end; i++) {
+                    if (targets[i] == t) return true;
+                }
+            }
+            int[] d = delta[v];
+            for (int i = 0, n = deltaLen[v]; i < n; i++) {
+                if (d[i] == t) return true;
+            }
+            return false;
+        }
+
+        boolean add(int v, int t) {
+            if (contains(v, t)) return false;
+            int[] d = delta[v];
+            int n = deltaLen[v];
+            if (d == null) {
+                d = delta[v] = new int[2];
+            } else if (n == d.length) {
+                d = delta[v] = Arrays.copyOf(d, n * 2);
+            }
+            d[n] = t;
+            deltaLen[v] = n + 1;
+            deltaEdges++;
+            return true;
+        }
+
+        boolean remove(int v, int t) {
+            if (v < baseNodes) {
+                for (int i = offsets[v], end = offsets[v + 1]; i < end; i++) {
+                    if (targets[i] == t) {
+                        targets[i] = NONE;
+                        baseEdges--;
+                        return true;
+                    }
+                }
+            }
+            int[] d = delta[v];
+            int n = deltaLen[v];
+            for (int i = 0; i < n; i++) {
+                if (d[i] == t) {
+                    d[i] = d[n - 1];
+                    deltaLen[v] = n - 1;
+                    deltaEdges--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int appendTo(int v, IntList out) {
+            int n = 0;
+            if (v < baseNodes) {
+                for (int i = offsets[v], end = offsets[v + 1]; i < end; i++) {
+                    if (targets[i] != NONE) {
+                        out.add(targets[i]);
+                        n++;
+                    }
+                }
+            }
+            int[] d = delta[v];
+            for (int i = 0, len = deltaLen[v]; i < len; i++) {
+                out.add(d[i]);
+                n++;
+            }
+            return n;
+        }
+
+        int count(int v) {
+            int n = deltaLen[v];
+            if (v < baseNodes) {
+                for (int i = offsets[v], end = offsets[v + 1]; i < end; i++) {
+                    if (targets[i] != NONE) n++;
+                }
+            }
+            return n;
+        }
+
+        int liveEdges() {
+            return baseEdges + deltaEdges;
+        }
+
+        void compact(int nodes) {
+            int[] off = new int[nodes + 1];
+            for (int v = 0; v < nodes; v++) off[v + 1] = off[v] + count(v);
+            int[] tg = new int[off[nodes]];
+            for (int v = 0; v < nodes; v++) {
+                int pos = off[v];
+                if (v < baseNodes) {
+                    for (int i = offsets[v], end = offsets[v + 1]; i < end; i++) {
+                        if (targets[i] != NONE) tg[pos++] = targets[i];
+                    }
+                }
+                int[] d = delta[v];
+                for (int i = 0, len = deltaLen[v]; i < len; i++) tg[pos++] = d[i];
+                delta[v] = null;
+                deltaLen[v] = 0;
+            }
+            offsets = off;
+            targets = tg;
+            baseNodes = nodes;
+            baseEdges = tg.length;
+            deltaEdges = 0;
+        }
+
+        void clear() {
+            offsets = new int[1];
+            targets = new int[0];
+            baseNodes = 0;
+            baseEdges = 0;
+            Arrays.fill(delta, null);
+            Arrays.fill(deltaLen, 0);
+            deltaEdges = 0;
+        }
+    }
+}
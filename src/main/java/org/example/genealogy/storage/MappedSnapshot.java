@@ -0,0 +1,182 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Read-only view of a {@link BinarySnapshotStorage} file mapped into memory. Fields can
+ * be queried in place by record index; {@link #personAt(int)} materialises a Person.
+ */
+public class MappedSnapshot implements Closeable, Iterable<Person> {
+    private final FileChannel channel;
+    private final int size;
+    private final int stringCount;
+    private final ByteBuffer strings;
+    private final IntBuffer stringOffsets;
+    private final ByteBuffer records;
+    private final IntBuffer parentEdges;
+    private final IntBuffer childEdges;
+
+    MappedSnapshot(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinarySnapshotStorage.HEADER_SIZE);
+            if (header.getInt() != BinarySnapshotStorage.MAGIC) throw new IOException("Not a genealogy snapshot: " + path);
+            int version = header.getInt();
+            if (version != BinarySnapshotStorage.VERSION) throw new IOException("Unsupported snapshot version " + version);
+            this.size = header.getInt();
+            this.stringCount = header.getInt();
+            long stringsOffset = header.getLong();
+            long recordsOffset = header.getLong();
+            long edgesOffset = header.getLong();
+
+            long offsetsBytes = 4L * (stringCount + 1);
+            this.stringOffsets = map(stringsOffset, offsetsBytes).asIntBuffer();
+            long dataBytes = stringOffsets.get(stringCount);
+            this.strings = map(stringsOffset + offsetsBytes, dataBytes);
+            this.records = map(recordsOffset, (long) BinarySnapshotStorage.RECORD_SIZE * size);
+            ByteBuffer counts = map(edgesOffset, 8);
+            int parents = counts.getInt(0);
+            int children = counts.getInt(4);
+            this.parentEdges = map(edgesOffset + 8, 4L * parents).asIntBuffer();
+            this.childEdges = map(edgesOffset + 8 + 4L * parents, 4L * children).asIntBuffer();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer map(long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) throw new IOException("Snapshot section too large: " + length);
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public UUID idAt(int i) {
+        int base = i * BinarySnapshotStorage.RECORD_SIZE;
+        return new UUID(records.getLong(base), records.getLong(base + 8));
+    }
+
+    public int indexOf(UUID id) {
+        int i = rank(id);
+        if (i == size) return BinarySnapshotStorage.NONE;
+        int base = i * BinarySnapshotStorage.RECORD_SIZE;
+        return records.getLong(base) == id.getMostSignificantBits() && records.getLong(base + 8) == id.getLeastSignificantBits()
+                ? i : BinarySnapshotStorage.NONE;
+    }
+
+    /**
+     * Number of records whose id sorts before {@code id}.
+     */
+    int rank(UUID id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int base = mid * BinarySnapshotStorage.RECORD_SIZE;
+            int c = Long.compareUnsigned(records.getLong(base), msb);
+            if (c == 0) c = Long.compareUnsigned(records.getLong(base + 8), lsb);
+            if (c < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    public Optional<Person> find(UUID id) {
+        int i = indexOf(id);
+        return i == BinarySnapshotStorage.NONE ? Optional.empty() : Optional.of(personAt(i));
+    }
+
+    public String lastNameAt(int i) { return string(field(i, 16)); }
+    public String firstNameAt(int i) { return string(field(i, 20)); }
+    public String middleNameAt(int i) { return string(field(i, 24)); }
+    public int birthEpochDayAt(int i) { return field(i, 28); }
+    public int deathEpochDayAt(int i) { return field(i, 32); }
+    public Gender genderAt(int i) { return BinarySnapshotStorage.gender(field(i, 36)); }
+    public int spouseAt(int i) { return field(i, 40); }
+
+    public int parentCountAt(int i) { return field(i, 48); }
+    public int parentAt(int i, int k) { return parentEdges.get(field(i, 44) + k); }
+    public int childCountAt(int i) { return field(i, 56); }
+    public int childAt(int i, int k) { return childEdges.get(field(i, 52) + k); }
+
+    public Person personAt(int i) {
+        Person p = new Person();
+        p.setId(idAt(i));
+        p.setLastName(lastNameAt(i));
+        p.setFirstName(firstNameAt(i));
+        p.setMiddleName(middleNameAt(i));
+        p.setBirthDate(BinarySnapshotStorage.fromEpochDay(birthEpochDayAt(i)));
+        p.setDeathDate(BinarySnapshotStorage.fromEpochDay(deathEpochDayAt(i)));
+        p.setGender(genderAt(i));
+        int parents = parentCountAt(i);
+        Set<UUID> parentIds = new HashSet<>(Math.max(4, parents * 2));
+        for (int k = 0; k < parents; k++) parentIds.add(idAt(parentAt(i, k)));
+        p.setParentIds(parentIds);
+        int children = childCountAt(i);
+        Set<UUID> childIds = new HashSet<>(Math.max(4, children * 2));
+        for (int k = 0; k < children; k++) childIds.add(idAt(childAt(i, k)));
+        p.setChildIds(childIds);
+        int spouse = spouseAt(i);
+        if (spouse != BinarySnapshotStorage.NONE) p.setSpouseId(idAt(spouse));
+        return p;
+    }
+
+    @Override
+    public Iterator<Person> iterator() {
+        return new Iterator<>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public Person next() {
+                if (i >= size) throw new NoSuchElementException();
+                return personAt(i++);
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int field(int i, int offset) {
+        return records.getInt(i * BinarySnapshotStorage.RECORD_SIZE + offset);
+    }
+
+    private String string(int code) {
+        if (code == BinarySnapshotStorage.NONE) return null;
+        int from = stringOffsets.get(code);
+        int to = stringOffsets.get(code + 1);
+        byte[] bytes = new byte[to - from];
+        for (int k = 0; k < bytes.length; k++) bytes[k] = strings.get(from + k);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Heap store: an ordinal-indexed array for lookups plus an id map whose values view is
+ * handed out by {@link #values}. The array is swapped out whole when it grows, so the
+ * reference is volatile; its slots are only consistent for readers holding the
+ * repository's lock.
+ */
+public class MemoryPersonStore implements PersonStore {
+    private final Map<UUID, Person> persons;
+    private volatile Person[] byOrdinal = new Person[16];
+
+    public MemoryPersonStore(Map<UUID, Person> persons) {
+        this.persons = persons;
+    }
+
+    @Override
+    public Person get(int ordinal) {
+        Person[] a = byOrdinal;
+        return ordinal >= 0 && ordinal < a.length ? a[ordinal] : null;
+    }
+
+    @Override
+    public void put(int ordinal, Person p) {
+        persons.put(p.getId(), p);
+        Person[] a = byOrdinal;
+        if (ordinal >= a.length) {
+            a = Arrays.copyOf(a, Math.max(ordinal + 1, a.length * 2));
+            a[ordinal] = p;
+            byOrdinal = a;
+        } else {
+            a[ordinal] = p;
+        }
+    }
+
+    @Override
+    public void remove(int ordinal, Person p) {
+        persons.remove(p.getId());
+        byOrdinal[ordinal] = null;
+    }
+
+    @Override
+    public int size() {
+        return persons.size();
+    }
+
+    @Override
+    public void clear() {
+        persons.clear();
+        Arrays.fill(byOrdinal, null);
+    }
+
+    @Override
+    public Collection<Person> values() {
+        return persons.values();
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * One step of a {@link Repository#applyBatch batch}: adding or deleting a person, or
+ * linking/unlinking a parent-child or spouse pair.
+ */
+public final class Mutation {
+    public enum Kind {
+        ADD, DELETE, LINK_PARENT_CHILD, UNLINK_PARENT_CHILD, LINK_SPOUSES, UNLINK_SPOUSES
+    }
+
+    private final Kind kind;
+    private final Person person;
+    private final UUID a;
+    private final UUID b;
+
+    private Mutation(Kind kind, Person person, UUID a, UUID b) {
+        this.kind = kind;
+        this.person = person;
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * Adds a new person; relations are expected to come as separate link mutations.
+     */
+    public static Mutation add(Person p) {
+        return new Mutation(Kind.ADD, Objects.requireNonNull(p), p.getId(), null);
+    }
+
+    /**
+     * Deletes a person together with all of their parent, child and spouse links.
+     */
+    public static Mutation delete(UUID id) {
+        return new Mutation(Kind.DELETE, null, id, null);
+    }
+
+    public static Mutation linkParentChild(UUID parentId, UUID childId) {
+        return new Mutation(Kind.LINK_PARENT_CHILD, null, parentId, childId);
+    }
+
+    public static Mutation unlinkParentChild(UUID parentId, UUID childId) {
+        return new Mutation(Kind.UNLINK_PARENT_CHILD, null, parentId, childId);
+    }
+
+    public static Mutation linkSpouses(UUID aId, UUID bId) {
+        return new Mutation(Kind.LINK_SPOUSES, null, aId, bId);
+    }
+
+    public static Mutation unlinkSpouses(UUID aId, UUID bId) {
+        return new Mutation(Kind.UNLINK_SPOUSES, null, aId, bId);
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public Person person() {
+        return person;
+    }
+
+    /**
+     * The person for ADD/DELETE, the parent for parent-child kinds, the first spouse otherwise.
+     */
+    public UUID first() {
+        return a;
+    }
+
+    public UUID second() {
+        return b;
+    }
+
+    @Override
+    public String toString() {
+        return b == null ? kind + " " + a : kind + " " + a + " " + b;
+    }
+}
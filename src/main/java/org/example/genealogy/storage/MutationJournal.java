@@ -0,0 +1,473 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of repository mutations. Entries are framed as
+ * {@code [int length][payload][int crc32]}; appends are buffered in memory and written
+ * with one fsync per batch. A writer that must not acknowledge before its entry is on
+ * disk calls {@link #awaitDurable()}: it wakes the flusher and blocks, and every writer
+ * that arrives while an fsync is running is committed by the next one (group commit).
+ * Entries nobody waits for are flushed once per commit interval. A torn or corrupt tail
+ * is ignored on replay.
+ */
+public class MutationJournal implements RepositoryListener, Closeable {
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte LINK_PARENT_CHILD = 3;
+    static final byte UNLINK_PARENT_CHILD = 4;
+    static final byte LINK_SPOUSES = 5;
+    static final byte UNLINK_SPOUSES = 6;
+    static final byte CLEAR = 7;
+    /** PUT followed by the person's parent, child and spouse ids; older journals hold plain PUTs. */
+    static final byte PUT_WITH_RELATIONS = 8;
+
+    private static final int MAX_PENDING_BYTES = 1 << 20;
+
+    private final Object lock = new Object();
+    private final ScheduledExecutorService flusher;
+    private FileChannel channel;
+    private Buffer pending = new Buffer();
+    private Buffer spare = new Buffer();
+    private long appended;
+    private long durable;
+    private boolean flushQueued;
+    private IOException failure;
+
+    public MutationJournal(Path path, long commitIntervalMillis) throws IOException {
+        this.channel = openSegment(path);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+
+    @Override
+    public void onSave(Person p) {
+        synchronized (lock) {
+            try {
+                DataOutputStream out = begin(PUT_WITH_RELATIONS);
+                writeId(out, p.getId());
+                writeString(out, p.getLastName());
+                writeString(out, p.getFirstName());
+                writeString(out, p.getMiddleName());
+                out.writeInt(BinarySnapshotStorage.epochDay(p.getBirthDate()));
+                out.writeInt(BinarySnapshotStorage.epochDay(p.getDeathDate()));
+                out.writeByte(p.getGender() == null ? BinarySnapshotStorage.NONE : p.getGender().ordinal());
+                writeIds(out, p.getParentIds());
+                writeIds(out, p.getChildIds());
+                out.writeBoolean(p.getSpouseId() != null);
+                if (p.getSpouseId() != null) writeId(out, p.getSpouseId());
+                end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void onDelete(UUID id) {
+        append(DELETE, id, null);
+    }
+
+    @Override
+    public void onLinkParentChild(UUID parentId, UUID childId) {
+        append(LINK_PARENT_CHILD, parentId, childId);
+    }
+
+    @Override
+    public void onUnlinkParentChild(UUID parentId, UUID childId) {
+        append(UNLINK_PARENT_CHILD, parentId, childId);
+    }
+
+    @Override
+    public void onLinkSpouses(UUID aId, UUID bId) {
+        append(LINK_SPOUSES, aId, bId);
+    }
+
+    @Override
+    public void onUnlinkSpouses(UUID aId, UUID bId) {
+        append(UNLINK_SPOUSES, aId, bId);
+    }
+
+    @Override
+    public void onClear() {
+        append(CLEAR, null, null);
+    }
+
+    private void append(byte op, UUID a, UUID b) {
+        synchronized (lock) {
+            try {
+                DataOutputStream out = begin(op);
+                if (a != null) writeId(out, a);
+                if (b != null) writeId(out, b);
+                end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private DataOutputStream begin(byte op) throws IOException {
+        if (failure != null) throw new UncheckedIOException("Journal is unusable", failure);
+        pending.beginEntry();
+        pending.data.writeByte(op);
+        return pending.data;
+    }
+
+    private void end() throws IOException {
+        pending.endEntry();
+        appended++;
+        if (pending.size() >= MAX_PENDING_BYTES && !flusher.isShutdown()) flusher.execute(this::flushQuietly);
+    }
+
+
+    /**
+     * Blocks until every entry appended before the call is durable.
+     */
+    public void awaitDurable() throws IOException {
+        long upTo;
+        synchronized (lock) {
+            upTo = appended;
+        }
+        awaitDurable(upTo);
+    }
+
+    /**
+     * Blocks until at least {@code entries} entries are durable; see
+     * {@link #appendedEntries()}.
+     */
+    public void awaitDurable(long entries) throws IOException {
+        synchronized (lock) {
+            while (durable < entries) {
+                if (failure != null) throw failure;
+                if (flusher.isShutdown()) break;
+                if (!flushQueued) {
+                    flushQueued = true;
+                    flusher.execute(this::flushQuietly);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the journal");
+                }
+            }
+            if (durable >= entries) return;
+        }
+        sync();
+    }
+
+    /**
+     * Writes and fsyncs everything appended so far.
+     */
+    public synchronized void sync() throws IOException {
+        Buffer batch;
+        long upTo;
+        synchronized (lock) {
+            flushQueued = false;
+            if (failure != null) throw failure;
+            if (durable == appended) return;
+            batch = pending;
+            pending = spare;
+            upTo = appended;
+        }
+        boolean written = false;
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(batch.bytes.buf(), 0, batch.size());
+            while (bytes.hasRemaining()) channel.write(bytes);
+            channel.force(false);
+            written = true;
+        } catch (IOException e) {
+            synchronized (lock) {
+                failure = e;
+            }
+            throw e;
+        } finally {
+            batch.reset();
+            synchronized (lock) {
+                spare = batch;
+                if (written) durable = Math.max(durable, upTo);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Flushes the current segment and continues appending to a new file.
+     */
+    public synchronized void rotate(Path next) throws IOException {
+        sync();
+        FileChannel old = channel;
+        channel = openSegment(next);
+        old.close();
+    }
+
+    public long appendedEntries() {
+        synchronized (lock) {
+            return appended;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            sync();
+        } catch (IOException ignored) {
+            // kept in failure and rethrown to the next writer
+        }
+    }
+
+    private static FileChannel openSegment(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        ch.force(true);
+        return ch;
+    }
+
+
+    /**
+     * What replay does with each entry: a repository, or an overlay over a snapshot file
+     * when compaction folds segments without loading everyone.
+     */
+    interface Target {
+        Optional<Person> find(UUID id);
+
+        void save(Person p);
+
+        void delete(UUID id);
+
+        void linkParentChild(UUID parentId, UUID childId);
+
+        void unlinkParentChild(UUID parentId, UUID childId);
+
+        void linkSpouses(UUID aId, UUID bId);
+
+        void unlinkSpouses(UUID aId, UUID bId);
+
+        void clear();
+    }
+
+    public static int replay(Path path, Repository repo) throws IOException {
+        return replay(path, new Target() {
+            @Override
+            public Optional<Person> find(UUID id) {
+                return repo.findById(id);
+            }
+
+            @Override
+            public void save(Person p) {
+                repo.saveSkippingCycles(p);
+            }
+
+            @Override
+            public void delete(UUID id) {
+                repo.delete(id);
+            }
+
+            @Override
+            public void linkParentChild(UUID parentId, UUID childId) {
+                try {
+                    repo.linkParentChild(parentId, childId);
+                } catch (IllegalArgumentException cycle) {
+                    // written by an older build that did not check; the rest of the journal still applies
+                }
+            }
+
+            @Override
+            public void unlinkParentChild(UUID parentId, UUID childId) {
+                repo.unlinkParentChild(parentId, childId);
+            }
+
+            @Override
+            public void linkSpouses(UUID aId, UUID bId) {
+                repo.linkSpouses(aId, bId);
+            }
+
+            @Override
+            public void unlinkSpouses(UUID aId, UUID bId) {
+                repo.unlinkSpouses(aId, bId);
+            }
+
+            @Override
+            public void clear() {
+                repo.clear();
+            }
+        });
+    }
+
+    static int replay(Path path, Target target) throws IOException {
+        if (!Files.exists(path)) return 0;
+        int applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    if (length <= 0 || length > MAX_PENDING_BYTES) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != in.readInt()) break;
+                } catch (EOFException torn) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), target);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(DataInputStream in, Target target) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case PUT:
+            case PUT_WITH_RELATIONS: {
+                UUID id = readId(in);
+                Person p = op == PUT_WITH_RELATIONS ? new Person() : target.find(id).orElseGet(Person::new);
+                p.setId(id);
+                p.setLastName(readString(in));
+                p.setFirstName(readString(in));
+                p.setMiddleName(readString(in));
+                p.setBirthDate(BinarySnapshotStorage.fromEpochDay(in.readInt()));
+                p.setDeathDate(BinarySnapshotStorage.fromEpochDay(in.readInt()));
+                p.setGender(BinarySnapshotStorage.gender(in.readByte()));
+                if (op == PUT_WITH_RELATIONS) {
+                    readIds(in, p.getParentIds());
+                    readIds(in, p.getChildIds());
+                    p.setSpouseId(in.readBoolean() ? readId(in) : null);
+                }
+                target.save(p);
+                break;
+            }
+            case DELETE:
+                target.delete(readId(in));
+                break;
+            case LINK_PARENT_CHILD:
+                target.linkParentChild(readId(in), readId(in));
+                break;
+            case UNLINK_PARENT_CHILD:
+                target.unlinkParentChild(readId(in), readId(in));
+                break;
+            case LINK_SPOUSES:
+                target.linkSpouses(readId(in), readId(in));
+                break;
+            case UNLINK_SPOUSES:
+                target.unlinkSpouses(readId(in), readId(in));
+                break;
+            case CLEAR:
+                target.clear();
+                break;
+            default:
+                throw new IOException("Unknown journal entry " + op);
+        }
+    }
+
+    static void writeId(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readId(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeIds(DataOutputStream out, Set<UUID> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (UUID id : ids) writeId(out, id);
+    }
+
+    private static void readIds(DataInputStream in, Set<UUID> into) throws IOException {
+        into.clear();
+        for (int n = in.readInt(); n > 0; n--) into.add(readId(in));
+    }
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+
+    private static final class Bytes extends ByteArrayOutputStream {
+        Bytes() {
+            super(1 << 12);
+        }
+
+        byte[] buf() {
+            return buf;
+        }
+
+        void putInt(int pos, int v) {
+            buf[pos] = (byte) (v >>> 24);
+            buf[pos + 1] = (byte) (v >>> 16);
+            buf[pos + 2] = (byte) (v >>> 8);
+            buf[pos + 3] = (byte) v;
+        }
+    }
+
+    private static final class Buffer {
+        final Bytes bytes = new Bytes();
+        final DataOutputStream data = new DataOutputStream(bytes);
+        final CRC32 crc = new CRC32();
+        int entryStart;
+
+        void beginEntry() throws IOException {
+            entryStart = bytes.size();
+            data.writeInt(0);
+        }
+
+        void endEntry() throws IOException {
+            int payload = bytes.size() - entryStart - 4;
+            bytes.putInt(entryStart, payload);
+            crc.reset();
+            crc.update(bytes.buf(), entryStart + 4, payload);
+            data.writeInt((int) crc.getValue());
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void reset() {
+            bytes.reset();
+        }
+    }
+}
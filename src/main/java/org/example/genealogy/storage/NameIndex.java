@@ -0,0 +1,323 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.util.*;
+
+/**
+ * Trigram inverted index over the lower-cased full name. Posting lists are sorted
+ * ordinal arrays; a query intersects the lists of its trigrams and then verifies the
+ * substring match, so results are exactly those of a {@code contains} scan.
+ * <p>
+ * Results come in name order (last name, first name, then ordinal). Like
+ * {@link DateIndex} that order is a sorted base built at the last compaction plus a
+ * delta of ordinals changed since then; a trigram query keeps the best
+ * {@code offset + limit} base hits by their position in the base, and a query too
+ * short for trigrams walks the base in order and stops once it has that many.
+ * <p>
+ * Names are kept as codes into a dictionary of distinct name parts, so per person the
+ * index holds a few ints rather than strings of its own.
+ */
+public class NameIndex {
+    private static final Comparator<String> NULLS_LAST = Comparator.nullsLast(String::compareTo);
+
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private final StringDictionary dictionary = new StringDictionary();
+    /** Codes of the last and first name as given, for ordering. */
+    private int[] lastNames = new int[16];
+    private int[] firstNames = new int[16];
+    /** Codes of the lower-cased name parts, for matching; a zero last part marks an unindexed ordinal. */
+    private int[] keyLast = new int[16];
+    private int[] keyFirst = new int[16];
+    private int[] keyMiddle = new int[16];
+    private boolean[] changed = new boolean[16];
+    private final IntList delta = new IntList();
+
+    /** Indexed ordinals in name order as of the last compaction, and each one's position there. */
+    private int[] byName = new int[0];
+    private int[] rank = new int[16];
+
+    public synchronized void index(int ordinal, Person p) {
+        ensure(ordinal + 1);
+        int last = dictionary.encode(p.getLastName());
+        int first = dictionary.encode(p.getFirstName());
+        if (lastNames[ordinal] != last || firstNames[ordinal] != first || keyLast[ordinal] == 0) touch(ordinal);
+        lastNames[ordinal] = last;
+        firstNames[ordinal] = first;
+        // The same parts as Person.getFullName, which spells a missing last or first name "null".
+        int kl = lower(String.valueOf(p.getLastName()));
+        int kf = lower(String.valueOf(p.getFirstName()));
+        int km = p.getMiddleName() == null ? 0 : lower(p.getMiddleName());
+        if (kl == keyLast[ordinal] && kf == keyFirst[ordinal] && km == keyMiddle[ordinal]) return;
+        if (keyLast[ordinal] != 0) unindex(ordinal, key(ordinal));
+        keyLast[ordinal] = kl;
+        keyFirst[ordinal] = kf;
+        keyMiddle[ordinal] = km;
+        for (long gram : trigrams(key(ordinal))) {
+            IntList list = postings.computeIfAbsent(gram, g -> new IntList(4));
+            int pos = list.binarySearch(ordinal);
+            if (pos < 0) list.insert(-pos - 1, ordinal);
+        }
+    }
+
+    public synchronized void remove(int ordinal) {
+        if (ordinal < 0 || ordinal >= keyLast.length || keyLast[ordinal] == 0) return;
+        touch(ordinal);
+        unindex(ordinal, key(ordinal));
+        keyLast[ordinal] = 0;
+        keyFirst[ordinal] = 0;
+        keyMiddle[ordinal] = 0;
+        lastNames[ordinal] = 0;
+        firstNames[ordinal] = 0;
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        dictionary.clear();
+        Arrays.fill(keyLast, 0);
+        Arrays.fill(keyFirst, 0);
+        Arrays.fill(keyMiddle, 0);
+        Arrays.fill(lastNames, 0);
+        Arrays.fill(firstNames, 0);
+        Arrays.fill(changed, false);
+        delta.clear();
+        byName = new int[0];
+    }
+
+    public synchronized void compact() {
+        if (!delta.isEmpty()) build();
+    }
+
+    public synchronized IntList search(String query, int offset, int limit) {
+        maybeCompact();
+        String q = query.toLowerCase(Locale.ROOT);
+        int from = Math.max(offset, 0);
+        int want = (int) Math.min((long) from + Math.max(limit, 0), Integer.MAX_VALUE);
+        IntList base = q.length() < 3 ? scan(q, want) : top(lookup(q), want);
+        IntList extra = new IntList();
+        for (int i = 0; i < delta.size(); i++) {
+            int ord = delta.get(i);
+            if (keyLast[ord] != 0 && matches(ord, q)) extra.add(ord);
+        }
+        return page(base, extra, from, want);
+    }
+
+    private IntList lookup(String q) {
+        Set<Long> grams = trigrams(q);
+        List<IntList> lists = new ArrayList<>(grams.size());
+        for (long gram : grams) {
+            IntList list = postings.get(gram);
+            if (list == null || list.isEmpty()) return new IntList(1);
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(IntList::size));
+        IntList smallest = lists.get(0);
+        IntList hits = new IntList(smallest.size());
+        outer:
+        for (int i = 0; i < smallest.size(); i++) {
+            int ord = smallest.get(i);
+            for (int j = 1; j < lists.size(); j++) {
+                if (lists.get(j).binarySearch(ord) < 0) continue outer;
+            }
+            if (matches(ord, q)) hits.add(ord);
+        }
+        return hits;
+    }
+
+    /**
+     * The first {@code want} base entries containing {@code q}, in name order.
+     */
+    private IntList scan(String q, int want) {
+        IntList hits = new IntList(Math.max(1, Math.min(want, 64)));
+        for (int i = 0; i < byName.length && hits.size() < want; i++) {
+            int ord = byName[i];
+            if (!changed[ord] && matches(ord, q)) hits.add(ord);
+        }
+        return hits;
+    }
+
+    /**
+     * The {@code want} base entries among {@code hits} that come first in name order,
+     * picked by base position with a bounded max-heap.
+     */
+    private IntList top(IntList hits, int want) {
+        int[] heap = new int[Math.min(want, hits.size())];
+        int n = 0;
+        for (int i = 0; i < hits.size(); i++) {
+            int ord = hits.get(i);
+            if (changed[ord]) continue;
+            int r = rank[ord];
+            if (n < heap.length) {
+                int c = n++;
+                heap[c] = r;
+                while (c > 0 && heap[(c - 1) >>> 1] < heap[c]) {
+                    int parent = (c - 1) >>> 1;
+                    heap[c] = heap[parent];
+                    heap[parent] = r;
+                    c = parent;
+                }
+            } else if (n > 0 && r < heap[0]) {
+                heap[0] = r;
+                for (int c = 0; ; ) {
+                    int big = c;
+                    int l = 2 * c + 1;
+                    if (l < n && heap[l] > heap[big]) big = l;
+                    if (l + 1 < n && heap[l + 1] > heap[big]) big = l + 1;
+                    if (big == c) break;
+                    int t = heap[c];
+                    heap[c] = heap[big];
+                    heap[big] = t;
+                    c = big;
+                }
+            }
+        }
+        Arrays.sort(heap, 0, n);
+        IntList result = new IntList(Math.max(n, 1));
+        for (int i = 0; i < n; i++) result.add(byName[heap[i]]);
+        return result;
+    }
+
+    /**
+     * Positions {@code [from, to)} of the name-ordered merge of base and delta hits.
+     */
+    private IntList page(IntList base, IntList extra, int from, int to) {
+        int[] e = extra.toArray();
+        sort(e, 0, e.length);
+        IntList result = new IntList(Math.max(1, Math.min(to - from, base.size() + e.length)));
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < to && (a < base.size() || b < e.length); i++) {
+            int ord = b == e.length || (a < base.size() && compare(base.get(a), e[b]) < 0) ? base.get(a++) : e[b++];
+            if (i >= from) result.add(ord);
+        }
+        return result;
+    }
+
+    /**
+     * Approximate heap bytes: the per-ordinal code arrays, the dictionary of name parts
+     * and the trigram posting lists.
+     */
+    public synchronized long footprint() {
+        long bytes = 7 * 16L + keyLast.length * (5 * 4L + 1 + 4) + 4L * byName.length + dictionary.footprint();
+        for (IntList list : postings.values()) bytes += 32 + 16 + 16 + 16 + 4L * list.size();
+        return bytes;
+    }
+
+    /**
+     * Whether the lower-cased full name contains {@code q}. A query without spaces cannot
+     * straddle two parts, so it is checked part by part without building the name.
+     */
+    private boolean matches(int ord, String q) {
+        if (q.indexOf(' ') >= 0) return key(ord).contains(q);
+        return dictionary.decode(keyLast[ord]).contains(q) || dictionary.decode(keyFirst[ord]).contains(q)
+                || (keyMiddle[ord] != 0 && dictionary.decode(keyMiddle[ord]).contains(q));
+    }
+
+    private String key(int ord) {
+        String key = dictionary.decode(keyLast[ord]) + " " + dictionary.decode(keyFirst[ord]);
+        return keyMiddle[ord] == 0 ? key : key + " " + dictionary.decode(keyMiddle[ord]);
+    }
+
+    private int lower(String part) {
+        return dictionary.encode(part.toLowerCase(Locale.ROOT));
+    }
+
+    private void touch(int ord) {
+        if (!changed[ord]) {
+            changed[ord] = true;
+            delta.add(ord);
+        }
+    }
+
+    private void maybeCompact() {
+        if (delta.size() > 64 + byName.length / 32) build();
+    }
+
+    private void build() {
+        int n = 0;
+        for (int ord = 0; ord < keyLast.length; ord++) if (keyLast[ord] != 0) n++;
+        byName = new int[n];
+        n = 0;
+        for (int ord = 0; ord < keyLast.length; ord++) if (keyLast[ord] != 0) byName[n++] = ord;
+        sort(byName, 0, n);
+        for (int i = 0; i < n; i++) rank[byName[i]] = i;
+        for (int i = 0; i < delta.size(); i++) changed[delta.get(i)] = false;
+        delta.clear();
+    }
+
+    private int compare(int a, int b) {
+        int c = lastNames[a] == lastNames[b] ? 0
+                : NULLS_LAST.compare(dictionary.decode(lastNames[a]), dictionary.decode(lastNames[b]));
+        if (c == 0 && firstNames[a] != firstNames[b]) {
+            c = NULLS_LAST.compare(dictionary.decode(firstNames[a]), dictionary.decode(firstNames[b]));
+        }
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    /**
+     * Quicksort of ordinals by name; a middle pivot is fine for names in insertion order.
+     */
+    private void sort(int[] a, int from, int to) {
+        while (to - from > 16) {
+            int pivot = a[(from + to) >>> 1];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compare(a[i], pivot) < 0) i++;
+                while (compare(pivot, a[j]) < 0) j--;
+                if (i <= j) {
+                    int t = a[i];
+                    a[i++] = a[j];
+                    a[j--] = t;
+                }
+            }
+            if (j - from < to - i) {
+                sort(a, from, j + 1);
+                from = i;
+            } else {
+                sort(a, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            int v = a[i];
+            int j = i - 1;
+            while (j >= from && compare(v, a[j]) < 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private void unindex(int ordinal, String key) {
+        for (long gram : trigrams(key)) {
+            IntList list = postings.get(gram);
+            if (list == null) continue;
+            int pos = list.binarySearch(ordinal);
+            if (pos >= 0) list.removeAt(pos);
+            if (list.isEmpty()) postings.remove(gram);
+        }
+    }
+
+    private void ensure(int n) {
+        if (n > keyLast.length) {
+            int cap = Math.max(n, keyLast.length * 2);
+            keyLast = Arrays.copyOf(keyLast, cap);
+            keyFirst = Arrays.copyOf(keyFirst, cap);
+            keyMiddle = Arrays.copyOf(keyMiddle, cap);
+            lastNames = Arrays.copyOf(lastNames, cap);
+            firstNames = Arrays.copyOf(firstNames, cap);
+            changed = Arrays.copyOf(changed, cap);
+            rank = Arrays.copyOf(rank, cap);
+        }
+    }
+
+    private static Set<Long> trigrams(String s) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            grams.add(((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2));
+        }
+        return grams;
+    }
+}
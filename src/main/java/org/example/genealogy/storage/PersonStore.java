@@ -0,0 +1,28 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.util.Collection;
+
+/**
+ * Where a {@link Repository} keeps its {@code Person} objects, addressed by graph
+ * ordinal. The repository calls {@link #put} again after changing a person in place,
+ * so stores that copy people elsewhere can write the change back.
+ */
+public interface PersonStore {
+
+    /**
+     * The person at this ordinal, or null for unknown ordinals and deleted people.
+     */
+    Person get(int ordinal);
+
+    void put(int ordinal, Person p);
+
+    void remove(int ordinal, Person p);
+
+    int size();
+
+    void clear();
+
+    Collection<Person> values();
+}
@@ -0,0 +1,114 @@
+package org.example.genealogy.storage;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Hand-written adapter producing the same JSON layout as Gson's reflective one.
+ */
+public class PersonTypeAdapter extends TypeAdapter<Person> {
+    private final LocalDateAdapter dates = new LocalDateAdapter();
+
+    @Override
+    public void write(JsonWriter out, Person p) throws IOException {
+        if (p == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (p.getId() != null) out.name("id").value(p.getId().toString());
+        if (p.getLastName() != null) out.name("lastName").value(p.getLastName());
+        if (p.getFirstName() != null) out.name("firstName").value(p.getFirstName());
+        if (p.getMiddleName() != null) out.name("middleName").value(p.getMiddleName());
+        if (p.getBirthDate() != null) {
+            out.name("birthDate");
+            dates.write(out, p.getBirthDate());
+        }
+        if (p.getDeathDate() != null) {
+            out.name("deathDate");
+            dates.write(out, p.getDeathDate());
+        }
+        if (p.getGender() != null) out.name("gender").value(p.getGender().name());
+        writeIds(out, "parentIds", p.getParentIds());
+        writeIds(out, "childIds", p.getChildIds());
+        if (p.getSpouseId() != null) out.name("spouseId").value(p.getSpouseId().toString());
+        out.endObject();
+    }
+
+    @Override
+    public Person read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Person p = new Person();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    p.setId(UUID.fromString(in.nextString()));
+                    break;
+                case "lastName":
+                    p.setLastName(in.nextString());
+                    break;
+                case "firstName":
+                    p.setFirstName(in.nextString());
+                    break;
+                case "middleName":
+                    p.setMiddleName(in.nextString());
+                    break;
+                case "birthDate":
+                    p.setBirthDate(dates.read(in));
+                    break;
+                case "deathDate":
+                    p.setDeathDate(dates.read(in));
+                    break;
+                case "gender":
+                    p.setGender(Gender.valueOf(in.nextString()));
+                    break;
+                case "parentIds":
+                    p.setParentIds(readIds(in));
+                    break;
+                case "childIds":
+                    p.setChildIds(readIds(in));
+                    break;
+                case "spouseId":
+                    p.setSpouseId(UUID.fromString(in.nextString()));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return p;
+    }
+
+    private static void writeIds(JsonWriter out, String name, Set<UUID> ids) throws IOException {
+        if (ids == null) return;
+        out.name(name).beginArray();
+        for (UUID id : ids) out.value(id.toString());
+        out.endArray();
+    }
+
+    private static Set<UUID> readIds(JsonReader in) throws IOException {
+        Set<UUID> ids = new HashSet<>(4);
+        in.beginArray();
+        while (in.hasNext()) ids.add(UUID.fromString(in.nextString()));
+        in.endArray();
+        return ids;
+    }
+}
@@ -3,32 +3,504 @@ package org.example.genealogy.storage;
 import org.example.genealogy.model.Person;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 
 public class Repository {
-    private final Map<UUID, Person> persons = new HashMap<>();
+    private final PersonStore store;
+    private final KinshipGraph graph = new KinshipGraph();
+    private final ComponentIndex components = new ComponentIndex(graph);
+    private final NameIndex names = new NameIndex();
+    private final FuzzyNameIndex fuzzyNames = new FuzzyNameIndex();
+    private final DateIndex dates = new DateIndex();
+    private final IdPrefixIndex ids = new IdPrefixIndex();
+    private final List<RepositoryListener> listeners = new CopyOnWriteArrayList<>();
+    /** Ordinals saved or deleted during {@link #applyBatch}; their index updates wait for its end. */
+    private IntList deferred;
+
+    public Repository() {
+        this(new HashMap<>());
+    }
+
+    protected Repository(Map<UUID, Person> persons) {
+        this(new MemoryPersonStore(persons));
+    }
+
+    protected Repository(PersonStore store) {
+        this.store = store;
+    }
+
+    public <T> T read(Supplier<T> action) {
+        return action.get();
+    }
+
+    public <T> T optimisticRead(Supplier<T> action) {
+        return action.get();
+    }
+
+    public <T> T write(Supplier<T> action) {
+        return action.get();
+    }
 
     public Collection<Person> findAll() {
-        return persons.values();
+        return store.values();
     }
 
     public Optional<Person> findById(UUID id) {
-        return Optional.ofNullable(persons.get(id));
+        return Optional.ofNullable(person(id));
     }
 
+    public Person findByOrdinal(int ordinal) {
+        return store.get(ordinal);
+    }
+
+    private Person person(UUID id) {
+        return store.get(graph.ordinalOf(id));
+    }
+
+    public KinshipGraph graph() {
+        return graph;
+    }
+
+    public ComponentIndex components() {
+        return components;
+    }
+
+    public NameIndex names() {
+        return names;
+    }
+
+    public FuzzyNameIndex fuzzyNames() {
+        return fuzzyNames;
+    }
+
+    public DateIndex dates() {
+        return dates;
+    }
+
+    public IdPrefixIndex ids() {
+        return ids;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public void addListener(RepositoryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RepositoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the person's parent or child ids would close a
+     *                                  cycle; nothing is saved then
+     */
     public void save(Person p) {
-        persons.put(p.getId(), p);
+        save(p, false);
+    }
+
+    /**
+     * Like {@link #save}, but drops the parent or child ids that would close a cycle instead
+     * of rejecting the person. Bulk loaders use this so one bad record cannot abort a load
+     * halfway through.
+     *
+     * @return the number of links dropped
+     */
+    public int saveSkippingCycles(Person p) {
+        return save(p, true);
+    }
+
+    private int save(Person p, boolean skipCycles) {
+        int ord = graph.intern(p.getId());
+        IntList added = new IntList(4);
+        int dropped = addEdges(ord, p, added, skipCycles);
+        store.put(ord, p);
+        if (deferred != null) deferred.add(ord);
+        else index(ord, p);
+        if (p.getSpouseId() != null) {
+            int spouse = graph.intern(p.getSpouseId());
+            graph.setSpouses(ord, spouse);
+            components.union(ord, spouse);
+        }
+        for (RepositoryListener l : listeners) l.onSave(p, !added.isEmpty());
+        return dropped;
+    }
+
+    private void index(int ord, Person p) {
+        names.index(ord, p);
+        fuzzyNames.index(ord, p);
+        dates.index(ord, p);
+        ids.index(ord, p.getId());
+    }
+
+    private void unindex(int ord) {
+        names.remove(ord);
+        fuzzyNames.remove(ord);
+        dates.remove(ord);
+        ids.remove(ord);
     }
 
-    public void saveAll(Collection<Person> list) {
-        for (Person p : list) save(p);
+    private int addEdges(int ord, Person p, IntList added, boolean skipCycles) {
+        Set<UUID> badParents = null;
+        Set<UUID> badChildren = null;
+        try {
+            for (UUID parentId : p.getParentIds()) {
+                if (!addEdge(graph.intern(parentId), ord, added, skipCycles)) {
+                    if (badParents == null) badParents = new HashSet<>();
+                    badParents.add(parentId);
+                }
+            }
+            for (UUID childId : p.getChildIds()) {
+                if (!addEdge(ord, graph.intern(childId), added, skipCycles)) {
+                    if (badChildren == null) badChildren = new HashSet<>();
+                    badChildren.add(childId);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            for (int i = 0; i < added.size(); i += 2) {
+                graph.removeParentChild(added.get(i), added.get(i + 1));
+                components.markDirty(added.get(i));
+            }
+            throw e;
+        }
+        int dropped = 0;
+        if (badParents != null) {
+            Set<UUID> kept = new HashSet<>(p.getParentIds());
+            kept.removeAll(badParents);
+            p.setParentIds(kept);
+            dropped += badParents.size();
+        }
+        if (badChildren != null) {
+            Set<UUID> kept = new HashSet<>(p.getChildIds());
+            kept.removeAll(badChildren);
+            p.setChildIds(kept);
+            dropped += badChildren.size();
+        }
+        return dropped;
+    }
+
+    private boolean addEdge(int parent, int child, IntList added, boolean skipCycles) {
+        try {
+            if (graph.addParentChild(parent, child)) {
+                added.add(parent);
+                added.add(child);
+            }
+        } catch (IllegalArgumentException cycle) {
+            if (skipCycles) return false;
+            throw cycle;
+        }
+        components.union(parent, child);
+        return true;
+    }
+
+    /**
+     * Saves the people with {@link #saveSkippingCycles} and compacts once at the end.
+     *
+     * @return the number of links dropped because they would close a cycle
+     */
+    public int saveAll(Collection<Person> list) {
+        int dropped = 0;
+        for (Person p : list) dropped += saveSkippingCycles(p);
+        compact();
+        return dropped;
+    }
+
+    /**
+     * Folds pending graph and index deltas into their sorted bases. Bulk loaders that
+     * stream into {@link #save} call this once at the end.
+     */
+    public void compact() {
+        graph.compact();
+        names.compact();
+        dates.compact();
+        ids.compact();
     }
 
     public void delete(UUID id) {
-        persons.remove(id);
+        int ord = graph.ordinalOf(id);
+        Person p = store.get(ord);
+        if (p == null) return;
+        store.remove(ord, p);
+        if (deferred != null) deferred.add(ord);
+        else unindex(ord);
+        components.markDirty(ord);
+        graph.detach(ord);
+        for (RepositoryListener l : listeners) l.onDelete(id);
     }
 
     public void clear() {
-        persons.clear();
+        store.clear();
+        graph.clear();
+        components.clear();
+        names.clear();
+        fuzzyNames.clear();
+        dates.clear();
+        ids.clear();
+        for (RepositoryListener l : listeners) l.onClear();
+    }
+
+
+    /**
+     * @throws IllegalArgumentException if the child is already an ancestor of the parent
+     */
+    public boolean linkParentChild(UUID parentId, UUID childId) {
+        int parentOrd = graph.ordinalOf(parentId);
+        int childOrd = graph.ordinalOf(childId);
+        Person parent = store.get(parentOrd);
+        Person child = store.get(childOrd);
+        if (parent == null || child == null) return false;
+        graph.addParentChild(parentOrd, childOrd);
+        parent.setChildIds(with(parent.getChildIds(), childId));
+        child.setParentIds(with(child.getParentIds(), parentId));
+        store.put(parentOrd, parent);
+        store.put(childOrd, child);
+        components.union(parentOrd, childOrd);
+        for (RepositoryListener l : listeners) l.onLinkParentChild(parentId, childId);
+        return true;
+    }
+
+    public boolean unlinkParentChild(UUID parentId, UUID childId) {
+        int parentOrd = graph.ordinalOf(parentId);
+        int childOrd = graph.ordinalOf(childId);
+        Person parent = store.get(parentOrd);
+        Person child = store.get(childOrd);
+        if (parent == null || child == null) return false;
+        parent.setChildIds(without(parent.getChildIds(), childId));
+        child.setParentIds(without(child.getParentIds(), parentId));
+        store.put(parentOrd, parent);
+        store.put(childOrd, child);
+        if (graph.removeParentChild(parentOrd, childOrd)) components.markDirty(parentOrd);
+        for (RepositoryListener l : listeners) l.onUnlinkParentChild(parentId, childId);
+        return true;
+    }
+
+    public boolean linkSpouses(UUID aId, UUID bId) {
+        int aOrd = graph.ordinalOf(aId);
+        int bOrd = graph.ordinalOf(bId);
+        Person a = store.get(aOrd);
+        Person b = store.get(bOrd);
+        if (a == null || b == null) return false;
+        if (a.getSpouseId() != null || b.getSpouseId() != null) return false;
+        a.setSpouseId(bId);
+        b.setSpouseId(aId);
+        store.put(aOrd, a);
+        store.put(bOrd, b);
+        graph.setSpouses(aOrd, bOrd);
+        components.union(aOrd, bOrd);
+        for (RepositoryListener l : listeners) l.onLinkSpouses(aId, bId);
+        return true;
+    }
+
+    public boolean unlinkSpouses(UUID aId, UUID bId) {
+        int aOrd = graph.ordinalOf(aId);
+        int bOrd = graph.ordinalOf(bId);
+        Person a = store.get(aOrd);
+        Person b = store.get(bOrd);
+        if (a == null || b == null) return false;
+        if (!Objects.equals(a.getSpouseId(), bId)) return false;
+        a.setSpouseId(null);
+        b.setSpouseId(null);
+        store.put(aOrd, a);
+        store.put(bOrd, b);
+        graph.clearSpouse(aOrd);
+        components.markDirty(aOrd);
+        for (RepositoryListener l : listeners) l.onUnlinkSpouses(aId, bId);
+        return true;
+    }
+
+
+    /**
+     * Applies the whole batch under one write, or none of it. Every reference is checked
+     * against the repository plus the earlier entries of the batch before anything
+     * changes; if a step still fails midway (a listener throwing, or a link that would
+     * make someone their own ancestor), the steps already started are undone in
+     * reverse. The name, date and id indexes are updated once at the end, in ordinal
+     * order, for every person the batch added or deleted, and the graph is compacted
+     * then too. The graph itself and the listeners still see every entry as it is
+     * applied, so the journal stays replayable entry by entry.
+     *
+     * @throws IllegalArgumentException naming the first entry that cannot be applied
+     */
+    public int applyBatch(List<Mutation> batch) {
+        return write(() -> {
+            validate(batch);
+            Deque<Runnable> undo = new ArrayDeque<>();
+            int i = 0;
+            deferred = new IntList();
+            try {
+                for (; i < batch.size(); i++) apply(batch.get(i), undo);
+            } catch (RuntimeException | Error e) {
+                while (!undo.isEmpty()) {
+                    try {
+                        undo.pop().run();
+                    } catch (RuntimeException again) {
+                        e.addSuppressed(again);
+                    }
+                }
+                if (e instanceof IllegalArgumentException) {
+                    throw new IllegalArgumentException("Batch entry " + i + " (" + batch.get(i) + "): " + e.getMessage(), e);
+                }
+                throw e;
+            } finally {
+                flushDeferred();
+            }
+            compact();
+            return batch.size();
+        });
+    }
+
+    /**
+     * Brings the indexes in line with the store for every ordinal the batch touched;
+     * after a rollback that is the state before the batch.
+     */
+    private void flushDeferred() {
+        int[] touched = deferred.toArray();
+        deferred = null;
+        Arrays.sort(touched);
+        for (int k = 0; k < touched.length; k++) {
+            if (k > 0 && touched[k] == touched[k - 1]) continue;
+            Person p = store.get(touched[k]);
+            if (p != null) index(touched[k], p);
+            else unindex(touched[k]);
+        }
+    }
+
+    private void validate(List<Mutation> batch) {
+        Map<UUID, Boolean> alive = new HashMap<>();
+        Map<UUID, UUID> spouses = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Mutation m = batch.get(i);
+            UUID a = m.first();
+            UUID b = m.second();
+            String error = null;
+            switch (m.kind()) {
+                case ADD: {
+                    Person p = m.person();
+                    if (a == null) {
+                        error = "person has no id";
+                    } else if (exists(a, alive)) {
+                        error = "person already exists";
+                    } else if (!p.getParentIds().isEmpty() || !p.getChildIds().isEmpty() || p.getSpouseId() != null) {
+                        error = "relations must be added as separate mutations";
+                    } else {
+                        alive.put(a, true);
+                        spouses.put(a, null);
+                    }
+                    break;
+                }
+                case DELETE:
+                    if (!exists(a, alive)) {
+                        error = "unknown person";
+                    } else {
+                        UUID spouse = spouseOf(a, spouses);
+                        if (spouse != null) spouses.put(spouse, null);
+                        alive.put(a, false);
+                        spouses.put(a, null);
+                    }
+                    break;
+                case LINK_PARENT_CHILD:
+                case UNLINK_PARENT_CHILD:
+                    if (!exists(a, alive) || !exists(b, alive)) {
+                        error = "unknown person";
+                    } else if (a.equals(b)) {
+                        error = "a person cannot be their own parent";
+                    }
+                    break;
+                case LINK_SPOUSES:
+                    if (!exists(a, alive) || !exists(b, alive)) {
+                        error = "unknown person";
+                    } else if (a.equals(b) || spouseOf(a, spouses) != null || spouseOf(b, spouses) != null) {
+                        error = "already married";
+                    } else {
+                        spouses.put(a, b);
+                        spouses.put(b, a);
+                    }
+                    break;
+                case UNLINK_SPOUSES:
+                    if (!exists(a, alive) || !exists(b, alive)) {
+                        error = "unknown person";
+                    } else if (!b.equals(spouseOf(a, spouses))) {
+                        error = "not married to each other";
+                    } else {
+                        spouses.put(a, null);
+                        spouses.put(b, null);
+                    }
+                    break;
+            }
+            if (error != null) throw new IllegalArgumentException("Batch entry " + i + " (" + m + "): " + error);
+        }
+    }
+
+    private boolean exists(UUID id, Map<UUID, Boolean> alive) {
+        if (id == null) return false;
+        Boolean overlay = alive.get(id);
+        return overlay != null ? overlay : person(id) != null;
+    }
+
+    private UUID spouseOf(UUID id, Map<UUID, UUID> spouses) {
+        return spouses.containsKey(id) ? spouses.get(id) : person(id).getSpouseId();
+    }
+
+    private void apply(Mutation m, Deque<Runnable> undo) {
+        UUID a = m.first();
+        UUID b = m.second();
+        switch (m.kind()) {
+            case ADD:
+                undo.push(() -> delete(a));
+                save(m.person());
+                break;
+            case DELETE: {
+                Person p = person(a);
+                for (UUID parentId : new ArrayList<>(p.getParentIds())) {
+                    undo.push(() -> linkParentChild(parentId, a));
+                    unlinkParentChild(parentId, a);
+                }
+                for (UUID childId : new ArrayList<>(p.getChildIds())) {
+                    undo.push(() -> linkParentChild(a, childId));
+                    unlinkParentChild(a, childId);
+                }
+                UUID spouse = p.getSpouseId();
+                if (spouse != null) {
+                    undo.push(() -> linkSpouses(a, spouse));
+                    unlinkSpouses(a, spouse);
+                }
+                undo.push(() -> save(p));
+                delete(a);
+                break;
+            }
+            case LINK_PARENT_CHILD:
+                if (!person(a).getChildIds().contains(b)) undo.push(() -> unlinkParentChild(a, b));
+                linkParentChild(a, b);
+                break;
+            case UNLINK_PARENT_CHILD:
+                if (person(a).getChildIds().contains(b)) undo.push(() -> linkParentChild(a, b));
+                unlinkParentChild(a, b);
+                break;
+            case LINK_SPOUSES:
+                undo.push(() -> unlinkSpouses(a, b));
+                linkSpouses(a, b);
+                break;
+            case UNLINK_SPOUSES:
+                undo.push(() -> linkSpouses(a, b));
+                unlinkSpouses(a, b);
+                break;
+        }
+    }
+
+    // Sets are replaced rather than edited so that readers holding a Person outside the lock never see them change.
+    private static Set<UUID> with(Set<UUID> ids, UUID id) {
+        Set<UUID> copy = new HashSet<>(ids);
+        copy.add(id);
+        return copy;
+    }
+
+    private static Set<UUID> without(Set<UUID> ids, UUID id) {
+        Set<UUID> copy = new HashSet<>(ids);
+        copy.remove(id);
+        return copy;
     }
 }
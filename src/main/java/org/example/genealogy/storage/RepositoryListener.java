@@ -0,0 +1,32 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.util.UUID;
+
+/**
+ * Receives every successful mutation applied to a {@link Repository}, after it happened.
+ */
+public interface RepositoryListener {
+    default void onSave(Person p) {}
+
+    /**
+     * Called instead of {@link #onSave(Person)}; {@code linksAdded} tells whether the
+     * person's parent or child ids added links to the graph.
+     */
+    default void onSave(Person p, boolean linksAdded) {
+        onSave(p);
+    }
+
+    default void onDelete(UUID id) {}
+
+    default void onLinkParentChild(UUID parentId, UUID childId) {}
+
+    default void onUnlinkParentChild(UUID parentId, UUID childId) {}
+
+    default void onLinkSpouses(UUID aId, UUID bId) {}
+
+    default void onUnlinkSpouses(UUID aId, UUID bId) {}
+
+    default void onClear() {}
+}
@@ -0,0 +1,41 @@
+package org.example.genealogy.storage;
+
+import java.io.IOException;
+
+
+public class SnapshotConverter {
+    private final JsonStorage json;
+    private final BinarySnapshotStorage binary;
+
+    public SnapshotConverter() {
+        this(new JsonStorage(false), new BinarySnapshotStorage());
+    }
+
+    public SnapshotConverter(JsonStorage json, BinarySnapshotStorage binary) {
+        this.json = json;
+        this.binary = binary;
+    }
+
+    public int jsonToBinary(String jsonPath, String binaryPath) throws IOException {
+        var persons = json.load(jsonPath);
+        binary.save(binaryPath, persons);
+        return persons.size();
+    }
+
+    public int binaryToJson(String binaryPath, String jsonPath) throws IOException {
+        try (MappedSnapshot snapshot = binary.open(binaryPath)) {
+            json.save(jsonPath, snapshot);
+            return snapshot.size();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !("to-binary".equals(args[0]) || "to-json".equals(args[0]))) {
+            System.out.println("Использование: SnapshotConverter to-binary|to-json <из> <в>");
+            return;
+        }
+        SnapshotConverter c = new SnapshotConverter();
+        int n = "to-binary".equals(args[0]) ? c.jsonToBinary(args[1], args[2]) : c.binaryToJson(args[1], args[2]);
+        System.out.println("Преобразовано записей: " + n);
+    }
+}
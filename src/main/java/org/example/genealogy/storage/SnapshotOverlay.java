@@ -0,0 +1,175 @@
+package org.example.genealogy.storage;
+
+import org.example.genealogy.model.Person;
+
+import java.util.*;
+
+/**
+ * Journal entries replayed over a mapped snapshot without loading it. A person an entry
+ * touches is copied out of the file on first touch and edited here; everyone else stays
+ * in the file, so memory grows with the journal rather than the population. As a
+ * {@link BinarySnapshotStorage.Source} it yields the merged result in id order.
+ */
+final class SnapshotOverlay implements MutationJournal.Target, BinarySnapshotStorage.Source {
+    private final MappedSnapshot base;
+    private final Map<UUID, Person> touched = new HashMap<>();
+    /** Snapshot ids that were deleted and not saved again. */
+    private final Set<UUID> deleted = new HashSet<>();
+    private boolean cleared;
+
+    /** Sorted on first use by the writer, once replay is over. */
+    private UUID[] added;
+    private UUID[] removed;
+
+    /**
+     * @param base the snapshot the journal continues, or null if there is none
+     */
+    SnapshotOverlay(MappedSnapshot base) {
+        this.base = base;
+    }
+
+    private int baseIndex(UUID id) {
+        return base == null || cleared ? BinarySnapshotStorage.NONE : base.indexOf(id);
+    }
+
+    @Override
+    public Optional<Person> find(UUID id) {
+        Person p = touched.get(id);
+        if (p != null) return Optional.of(p);
+        int i = baseIndex(id);
+        if (i == BinarySnapshotStorage.NONE || deleted.contains(id)) return Optional.empty();
+        p = base.personAt(i);
+        touched.put(id, p);
+        return Optional.of(p);
+    }
+
+    @Override
+    public void save(Person p) {
+        touched.put(p.getId(), p);
+        deleted.remove(p.getId());
+    }
+
+    @Override
+    public void delete(UUID id) {
+        touched.remove(id);
+        if (baseIndex(id) != BinarySnapshotStorage.NONE) deleted.add(id);
+    }
+
+    @Override
+    public void linkParentChild(UUID parentId, UUID childId) {
+        Optional<Person> parent = find(parentId);
+        Optional<Person> child = find(childId);
+        if (parent.isEmpty() || child.isEmpty()) return;
+        parent.get().getChildIds().add(childId);
+        child.get().getParentIds().add(parentId);
+    }
+
+    @Override
+    public void unlinkParentChild(UUID parentId, UUID childId) {
+        Optional<Person> parent = find(parentId);
+        Optional<Person> child = find(childId);
+        if (parent.isEmpty() || child.isEmpty()) return;
+        parent.get().getChildIds().remove(childId);
+        child.get().getParentIds().remove(parentId);
+    }
+
+    @Override
+    public void linkSpouses(UUID aId, UUID bId) {
+        Optional<Person> a = find(aId);
+        Optional<Person> b = find(bId);
+        if (a.isEmpty() || b.isEmpty()) return;
+        if (a.get().getSpouseId() != null || b.get().getSpouseId() != null) return;
+        a.get().setSpouseId(bId);
+        b.get().setSpouseId(aId);
+    }
+
+    @Override
+    public void unlinkSpouses(UUID aId, UUID bId) {
+        Optional<Person> a = find(aId);
+        Optional<Person> b = find(bId);
+        if (a.isEmpty() || b.isEmpty()) return;
+        if (!Objects.equals(a.get().getSpouseId(), bId)) return;
+        a.get().setSpouseId(null);
+        b.get().setSpouseId(null);
+    }
+
+    @Override
+    public void clear() {
+        cleared = true;
+        touched.clear();
+        deleted.clear();
+    }
+
+    private void seal() {
+        if (added != null) return;
+        List<UUID> fresh = new ArrayList<>();
+        for (UUID id : touched.keySet()) {
+            if (baseIndex(id) == BinarySnapshotStorage.NONE) fresh.add(id);
+        }
+        added = fresh.toArray(new UUID[0]);
+        Arrays.sort(added, BinarySnapshotStorage.UNSIGNED_ORDER);
+        removed = deleted.toArray(new UUID[0]);
+        Arrays.sort(removed, BinarySnapshotStorage.UNSIGNED_ORDER);
+    }
+
+    private int baseSize() {
+        return base == null || cleared ? 0 : base.size() - removed.length;
+    }
+
+    @Override
+    public int size() {
+        seal();
+        return baseSize() + added.length;
+    }
+
+    @Override
+    public int indexOf(UUID id) {
+        seal();
+        boolean present = touched.containsKey(id)
+                || (baseIndex(id) != BinarySnapshotStorage.NONE && !deleted.contains(id));
+        if (!present) return BinarySnapshotStorage.NONE;
+        int before = countBefore(added, id);
+        if (base != null && !cleared) before += base.rank(id) - countBefore(removed, id);
+        return before;
+    }
+
+    private static int countBefore(UUID[] sorted, UUID id) {
+        int i = Arrays.binarySearch(sorted, id, BinarySnapshotStorage.UNSIGNED_ORDER);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    @Override
+    public Iterator<Person> iterator() {
+        seal();
+        int baseCount = base == null || cleared ? 0 : base.size();
+        return new Iterator<>() {
+            private int i = skip(0);
+            private int j;
+
+            private int skip(int from) {
+                while (from < baseCount && deleted.contains(base.idAt(from))) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return i < baseCount || j < added.length;
+            }
+
+            @Override
+            public Person next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                if (i < baseCount) {
+                    UUID id = base.idAt(i);
+                    if (j == added.length || BinarySnapshotStorage.UNSIGNED_ORDER.compare(id, added[j]) < 0) {
+                        Person p = touched.get(id);
+                        if (p == null) p = base.personAt(i);
+                        i = skip(i + 1);
+                        return p;
+                    }
+                }
+                return touched.get(added[j++]);
+            }
+        };
+    }
+}
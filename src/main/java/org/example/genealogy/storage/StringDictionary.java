@@ -0,0 +1,55 @@
+package org.example.genealogy.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns strings to dense int codes; code 0 stands for null. Codes are never reused,
+ * so a name that stops being used keeps its entry.
+ */
+public class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] strings = new String[16];
+    private int size = 1;
+
+    public int encode(String s) {
+        if (s == null) return 0;
+        Integer code = codes.get(s);
+        if (code != null) return code;
+        if (size == strings.length) strings = Arrays.copyOf(strings, size * 2);
+        strings[size] = s;
+        codes.put(s, size);
+        return size++;
+    }
+
+    public String decode(int code) {
+        return strings[code];
+    }
+
+    /**
+     * Distinct strings, not counting null.
+     */
+    public int size() {
+        return size - 1;
+    }
+
+    /**
+     * Approximate heap bytes: the string objects with their byte arrays, the decode
+     * array and the hash map entries.
+     */
+    public long footprint() {
+        long bytes = 16L + 4L * strings.length;
+        for (int i = 1; i < size; i++) {
+            bytes += 24 + 16 + strings[i].length() * 2L;
+            bytes += 32 + 16;
+        }
+        return bytes + 16L + 4L * Integer.highestOneBit(Math.max(1, codes.size()) * 2);
+    }
+
+    public void clear() {
+        codes.clear();
+        Arrays.fill(strings, null);
+        size = 1;
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.genealogy.storage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.PriorityQueue;
+
+/**
+ * Topological order of the parent/child DAG kept up to date edge by edge, after
+ * Pearce and Kelly: {@code pos[n]} is a node's place in the order, every parent sits
+ * before its children, and an edge that breaks the order only reorders the nodes whose
+ * positions lie between its ends and are reachable from them. Finding the parent on the
+ * forward search from the child means the edge would close a cycle.
+ * <p>
+ * Generations ride on the same order: 0 for people without parents, otherwise one more
+ * than the latest parent. After an edge change only the descendants whose generation
+ * actually moves are revisited, in topological order: nothing is queued behind a node
+ * once it has been settled, so each is settled once.
+ */
+final class TopoOrder {
+    private final KinshipGraph graph;
+    private int[] pos = new int[16];
+    private int[] nodeAt = new int[16];
+    private int[] generation = new int[16];
+    private BitSet[] byGeneration = {new BitSet()};
+    private int size;
+
+    private final VisitMarks marks = new VisitMarks();
+    private final VisitMarks queued = new VisitMarks();
+    private final IntList stack = new IntList();
+    private final IntList scratch = new IntList();
+    private final IntList forward = new IntList();
+    private final IntList backward = new IntList();
+
+    TopoOrder(KinshipGraph graph) {
+        this.graph = graph;
+    }
+
+    void addNode(int node) {
+        if (node >= pos.length) {
+            int cap = Math.max(node + 1, pos.length * 2);
+            pos = Arrays.copyOf(pos, cap);
+            nodeAt = Arrays.copyOf(nodeAt, cap);
+            generation = Arrays.copyOf(generation, cap);
+        }
+        pos[node] = size;
+        nodeAt[size] = node;
+        generation[node] = 0;
+        byGeneration[0].set(node);
+        size++;
+    }
+
+    /**
+     * Makes room in the order for {@code parent -> child}; call before the edge is added.
+     *
+     * @throws IllegalArgumentException if the child is already an ancestor of the parent
+     */
+    void beforeEdge(int parent, int child) {
+        if (parent == child) throw cycle();
+        int lower = pos[child];
+        int upper = pos[parent];
+        if (upper < lower) return;
+        marks.reset(size);
+        forward.clear();
+        if (search(child, upper, true, forward)) throw cycle();
+        backward.clear();
+        search(parent, lower, false, backward);
+        reorder();
+    }
+
+    /**
+     * Settles generations after the parents of {@code child} changed.
+     */
+    void afterEdgeChange(int child) {
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> Integer.compare(pos[a], pos[b]));
+        queued.reset(size);
+        queued.mark(child);
+        queue.add(child);
+        while (!queue.isEmpty()) {
+            int n = queue.poll();
+            scratch.clear();
+            graph.appendParents(n, scratch);
+            int g = 0;
+            for (int i = 0; i < scratch.size(); i++) g = Math.max(g, generation[scratch.get(i)] + 1);
+            if (g == generation[n]) continue;
+            setGeneration(n, g);
+            scratch.clear();
+            graph.appendChildren(n, scratch);
+            for (int i = 0; i < scratch.size(); i++) {
+                if (queued.mark(scratch.get(i))) queue.add(scratch.get(i));
+            }
+        }
+    }
+
+    int generationOf(int node) {
+        return generation[node];
+    }
+
+    int generations() {
+        int n = byGeneration.length;
+        while (n > 0 && byGeneration[n - 1].isEmpty()) n--;
+        return n;
+    }
+
+    void appendGeneration(int g, IntList out) {
+        if (g < 0 || g >= byGeneration.length) return;
+        BitSet set = byGeneration[g];
+        for (int n = set.nextSetBit(0); n >= 0; n = set.nextSetBit(n + 1)) out.add(n);
+    }
+
+    void clear() {
+        size = 0;
+        byGeneration = new BitSet[]{new BitSet()};
+    }
+
+    /**
+     * Depth-first search from {@code start} that stays within the affected window:
+     * children at positions up to {@code bound} going forward, parents at or after it
+     * going back. Forward, reports whether the window's other end was reached.
+     */
+    private boolean search(int start, int bound, boolean down, IntList visited) {
+        int target = nodeAt[bound];
+        stack.clear();
+        stack.add(start);
+        marks.mark(start);
+        while (!stack.isEmpty()) {
+            int n = stack.removeLast();
+            visited.add(n);
+            scratch.clear();
+            if (down) graph.appendChildren(n, scratch);
+            else graph.appendParents(n, scratch);
+            for (int i = 0; i < scratch.size(); i++) {
+                int next = scratch.get(i);
+                if (down ? pos[next] > bound : pos[next] < bound) continue;
+                if (down && next == target) return true;
+                if (marks.mark(next)) stack.add(next);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands the pooled positions of both searches to the backward set first, then the
+     * forward set, each keeping its relative order.
+     */
+    private void reorder() {
+        sortByPos(backward);
+        sortByPos(forward);
+        int[] slots = new int[backward.size() + forward.size()];
+        int k = 0;
+        for (int i = 0; i < backward.size(); i++) slots[k++] = pos[backward.get(i)];
+        for (int i = 0; i < forward.size(); i++) slots[k++] = pos[forward.get(i)];
+        Arrays.sort(slots);
+        k = 0;
+        for (int i = 0; i < backward.size(); i++) place(backward.get(i), slots[k++]);
+        for (int i = 0; i < forward.size(); i++) place(forward.get(i), slots[k++]);
+    }
+
+    private void place(int node, int p) {
+        pos[node] = p;
+        nodeAt[p] = node;
+    }
+
+    private void sortByPos(IntList nodes) {
+        long[] keyed = new long[nodes.size()];
+        for (int i = 0; i < keyed.length; i++) keyed[i] = ((long) pos[nodes.get(i)] << 32) | nodes.get(i);
+        Arrays.sort(keyed);
+        for (int i = 0; i < keyed.length; i++) nodes.set(i, (int) keyed[i]);
+    }
+
+    private void setGeneration(int node, int g) {
+        byGeneration[generation[node]].clear(node);
+        if (g >= byGeneration.length) {
+            int old = byGeneration.length;
+            byGeneration = Arrays.copyOf(byGeneration, Math.max(g + 1, old * 2));
+            for (int i = old; i < byGeneration.length; i++) byGeneration[i] = new BitSet();
+        }
+        byGeneration[g].set(node);
+        generation[node] = g;
+    }
+
+    private static IllegalArgumentException cycle() {
+        return new IllegalArgumentException("Parent-child link would make a person their own ancestor");
+    }
+}
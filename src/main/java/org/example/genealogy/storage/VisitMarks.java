@@ -0,0 +1,40 @@
+package org.example.genealogy.storage;
+
+import java.util.Arrays;
+
+/**
+ * Visited set over dense ordinals that is reset in O(1) by bumping an epoch.
+ */
+public class VisitMarks {
+    private int[] stamps = new int[0];
+    private int epoch;
+
+    public void reset(int capacity) {
+        if (stamps.length < capacity) {
+            stamps = new int[Math.max(capacity, stamps.length * 2)];
+        }
+        if (++epoch == 0) {
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Makes room for ordinals interned after {@link #reset} without forgetting marks.
+     */
+    public void grow(int capacity) {
+        if (stamps.length < capacity) {
+            stamps = Arrays.copyOf(stamps, Math.max(capacity, stamps.length * 2));
+        }
+    }
+
+    public boolean mark(int ordinal) {
+        if (stamps[ordinal] == epoch) return false;
+        stamps[ordinal] = epoch;
+        return true;
+    }
+
+    public boolean isMarked(int ordinal) {
+        return stamps[ordinal] == epoch;
+    }
+}
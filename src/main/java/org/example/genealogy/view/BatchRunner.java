@@ -0,0 +1,316 @@
+package org.example.genealogy.view;
+
+import org.example.genealogy.metrics.Metrics;
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.service.NameMatch;
+import org.example.genealogy.service.TreePrinter;
+import org.example.genealogy.storage.GedcomStorage;
+import org.example.genealogy.storage.JsonStorage;
+import org.example.genealogy.storage.Repository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Runs commands from a script, one per line, without prompts. Arguments are separated by
+ * spaces; double quotes keep spaces inside one, {@code -} stands for "none", and lines
+ * starting with {@code #} are comments. A person is referred to by full UUID, by a unique
+ * prefix of it (the short ID) or by {@code @name} after {@code add ... as name}. A failing
+ * command is reported with its line number and the script goes on.
+ * <pre>
+ * add &lt;last&gt; &lt;first&gt; &lt;middle&gt; &lt;birth&gt; &lt;death&gt; &lt;М|Ж&gt; [as &lt;name&gt;]
+ * edit &lt;id&gt; field=value...        last, first, middle, birth, death, gender
+ * delete &lt;id&gt;
+ * link parent &lt;parent&gt; &lt;child&gt;  |  link spouses &lt;a&gt; &lt;b&gt;   (unlink likewise)
+ * get &lt;id&gt;  |  search &lt;text&gt; [limit]  |  fuzzy &lt;text&gt; [maxDistance]
+ * ancestors &lt;id&gt; [depth]  |  descendants &lt;id&gt; [depth]
+ * path &lt;a&gt; &lt;b&gt;  |  relationship &lt;a&gt; &lt;b&gt;
+ * born &lt;from&gt; &lt;to&gt;  |  alive &lt;date&gt;  |  generation &lt;n&gt;
+ * save &lt;file&gt;  |  load &lt;file&gt;  |  gedcom-import &lt;file&gt;  |  gedcom-export &lt;file&gt;
+ * list [after] [limit]  |  count  |  metrics  |  echo &lt;text&gt;
+ * </pre>
+ */
+public class BatchRunner {
+    private static final int PAGE = 100;
+
+    private final Repository repo;
+    private final GenealogyService service;
+    private final JsonStorage storage = new JsonStorage();
+    private final GedcomStorage gedcom = new GedcomStorage();
+    private final PrintWriter out;
+    private final Map<String, UUID> names = new HashMap<>();
+    private int commands;
+    private int errors;
+
+    public BatchRunner(Repository repo, GenealogyService service, PrintWriter out) {
+        this.repo = repo;
+        this.service = service;
+        this.out = out;
+    }
+
+    /**
+     * Runs every line of {@code in}; returns the number of failed commands.
+     */
+    public int run(BufferedReader in) throws IOException {
+        long start = System.nanoTime();
+        String line;
+        for (int n = 1; (line = in.readLine()) != null; n++) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            commands++;
+            try {
+                execute(tokens(trimmed));
+            } catch (RuntimeException | IOException e) {
+                errors++;
+                out.println("Ошибка в строке " + n + ": " + e.getMessage());
+            }
+        }
+        out.printf(Locale.ROOT, "Команд: %d, ошибок: %d, время: %d мс%n", commands, errors,
+                (System.nanoTime() - start) / 1_000_000);
+        out.flush();
+        return errors;
+    }
+
+    private void execute(List<String> a) throws IOException {
+        String cmd = a.get(0).toLowerCase(Locale.ROOT);
+        switch (cmd) {
+            case "add": {
+                arity(a, 7);
+                Person p = service.addPerson(a.get(1), a.get(2), opt(a.get(3)), date(a.get(4)), date(a.get(5)),
+                        gender(a.get(6)));
+                if (a.size() > 7) {
+                    if (a.size() != 9 || !"as".equals(a.get(7))) throw new IllegalArgumentException("expected: as <name>");
+                    names.put(a.get(8), p.getId());
+                }
+                out.println("Добавлено: " + line(p));
+                break;
+            }
+            case "edit": {
+                arity(a, 3);
+                UUID id = resolve(a.get(1));
+                Person current = person(id);
+                String last = null, first = null, middle = null;
+                LocalDate birth = null, death = current.getDeathDate();
+                Gender gender = null;
+                for (String field : a.subList(2, a.size())) {
+                    int eq = field.indexOf('=');
+                    if (eq < 0) throw new IllegalArgumentException("expected field=value: " + field);
+                    String value = field.substring(eq + 1);
+                    switch (field.substring(0, eq)) {
+                        case "last": last = value; break;
+                        case "first": first = value; break;
+                        case "middle": middle = value; break;
+                        case "birth": birth = date(value); break;
+                        case "death": death = date(value); break;
+                        case "gender": gender = gender(value); break;
+                        default: throw new IllegalArgumentException("unknown field: " + field);
+                    }
+                }
+                service.editPerson(id, last, first, middle, birth, death, gender);
+                out.println("Обновлено: " + line(person(id)));
+                break;
+            }
+            case "delete":
+                arity(a, 2);
+                out.println(service.deletePerson(resolve(a.get(1))) ? "Удалено" : "Человек не найден");
+                break;
+            case "link":
+            case "unlink": {
+                arity(a, 4);
+                boolean link = "link".equals(cmd);
+                UUID x = resolve(a.get(2));
+                UUID y = resolve(a.get(3));
+                boolean ok;
+                if ("parent".equals(a.get(1))) {
+                    ok = link ? service.linkParentChild(x, y) : service.unlinkParentChild(x, y);
+                } else if ("spouses".equals(a.get(1))) {
+                    ok = link ? service.linkSpouses(x, y) : service.unlinkSpouses(x, y);
+                } else {
+                    throw new IllegalArgumentException("expected parent or spouses: " + a.get(1));
+                }
+                out.println(ok ? "OK" : "Без изменений");
+                break;
+            }
+            case "get":
+                arity(a, 2);
+                out.println(line(person(resolve(a.get(1)))));
+                break;
+            case "search":
+                arity(a, 2);
+                page(service.searchByName(a.get(1), 0, a.size() > 2 ? Integer.parseInt(a.get(2)) : PAGE));
+                break;
+            case "fuzzy": {
+                arity(a, 2);
+                List<NameMatch> matches = service.fuzzySearch(a.get(1), a.size() > 2 ? Integer.parseInt(a.get(2)) : 2, PAGE);
+                for (NameMatch m : matches) out.println(line(m.getPerson()) + "  ~" + m.getCost());
+                if (matches.isEmpty()) out.println("Ничего не найдено");
+                break;
+            }
+            case "ancestors":
+            case "descendants": {
+                arity(a, 2);
+                UUID id = resolve(a.get(1));
+                int depth = a.size() > 2 ? Integer.parseInt(a.get(2)) : 10;
+                if ("ancestors".equals(cmd)) {
+                    TreePrinter.printLevels(service.iterateAncestorsLevels(id, depth), "Дерево предков", out);
+                } else {
+                    TreePrinter.printLevels(service.iterateDescendantsLevels(id, depth), "Дерево потомков", out);
+                }
+                break;
+            }
+            case "path": {
+                arity(a, 3);
+                Optional<List<Person>> path = service.shortestKinshipPath(resolve(a.get(1)), resolve(a.get(2)));
+                if (path.isPresent()) {
+                    out.println("Рёбер в кратчайшем пути: " + (path.get().size() - 1));
+                    for (Person p : path.get()) out.println("  " + line(p));
+                } else {
+                    out.println("Связь не найдена");
+                }
+                break;
+            }
+            case "relationship":
+                arity(a, 3);
+                out.println(service.relationship(resolve(a.get(1)), resolve(a.get(2)))
+                        .map(String::valueOf).orElse("Связь не найдена"));
+                break;
+            case "born":
+                arity(a, 3);
+                page(service.bornBetween(date(a.get(1)), date(a.get(2)), 0, PAGE));
+                break;
+            case "alive":
+                arity(a, 2);
+                page(service.aliveAt(LocalDate.parse(a.get(1)), 0, PAGE));
+                break;
+            case "generation":
+                arity(a, 2);
+                page(service.generation(Integer.parseInt(a.get(1)), 0, PAGE));
+                break;
+            case "save":
+                arity(a, 2);
+                Collection<Person> all = service.getAll();
+                storage.save(a.get(1), all);
+                out.println("Сохранено: " + a.get(1) + " (людей: " + all.size() + ")");
+                break;
+            case "load": {
+                arity(a, 2);
+                List<Person> list = storage.load(a.get(1));
+                repo.clear();
+                int dropped = repo.saveAll(list);
+                names.clear();
+                out.println("Загружено записей: " + list.size());
+                if (dropped > 0) out.println("Пропущено связей, замыкающих цикл: " + dropped);
+                break;
+            }
+            case "gedcom-import":
+                arity(a, 2);
+                out.println(gedcom.importInto(a.get(1), repo));
+                break;
+            case "gedcom-export":
+                arity(a, 2);
+                out.println("Экспортировано людей: " + gedcom.export(a.get(1), service.getAll()));
+                break;
+            case "list": {
+                UUID after = a.size() > 1 && !"-".equals(a.get(1)) ? resolve(a.get(1)) : null;
+                List<Person> list = service.listPage(after, a.size() > 2 ? Integer.parseInt(a.get(2)) : PAGE);
+                page(list);
+                if (!list.isEmpty()) out.println("Далее: list " + list.get(list.size() - 1).getId());
+                break;
+            }
+            case "count":
+                out.println("Людей: " + repo.size());
+                break;
+            case "metrics":
+                Metrics.dump(out);
+                break;
+            case "echo":
+                out.println(String.join(" ", a.subList(1, a.size())));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown command: " + a.get(0));
+        }
+    }
+
+    /**
+     * Full UUID, {@code @name}, or a prefix of exactly one person's UUID.
+     */
+    private UUID resolve(String ref) {
+        if (ref.startsWith("@")) {
+            UUID id = names.get(ref.substring(1));
+            if (id == null) throw new IllegalArgumentException("unknown name: " + ref);
+            return id;
+        }
+        if (ref.length() == 36) return UUID.fromString(ref);
+        return service.findByShortId(ref).map(Person::getId)
+                .orElseThrow(() -> new NoSuchElementException("no person with ID " + ref));
+    }
+
+    private Person person(UUID id) {
+        return service.getById(id).orElseThrow(() -> new NoSuchElementException("no person with ID " + id));
+    }
+
+    private void page(List<Person> list) {
+        for (Person p : list) out.println(line(p));
+        if (list.isEmpty()) out.println("Ничего не найдено");
+    }
+
+    private static String line(Person p) {
+        return p + "  (ID=" + p.getId() + ")";
+    }
+
+    private static void arity(List<String> a, int min) {
+        if (a.size() < min) throw new IllegalArgumentException(a.get(0) + ": expected " + (min - 1) + " arguments");
+    }
+
+    private static String opt(String s) {
+        return "-".equals(s) ? null : s;
+    }
+
+    private static LocalDate date(String s) {
+        return "-".equals(s) ? null : LocalDate.parse(s);
+    }
+
+    private static Gender gender(String s) {
+        switch (s.toUpperCase(Locale.ROOT)) {
+            case "М":
+            case "M":
+            case "MALE":
+                return Gender.MALE;
+            case "Ж":
+            case "F":
+            case "FEMALE":
+                return Gender.FEMALE;
+            default:
+                throw new IllegalArgumentException("unknown gender: " + s);
+        }
+    }
+
+    static List<String> tokens(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                any = true;
+            } else if (!quoted && Character.isWhitespace(c)) {
+                if (any) tokens.add(cur.toString());
+                cur.setLength(0);
+                any = false;
+            } else {
+                cur.append(c);
+                any = true;
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quote");
+        if (any) tokens.add(cur.toString());
+        return tokens;
+    }
+}
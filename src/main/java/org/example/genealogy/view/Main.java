@@ -1,29 +1,145 @@
 package org.example.genealogy.view;
 
+import org.example.genealogy.metrics.Metrics;
 import org.example.genealogy.model.Gender;
 import org.example.genealogy.model.Person;
+import org.example.genealogy.server.GenealogyServer;
 import org.example.genealogy.service.GenealogyService;
 import org.example.genealogy.service.TreePrinter;
+import org.example.genealogy.storage.Autosaver;
+import org.example.genealogy.storage.CompactRepository;
+import org.example.genealogy.storage.ConcurrentRepository;
+import org.example.genealogy.storage.GedcomStorage;
+import org.example.genealogy.storage.JournaledStore;
 import org.example.genealogy.storage.JsonStorage;
 import org.example.genealogy.storage.Repository;
 
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.*;
 
 public class Main {
 
     private final Scanner scanner = new Scanner(System.in);
-    private final Repository repo = new Repository();
-    private final GenealogyService service = new GenealogyService(repo);
+    private final Repository repo;
+    private final GenealogyService service;
     private final JsonStorage storage = new JsonStorage();
+    private final GedcomStorage gedcom = new GedcomStorage();
+    private JournaledStore store;
+    private Autosaver saver;
+
+    private Main(Repository repo) {
+        this.repo = repo;
+        this.service = new GenealogyService(repo);
+    }
 
     public static void main(String[] args) {
-        new Main().run();
+        boolean metrics = true;
+        boolean compact = false;
+        String data = null;
+        String autosave = null;
+        int port = -1;
+        String executor = "pool";
+        String batch = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--data".equals(args[i]) && i + 1 < args.length) {
+                data = args[++i];
+            } else if ("--no-metrics".equals(args[i])) {
+                metrics = false;
+            } else if ("--compact".equals(args[i])) {
+                compact = true;
+            } else if ("--autosave".equals(args[i]) && i + 1 < args.length) {
+                autosave = args[++i];
+            } else if ("--serve".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--executor".equals(args[i]) && i + 1 < args.length) {
+                executor = args[++i];
+            } else if ("--batch".equals(args[i]) && i + 1 < args.length) {
+                batch = args[++i];
+            }
+        }
+        // Automatic saves snapshot the repository from their own thread.
+        Main main = new Main(port >= 0 || autosave != null ? new ConcurrentRepository()
+                : compact ? new CompactRepository() : new Repository());
+        if (data != null) main.store = new JournaledStore(Paths.get(data), 50);
+        if (autosave != null) {
+            main.saver = new Autosaver(main.repo, main.storage, Paths.get(autosave), 60_000, 1_000);
+        }
+        if (metrics) main.enableMetrics();
+        if (port >= 0) {
+            main.serve(port, executor);
+        } else if (batch != null) {
+            System.exit(main.runBatch(batch));
+        } else {
+            main.run();
+        }
+    }
+
+    /**
+     * Runs a command script ({@code -} for stdin) on the store or an empty repository;
+     * returns the process exit status.
+     */
+    private int runBatch(String script) {
+        if (store != null) openStore();
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16));
+        int errors;
+        try (BufferedReader in = "-".equals(script)
+                ? new BufferedReader(new InputStreamReader(System.in, Charset.defaultCharset()))
+                : Files.newBufferedReader(Paths.get(script))) {
+            errors = new BatchRunner(repo, service, out).run(in);
+        } catch (IOException e) {
+            out.println("Ошибка чтения сценария: " + e.getMessage());
+            errors = 1;
+        }
+        out.flush();
+        closeStore();
+        closeSaver();
+        return errors == 0 ? 0 : 1;
+    }
+
+    private void serve(int port, String executor) {
+        // Chunked replies end in a separate small segment (and tree levels are flushed one
+        // by one); with Nagle on, each waits out the client's delayed ACK, some 40 ms.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        if (store != null) {
+            openStore();
+        } else {
+            seedDemoData();
+        }
+        GenealogyServer server;
+        try {
+            server = new GenealogyServer(service, new InetSocketAddress(port), GenealogyServer.executor(executor),
+                    store == null ? null : store.journal());
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Не удалось запустить сервер: " + e.getMessage());
+            closeStore();
+            closeSaver();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            closeStore();
+            closeSaver();
+            System.out.println("Сервер остановлен.");
+        }));
+        server.start();
+        System.out.println("Сервер запущен на порту " + server.port());
     }
 
     private void run() {
         System.out.println("Генеалогическое древо");
-        seedDemoData();
+        if (store != null) {
+            openStore();
+        } else {
+            seedDemoData();
+        }
 
         boolean running = true;
         while (running) {
@@ -76,6 +192,30 @@ public class Main {
                             case "add":
                                 addPerson();
                                 break;
+                            case "compact":
+                                compactStore();
+                                break;
+                            case "metrics":
+                                dumpMetrics();
+                                break;
+                            case "footprint":
+                                printFootprint();
+                                break;
+                            case "born":
+                                searchByBirth();
+                                break;
+                            case "alive":
+                                searchAlive();
+                                break;
+                            case "generation":
+                                listGeneration();
+                                break;
+                            case "gedcom-import":
+                                importGedcom();
+                                break;
+                            case "gedcom-export":
+                                exportGedcom();
+                                break;
                             case "exit":
                             case "quit":
                                 running = false;
@@ -88,6 +228,8 @@ public class Main {
                 System.out.println("Ошибка: " + ex.getMessage());
             }
         }
+        closeStore();
+        closeSaver();
         System.out.println("Выход.");
     }
 
@@ -129,8 +271,12 @@ public class Main {
         if ("1".equals(t)) {
             UUID parent = readPersonId("ID родителя:");
             UUID child = readPersonId("ID ребенка:");
-            boolean ok = service.linkParentChild(parent, child);
-            System.out.println(ok ? "Связь установлена" : "Не удалось установить связь");
+            try {
+                boolean ok = service.linkParentChild(parent, child);
+                System.out.println(ok ? "Связь установлена" : "Не удалось установить связь");
+            } catch (IllegalArgumentException e) {
+                System.out.println("Связь отклонена: человек стал бы собственным предком");
+            }
         } else if ("2".equals(t)) {
             UUID a = readPersonId("ID супруга A:");
             UUID b = readPersonId("ID супруга B:");
@@ -168,25 +314,54 @@ public class Main {
         System.out.println("Введите ФИО или часть:");
         String q = scanner.nextLine().trim();
         var list = service.searchByName(q);
+        if (list.isEmpty()) {
+            var similar = service.fuzzySearch(q, 2, 20);
+            if (similar.isEmpty()) {
+                System.out.println("Ничего не найдено");
+            } else {
+                System.out.println("Точных совпадений нет, похожие:");
+                similar.forEach(m -> System.out.println(m.getPerson() + "  (ID=" + m.getPerson().getId() + ")"));
+            }
+        } else {
+            list.forEach(p -> System.out.println(p + "  (ID=" + p.getId() + ")"));
+        }
+    }
+
+    private void searchByBirth() {
+        LocalDate from = readOptionalDate("Родился не раньше (YYYY-MM-DD, пусто = без ограничения):");
+        LocalDate to = readOptionalDate("Родился не позже (YYYY-MM-DD, пусто = без ограничения):");
+        printPage(service.bornBetween(from, to, 0, 100));
+    }
+
+    private void searchAlive() {
+        LocalDate date = readDate("Дата (YYYY-MM-DD):");
+        printPage(service.aliveAt(date, 0, 100));
+    }
+
+    private void listGeneration() {
+        int n = readInt("Поколение (0 = без известных родителей):", Integer.MAX_VALUE);
+        printPage(service.generation(n, 0, 100));
+    }
+
+    private void printPage(List<Person> list) {
         if (list.isEmpty()) {
             System.out.println("Ничего не найдено");
         } else {
             list.forEach(p -> System.out.println(p + "  (ID=" + p.getId() + ")"));
+            if (list.size() == 100) System.out.println("Показаны первые 100");
         }
     }
 
     private void buildAncestors() {
         UUID id = readPersonId("ID человека:");
         int depth = readInt("Глубина (0..10):", 10);
-        var levels = service.buildAncestorsLevels(id, depth);
-        TreePrinter.printLevels(levels, "Дерево предков");
+        TreePrinter.printLevels(service.iterateAncestorsLevels(id, depth), "Дерево предков");
     }
 
     private void buildDescendants() {
         UUID id = readPersonId("ID человека:");
         int depth = readInt("Глубина (0..10):", 10);
-        var levels = service.buildDescendantsLevels(id, depth);
-        TreePrinter.printLevels(levels, "Дерево потомков");
+        TreePrinter.printLevels(service.iterateDescendantsLevels(id, depth), "Дерево потомков");
     }
 
     private void checkRelated() {
@@ -196,6 +371,7 @@ public class Main {
         if (pathOpt.isPresent()) {
             var path = pathOpt.get();
             System.out.println("Связаны. Рёбер в кратчайшем пути: " + (path.size() - 1));
+            service.relationship(a, b).ifPresent(r -> System.out.println("Степень родства: " + r));
             for (int i = 0; i < path.size(); i++) {
                 String prefix = (i == 0) ? "Начало: " : (i == path.size() - 1) ? "Конец:  " : " → ";
                 System.out.println(prefix + path.get(i) + " (ID=" + path.get(i).getId() + ")");
@@ -208,12 +384,12 @@ public class Main {
     private void saveToFile() {
         System.out.println("Путь к JSON-файлу для сохранения:");
         String path = scanner.nextLine().trim();
-        try {
-            storage.save(path, service.getAll());
-            System.out.println("Сохранено: " + path);
-        } catch (Exception e) {
-            System.out.println("Ошибка сохранения: " + e.getMessage());
-        }
+        if (saver == null) saver = new Autosaver(repo, storage);
+        saver.saveAsync(Paths.get(path)).whenComplete((n, e) -> {
+            if (e != null) System.out.println("Ошибка сохранения: " + e.getCause().getMessage());
+            else System.out.println("Сохранено: " + path + " (людей: " + n + ")");
+        });
+        System.out.println("Сохранение запущено в фоне");
     }
 
     private void loadFromFile() {
@@ -222,34 +398,140 @@ public class Main {
         try {
             var list = storage.load(path);
             repo.clear();
-            repo.saveAll(list);
+            int dropped = repo.saveAll(list);
             System.out.println("Загружено записей: " + list.size());
+            if (dropped > 0) System.out.println("Пропущено связей, замыкающих цикл: " + dropped);
         } catch (Exception e) {
             System.out.println("Ошибка загрузки: " + e.getMessage());
         }
     }
 
-    private void listAll() {
-        var all = service.getAll();
-        if (all.isEmpty()) {
-            System.out.println("Список пуст.");
+    private void enableMetrics() {
+        Metrics.gauge("repository.persons", repo::size);
+        Metrics.gauge("repository.parentChildEdges", () -> repo.graph().parentChildEdgeCount());
+        Metrics.gauge("repository.spouseEdges", () -> repo.graph().spouseEdgeCount());
+        Metrics.setEnabled(true);
+        try {
+            Metrics.registerMBeans();
+        } catch (Exception e) {
+            System.out.println("JMX недоступен: " + e.getMessage());
+        }
+    }
+
+    private void dumpMetrics() {
+        if (!Metrics.isEnabled()) {
+            System.out.println("Метрики отключены (--no-metrics)");
+            return;
+        }
+        try {
+            Metrics.dump(System.out);
+        } catch (Exception e) {
+            System.out.println("Ошибка: " + e.getMessage());
+        }
+    }
+
+    private void printFootprint() {
+        if (!(repo instanceof CompactRepository)) {
+            System.out.println("Компактное хранение не используется (запустите с --compact)");
+            return;
+        }
+        System.out.println(((CompactRepository) repo).footprint());
+    }
+
+    private void importGedcom() {
+        System.out.println("Путь к GEDCOM-файлу для импорта:");
+        String path = scanner.nextLine().trim();
+        try {
+            System.out.println(gedcom.importInto(path, repo));
+        } catch (Exception e) {
+            System.out.println("Ошибка импорта: " + e.getMessage());
+        }
+    }
+
+    private void exportGedcom() {
+        System.out.println("Путь к GEDCOM-файлу для экспорта:");
+        String path = scanner.nextLine().trim();
+        try {
+            int n = gedcom.export(path, service.getAll());
+            System.out.println("Экспортировано людей: " + n);
+        } catch (Exception e) {
+            System.out.println("Ошибка экспорта: " + e.getMessage());
+        }
+    }
+
+    private void openStore() {
+        try {
+            int replayed = store.recover(repo);
+            System.out.println("Восстановлено записей: " + repo.size() + ", операций из журнала: " + replayed);
+        } catch (Exception e) {
+            System.out.println("Ошибка восстановления: " + e.getMessage());
+            store = null;
+        }
+    }
+
+    private void compactStore() {
+        if (store == null) {
+            System.out.println("Журнал не используется (запустите с --data <каталог>)");
             return;
         }
-        for (Person p : all) {
-            System.out.println(p + "  (ID=" + p.getId() + ")");
+        try {
+            store.compactAsync();
+            System.out.println("Сжатие журнала запущено в фоне");
+        } catch (Exception e) {
+            System.out.println("Ошибка сжатия: " + e.getMessage());
         }
     }
 
+    private void closeSaver() {
+        if (saver == null) return;
+        try {
+            saver.close();
+        } catch (Exception e) {
+            System.out.println("Ошибка автосохранения: " + e.getMessage());
+        }
+    }
 
+    private void closeStore() {
+        if (store == null) return;
+        try {
+            store.close();
+        } catch (Exception e) {
+            System.out.println("Ошибка записи журнала: " + e.getMessage());
+        }
+    }
+
+    private void listAll() {
+        UUID cursor = null;
+        while (true) {
+            List<Person> page = service.listPage(cursor, 50);
+            if (page.isEmpty() && cursor == null) {
+                System.out.println("Список пуст.");
+                return;
+            }
+            for (Person p : page) {
+                System.out.println(p + "  (ID=" + p.getId() + ")");
+            }
+            if (page.size() < 50) return;
+            System.out.println("Enter — следующая страница, любой текст — хватит");
+            if (!scanner.nextLine().trim().isEmpty()) return;
+            cursor = page.get(page.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Accepts the full UUID or any unique beginning of it, such as the 8-character short ID;
+     * use search (5) or the listing (11) to find it.
+     */
     private UUID readPersonId(String prompt) {
-        listAll();
-        System.out.println(prompt);
+        System.out.println(prompt + " (UUID или его начало)");
         while (true) {
             String s = scanner.nextLine().trim();
             try {
-                return UUID.fromString(s);
+                Optional<Person> p = service.findByShortId(s);
+                if (p.isPresent()) return p.get().getId();
+                System.out.println("Человек с таким ID не найден. Повторите:");
             } catch (IllegalArgumentException e) {
-                System.out.println("Некорректный UUID. Повторите:");
+                System.out.println("Некорректный или неоднозначный ID (введите больше символов). Повторите:");
             }
         }
     }
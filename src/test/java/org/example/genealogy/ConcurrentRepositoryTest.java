@@ -0,0 +1,166 @@
+package org.example.genealogy;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.storage.ConcurrentRepository;
+import org.example.genealogy.storage.KinshipGraph;
+import org.example.genealogy.storage.IntList;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class ConcurrentRepositoryTest {
+
+    @Test
+    void hammeredRepositoryKeepsEdgesSymmetric() throws Exception {
+        ConcurrentRepository repo = new ConcurrentRepository();
+        GenealogyService s = new GenealogyService(repo);
+        List<UUID> ids = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            ids.add(s.addPerson("Басангов" + (i % 20), "Имя" + i, null, LocalDate.of(1900 + i % 100, 1, 1), null,
+                    i % 2 == 0 ? Gender.MALE : Gender.FEMALE).getId());
+        }
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> {
+                Random rnd = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < 5_000; i++) {
+                        UUID a = ids.get(rnd.nextInt(ids.size()));
+                        UUID b = ids.get(rnd.nextInt(ids.size()));
+                        switch (rnd.nextInt(10)) {
+                            case 0:
+                                try {
+                                    s.linkParentChild(a, b);
+                                } catch (IllegalArgumentException cycle) {
+                                    assertTrue(cycle.getMessage().contains("own ancestor"));
+                                }
+                                break;
+                            case 1: s.unlinkParentChild(a, b); break;
+                            case 2: s.linkSpouses(a, b); break;
+                            case 3: s.unlinkSpouses(a, b); break;
+                            case 4:
+                                if (rnd.nextInt(20) == 0 && s.deletePerson(a)) {
+                                    ids.add(s.addPerson("Новый", "Имя", null, null, null, Gender.MALE).getId());
+                                }
+                                break;
+                            case 5: s.buildDescendantsLevels(a, 5); break;
+                            case 6: s.buildAncestorsLevels(a, 5); break;
+                            case 7: s.shortestKinshipPath(a, b); break;
+                            case 8: s.isRelated(a, b); break;
+                            default: s.searchByName("басангов1"); break;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(2, TimeUnit.MINUTES);
+        pool.shutdown();
+        if (failure.get() != null) fail(failure.get());
+
+        KinshipGraph graph = repo.graph();
+        IntList buf = new IntList();
+        for (Person p : repo.findAll()) {
+            for (UUID c : p.getChildIds()) {
+                Person child = repo.findById(c).orElseThrow();
+                assertTrue(child.getParentIds().contains(p.getId()));
+            }
+            for (UUID parent : p.getParentIds()) {
+                assertTrue(repo.findById(parent).orElseThrow().getChildIds().contains(p.getId()));
+            }
+            if (p.getSpouseId() != null) {
+                assertEquals(p.getId(), repo.findById(p.getSpouseId()).orElseThrow().getSpouseId());
+            }
+            int ord = graph.ordinalOf(p.getId());
+            buf.clear();
+            graph.appendChildren(ord, buf);
+            assertEquals(p.getChildIds().size(), buf.size());
+            for (int i = 0; i < buf.size(); i++) assertTrue(p.getChildIds().contains(graph.idOf(buf.get(i))));
+            assertEquals(p.getSpouseId() == null ? KinshipGraph.NONE : graph.ordinalOf(p.getSpouseId()), graph.spouseOf(ord));
+        }
+        for (Person p : repo.findAll()) {
+            for (UUID c : p.getChildIds()) assertTrue(s.isRelated(p.getId(), c));
+        }
+    }
+
+    @Test
+    void personSetsCanBeReadWhileLinksChange() throws Exception {
+        ConcurrentRepository repo = new ConcurrentRepository();
+        GenealogyService s = new GenealogyService(repo);
+        UUID parent = s.addPerson("Басангов", "Отец", null, null, null, Gender.MALE).getId();
+        List<UUID> kids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            kids.add(s.addPerson("Басангов", "Сын" + i, null, null, null, Gender.MALE).getId());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> {
+                Random rnd = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < 20_000; i++) {
+                        UUID kid = kids.get(rnd.nextInt(kids.size()));
+                        if (rnd.nextBoolean()) s.linkParentChild(parent, kid);
+                        else s.unlinkParentChild(parent, kid);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < 2; t++) {
+            futures.add(pool.submit(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 20_000; i++) {
+                        // Serialization walks the sets after the lock is released, exactly like this loop.
+                        Person p = s.getById(parent).orElseThrow();
+                        int n = 0;
+                        for (UUID c : p.getChildIds()) {
+                            assertNotNull(c);
+                            n++;
+                        }
+                        assertTrue(n <= kids.size());
+                        for (UUID c : s.getById(kids.get(i % kids.size())).orElseThrow().getParentIds()) {
+                            assertEquals(parent, c);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(2, TimeUnit.MINUTES);
+        pool.shutdown();
+        if (failure.get() != null) fail(failure.get());
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.genealogy;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.example.genealogy.server.GenealogyServer;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.storage.ConcurrentRepository;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GenealogyServerTest {
+
+    @Test
+    void apiAddsLinksAndWalksPersons() throws Exception {
+        GenealogyService service = new GenealogyService(new ConcurrentRepository());
+        try (GenealogyServer server = new GenealogyServer(service, new InetSocketAddress("localhost", 0),
+                GenealogyServer.executor("pool:4"))) {
+            server.start();
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.port() + "/api/";
+
+            HttpResponse<String> parent = send(client, "POST", base + "persons",
+                    "{\"lastName\":\"Очиров\",\"firstName\":\"Бадма\",\"birthDate\":\"1920-05-01\",\"gender\":\"MALE\"}");
+            assertEquals(201, parent.statusCode());
+            String parentId = JsonParser.parseString(parent.body()).getAsJsonObject().get("id").getAsString();
+            HttpResponse<String> child = send(client, "POST", base + "persons",
+                    "{\"lastName\":\"Очиров\",\"firstName\":\"Санджи\",\"birthDate\":\"1950-02-11\",\"gender\":\"MALE\"}");
+            String childId = JsonParser.parseString(child.body()).getAsJsonObject().get("id").getAsString();
+
+            String link = base + "links/parent-child?parent=" + parentId + "&child=" + childId;
+            assertEquals(200, send(client, "POST", link, null).statusCode());
+            assertEquals(200, send(client, "POST", link, null).statusCode());
+            assertEquals(404, send(client, "POST", base + "links/spouses?a=" + parentId + "&b="
+                    + UUID.randomUUID(), null).statusCode());
+            HttpResponse<String> cycle = send(client, "POST",
+                    base + "links/parent-child?parent=" + childId + "&child=" + parentId, null);
+            assertEquals(400, cycle.statusCode());
+
+            HttpResponse<String> found = send(client, "GET", base + "persons?q=%D0%BE%D1%87%D0%B8%D1%80", null);
+            assertEquals(2, JsonParser.parseString(found.body()).getAsJsonArray().size());
+            assertEquals(String.valueOf(found.body().getBytes(StandardCharsets.UTF_8).length),
+                    found.headers().firstValue("Content-Length").orElseThrow());
+
+            JsonArray levels = JsonParser.parseString(
+                    send(client, "GET", base + "persons/" + childId + "/ancestors?depth=3", null).body())
+                    .getAsJsonArray();
+            assertEquals(2, levels.size());
+            assertEquals(childId, levels.get(0).getAsJsonArray().get(0).getAsJsonObject().get("id").getAsString());
+            assertEquals(parentId, levels.get(1).getAsJsonArray().get(0).getAsJsonObject().get("id").getAsString());
+
+            JsonObject generation = JsonParser.parseString(
+                    send(client, "GET", base + "persons/" + childId + "/generation", null).body()).getAsJsonObject();
+            assertEquals(1, generation.get("generation").getAsInt());
+
+            assertEquals(200, send(client, "DELETE", base + "persons/" + parentId, null).statusCode());
+            HttpResponse<String> missing = send(client, "GET", base + "persons/" + parentId, null);
+            assertEquals(404, missing.statusCode());
+            assertTrue(JsonParser.parseString(missing.body()).getAsJsonObject().has("error"));
+            assertEquals(400, send(client, "GET", base + "persons/not-a-uuid", null).statusCode());
+            assertEquals(405, send(client, "PATCH", base + "persons/" + childId, null).statusCode());
+            assertEquals(405, send(client, "GET", link, null).statusCode());
+        }
+    }
+
+    private static HttpResponse<String> send(HttpClient client, String method, String uri, String body)
+            throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -1,12 +1,37 @@
 package org.example.genealogy;
 
+import org.example.genealogy.metrics.LatencyHistogram;
+import org.example.genealogy.metrics.Metrics;
+import org.example.genealogy.metrics.Timer;
 import org.example.genealogy.model.Gender;
 import org.example.genealogy.model.Person;
 import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.service.KinshipMatrix;
+import org.example.genealogy.service.NameMatch;
+import org.example.genealogy.service.Relationship;
+import org.example.genealogy.service.RelationshipCalculator;
+import org.example.genealogy.service.TreePrinter;
+import org.example.genealogy.storage.Mutation;
 import org.example.genealogy.storage.Repository;
+import org.example.genealogy.storage.RepositoryListener;
 import org.junit.jupiter.api.Test;
 
+import javax.management.ObjectName;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -22,4 +47,543 @@ public class GenealogyServiceTest {
         assertFalse(s.searchByName("Алдар").contains(p));
         assertTrue(s.searchByName("John").contains(p));
     }
+
+    @Test
+    void searchIsOrderedAndPaged() {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        Person boris = s.addPerson("Басангов", "Борис", "Николаевич", LocalDate.of(1978, 6, 12), null, Gender.MALE);
+        Person danil = s.addPerson("Басангов", "Данил", "Николаевич", LocalDate.of(1986, 11, 23), null, Gender.MALE);
+        Person galina = s.addPerson("Басангова", "Галина", "Сангаджиева", LocalDate.of(1974, 2, 1), null, Gender.FEMALE);
+        s.addPerson("Сангаджиев", "Алдар", null, LocalDate.of(1990, 1, 1), null, Gender.MALE);
+
+        assertEquals(List.of(boris, danil, galina), s.searchByName("басанг"));
+        assertEquals(List.of(danil), s.searchByName("Басанг", 1, 1));
+        assertEquals(2, s.searchByName("сангадж").size());
+        assertEquals(4, s.searchByName("а").size());
+
+        s.editPerson(danil.getId(), "Очиров", null, null, null, null, null);
+        assertEquals(List.of(boris, galina), s.searchByName("басанг"));
+        s.deletePerson(boris.getId());
+        assertEquals(List.of(galina), s.searchByName("басанг"));
+    }
+
+    @Test
+    void namePagesMatchScan() {
+        GenealogyService s = new GenealogyService(new Repository());
+        Random rnd = new Random(11);
+        String[] surnames = {"Басангов", "Басангова", "Сангаджиев", "Очиров", "Бадмаева", null};
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            people.add(s.addPerson(surnames[rnd.nextInt(surnames.length)], "Имя" + rnd.nextInt(100_000) + "_" + i,
+                    null, null, null, Gender.MALE));
+        }
+        Comparator<Person> byName = Comparator.comparing(Person::getLastName, Comparator.nullsLast(String::compareTo))
+                .thenComparing(Person::getFirstName, Comparator.nullsLast(String::compareTo));
+        for (int round = 0; round < 3; round++) {
+            for (String q : new String[]{"а", "ов", "басанг", "имя1", "ева имя"}) {
+                List<Person> all = s.getAll().stream()
+                        .filter(p -> p.getFullName().toLowerCase(Locale.ROOT).contains(q))
+                        .sorted(byName)
+                        .collect(Collectors.toList());
+                assertEquals(all, s.searchByName(q, 0, Integer.MAX_VALUE), q);
+                assertEquals(all.subList(Math.min(5, all.size()), Math.min(12, all.size())), s.searchByName(q, 5, 7), q);
+                assertEquals(all.subList(0, Math.min(3, all.size())), s.searchByName(q, 0, 3), q);
+            }
+            for (int i = 0; i < 90; i++) {
+                Person p = people.get(rnd.nextInt(people.size()));
+                if (s.getById(p.getId()).isEmpty()) continue;
+                if (i % 3 == 0) {
+                    s.deletePerson(p.getId());
+                } else {
+                    s.editPerson(p.getId(), surnames[rnd.nextInt(surnames.length - 1)], null, null, null, null, null);
+                }
+            }
+            people.add(s.addPerson("Басангов", "Новый" + round, null, null, null, Gender.MALE));
+        }
+    }
+
+    @Test
+    void levelsAndKinshipPath() {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        Person grand = s.addPerson("Басангов", "Николай", "Додлаевич", LocalDate.of(1949, 1, 5), null, Gender.MALE);
+        Person grandma = s.addPerson("Басангова", "Гиляна", null, LocalDate.of(1951, 3, 2), null, Gender.FEMALE);
+        Person father = s.addPerson("Басангов", "Борис", "Николаевич", LocalDate.of(1978, 6, 12), null, Gender.MALE);
+        Person uncle = s.addPerson("Басангов", "Данил", "Николаевич", LocalDate.of(1986, 11, 23), null, Gender.MALE);
+        Person child = s.addPerson("Басангова", "Галина", "Борисовна", LocalDate.of(2004, 2, 1), null, Gender.FEMALE);
+        assertTrue(s.linkSpouses(grand.getId(), grandma.getId()));
+        assertTrue(s.linkParentChild(grand.getId(), father.getId()));
+        assertTrue(s.linkParentChild(grandma.getId(), father.getId()));
+        assertTrue(s.linkParentChild(grand.getId(), uncle.getId()));
+        assertTrue(s.linkParentChild(father.getId(), child.getId()));
+
+        var up = s.buildAncestorsLevels(child.getId(), 10);
+        assertEquals(3, up.size());
+        assertEquals(2, up.get(2).size());
+        var down = s.buildDescendantsLevels(grand.getId(), 1);
+        assertEquals(2, down.size());
+        assertEquals(2, down.get(1).size());
+
+        var path = s.shortestKinshipPath(child.getId(), uncle.getId()).orElseThrow();
+        assertEquals(List.of(child, father, grand, uncle), path);
+
+        assertEquals(5, s.componentSize(child.getId()));
+
+        assertTrue(s.deletePerson(father.getId()));
+        assertFalse(s.isRelated(child.getId(), uncle.getId()));
+        assertEquals(1, s.componentSize(child.getId()));
+        assertEquals(3, s.componentSize(uncle.getId()));
+        assertEquals(s.componentOf(grand.getId()), s.componentOf(uncle.getId()));
+        assertTrue(grand.getChildIds().contains(uncle.getId()));
+        assertFalse(grand.getChildIds().contains(father.getId()));
+    }
+
+    @Test
+    void kinshipPathEdgeCases() {
+        GenealogyService s = new GenealogyService(new Repository());
+        Person husband = s.addPerson("Очиров", "Бадма", null, LocalDate.of(1950, 1, 1), null, Gender.MALE);
+        Person wife = s.addPerson("Очирова", "Цаган", null, LocalDate.of(1952, 1, 1), null, Gender.FEMALE);
+        Person stranger = s.addPerson("Сангаджиев", "Алдар", null, LocalDate.of(1960, 1, 1), null, Gender.MALE);
+
+        assertEquals(List.of(husband), s.shortestKinshipPath(husband.getId(), husband.getId()).orElseThrow());
+        assertTrue(s.isRelated(husband.getId(), husband.getId()));
+        UUID unknown = UUID.randomUUID();
+        assertTrue(s.shortestKinshipPath(unknown, unknown).isEmpty());
+        assertFalse(s.isRelated(unknown, unknown));
+
+        assertTrue(s.linkSpouses(husband.getId(), wife.getId()));
+        assertEquals(List.of(husband, wife), s.shortestKinshipPath(husband.getId(), wife.getId()).orElseThrow());
+        assertEquals(List.of(wife, husband), s.shortestKinshipPath(wife.getId(), husband.getId()).orElseThrow());
+        assertTrue(s.isRelated(wife.getId(), husband.getId()));
+
+        Person mother = s.addPerson("Очирова", "Булгун", null, LocalDate.of(1925, 1, 1), null, Gender.FEMALE);
+        assertTrue(s.linkParentChild(mother.getId(), husband.getId()));
+        assertEquals(List.of(mother, husband, wife), s.shortestKinshipPath(mother.getId(), wife.getId()).orElseThrow());
+
+        Person top = stranger;
+        List<Person> line = new ArrayList<>(List.of(stranger));
+        for (int i = 0; i < 10; i++) {
+            Person child = s.addPerson("Сангаджиев", "Сын" + i, null, null, null, Gender.MALE);
+            assertTrue(s.linkParentChild(top.getId(), child.getId()));
+            line.add(child);
+            top = child;
+        }
+        assertEquals(line, s.shortestKinshipPath(stranger.getId(), top.getId()).orElseThrow());
+        assertTrue(s.shortestKinshipPath(wife.getId(), top.getId()).isEmpty());
+        assertFalse(s.isRelated(stranger.getId(), husband.getId()));
+        assertTrue(s.shortestKinshipPath(husband.getId(), unknown).isEmpty());
+    }
+
+    @Test
+    void parallelLevelsMatchSequential() {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        Person root = s.addPerson("Басангов", "Николай", null, null, null, Gender.MALE);
+        List<Person> children = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Person c = s.addPerson("Басангов", "Сын" + i, null, null, null, Gender.MALE);
+            s.linkParentChild(root.getId(), c.getId());
+            children.add(c);
+        }
+        for (int i = 0; i < 3000; i++) {
+            Person g = s.addPerson("Басангов", "Внук" + i, null, null, null, Gender.MALE);
+            s.linkParentChild(children.get((i * 7) % 3000).getId(), g.getId());
+            s.linkParentChild(children.get((i * 7 + 1) % 3000).getId(), g.getId());
+        }
+
+        List<List<Person>> sequential = s.buildDescendantsLevels(root.getId(), 5);
+        assertEquals(3, sequential.size());
+        assertEquals(3000, sequential.get(2).size());
+        for (int run = 0; run < 5; run++) {
+            assertEquals(sequential, s.buildDescendantsLevels(root.getId(), 5, true));
+        }
+        assertEquals(sequential.subList(0, 2), s.buildDescendantsLevels(root.getId(), 1, true));
+        Person grandchild = sequential.get(2).get(0);
+        assertEquals(s.buildAncestorsLevels(grandchild.getId(), 3), s.buildAncestorsLevels(grandchild.getId(), 3, true));
+    }
+
+    @Test
+    void lazyLevelsMatchAndStopEarly() {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        Person grand = s.addPerson("Басангов", "Николай", null, null, null, Gender.MALE);
+        Person father = s.addPerson("Басангов", "Борис", null, null, null, Gender.MALE);
+        Person uncle = s.addPerson("Басангов", "Данил", null, null, null, Gender.MALE);
+        Person child = s.addPerson("Басангова", "Галина", null, null, null, Gender.FEMALE);
+        s.linkParentChild(grand.getId(), father.getId());
+        s.linkParentChild(grand.getId(), uncle.getId());
+        s.linkParentChild(father.getId(), child.getId());
+
+        assertEquals(s.buildDescendantsLevels(grand.getId(), 5),
+                s.streamDescendantsLevels(grand.getId(), 5).collect(Collectors.toList()));
+        assertEquals(s.buildAncestorsLevels(child.getId(), 1),
+                s.streamAncestorsLevels(child.getId(), 1).collect(Collectors.toList()));
+        assertEquals(2, s.streamDescendantsLevels(grand.getId(), 5).limit(2).count());
+
+        Iterator<List<Person>> it = s.iterateDescendantsLevels(grand.getId(), 5);
+        assertEquals(List.of(grand), it.next());
+        s.deletePerson(uncle.getId());
+        assertEquals(List.of(father), it.next());
+        assertEquals(List.of(child), it.next());
+        assertFalse(it.hasNext());
+
+        StringWriter out = new StringWriter();
+        TreePrinter.printLevels(s.iterateDescendantsLevels(grand.getId(), 1), "Потомки", out);
+        assertTrue(out.toString().contains("Уровень 1:"));
+        assertFalse(out.toString().contains("Уровень 2:"));
+    }
+
+    @Test
+    void fuzzySearchToleratesSpellingAndScript() {
+        GenealogyService s = new GenealogyService(new Repository());
+        Person kermen = s.addPerson("Сангаджиева", "Кермен", "Борисовна", null, null, Gender.FEMALE);
+        Person boris = s.addPerson("Сангаджиев", "Борис", null, null, null, Gender.MALE);
+        s.addPerson("Басангов", "Николай", null, null, null, Gender.MALE);
+
+        List<NameMatch> hits = s.fuzzySearch("Сангаджиеба Кермен", 1, 10);
+        assertEquals(1, hits.size());
+        assertEquals(kermen, hits.get(0).getPerson());
+        assertEquals(1, hits.get(0).getCost());
+
+        hits = s.fuzzySearch("Sangadzhieva", 1, 10);
+        assertEquals(List.of(kermen, boris), hits.stream().map(NameMatch::getPerson).collect(Collectors.toList()));
+        assertTrue(hits.get(0).getCost() < hits.get(1).getCost());
+        assertEquals(2, s.fuzzySearch("Sangadjieva", 1, 10).size());
+        assertEquals(0, s.fuzzySearch("басангов николай", 0, 10).get(0).getCost());
+
+        s.editPerson(kermen.getId(), "Очирова", null, null, null, null, null);
+        assertEquals(List.of(boris), s.fuzzySearch("Сангаджиева", 1, 10).stream()
+                .map(NameMatch::getPerson).collect(Collectors.toList()));
+        s.deletePerson(boris.getId());
+        assertTrue(s.fuzzySearch("Сангаджиева", 1, 10).isEmpty());
+    }
+
+    @Test
+    void dateQueriesMatchScan() {
+        GenealogyService s = new GenealogyService(new Repository());
+        Random rnd = new Random(7);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            LocalDate birth = i % 10 == 0 ? null : LocalDate.of(1850, 1, 1).plusDays(rnd.nextInt(60_000));
+            LocalDate death = birth == null || i % 3 == 0 ? null : birth.plusDays(rnd.nextInt(35_000));
+            people.add(s.addPerson("Басангов", "Имя" + i, null, birth, death, Gender.MALE));
+        }
+        for (int round = 0; round < 2; round++) {
+            LocalDate from = LocalDate.of(1900, 1, 1);
+            LocalDate to = LocalDate.of(1920, 12, 31);
+            LocalDate war = LocalDate.of(1941, 6, 22);
+            List<Person> born = s.bornBetween(from, to, 0, Integer.MAX_VALUE);
+            assertEquals(s.getAll().stream()
+                    .filter(p -> p.getBirthDate() != null && !p.getBirthDate().isBefore(from) && !p.getBirthDate().isAfter(to))
+                    .count(), born.size());
+            for (int i = 1; i < born.size(); i++) {
+                assertFalse(born.get(i).getBirthDate().isBefore(born.get(i - 1).getBirthDate()));
+            }
+            List<Person> alive = s.aliveAt(war, 0, Integer.MAX_VALUE);
+            assertEquals(s.getAll().stream()
+                    .filter(p -> p.getBirthDate() != null && !p.getBirthDate().isAfter(war)
+                            && (p.getDeathDate() == null || !p.getDeathDate().isBefore(war)))
+                    .collect(Collectors.toSet()), Set.copyOf(alive));
+            assertEquals(alive.subList(10, 15), s.aliveAt(war, 10, 5));
+            assertEquals(s.getAll().stream().filter(p -> p.getDeathDate() != null).count(),
+                    s.diedBetween(null, null, 0, Integer.MAX_VALUE).size());
+
+            for (int i = 0; i < 40; i++) {
+                Person p = people.get(i * 7);
+                if (i % 2 == 0) {
+                    s.deletePerson(p.getId());
+                } else {
+                    s.editPerson(p.getId(), null, null, null, LocalDate.of(1930, 1, 1), LocalDate.of(1945, 5, 9), null);
+                }
+            }
+        }
+    }
+
+    @Test
+    void cyclesAreRejectedAndGenerationsTracked() {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        Person grand = s.addPerson("Басангов", "Николай", null, null, null, Gender.MALE);
+        Person father = s.addPerson("Басангов", "Борис", null, null, null, Gender.MALE);
+        Person child = s.addPerson("Басангова", "Галина", null, null, null, Gender.FEMALE);
+        Person uncle = s.addPerson("Басангов", "Санал", null, null, null, Gender.MALE);
+        assertTrue(s.linkParentChild(father.getId(), child.getId()));
+        assertTrue(s.linkParentChild(grand.getId(), father.getId()));
+        assertEquals(2, s.generationOf(child.getId()).getAsInt());
+
+        assertThrows(IllegalArgumentException.class, () -> s.linkParentChild(child.getId(), grand.getId()));
+        assertThrows(IllegalArgumentException.class, () -> s.linkParentChild(child.getId(), child.getId()));
+        assertTrue(repo.findById(grand.getId()).orElseThrow().getParentIds().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> s.applyBatch(List.of(
+                Mutation.linkParentChild(grand.getId(), uncle.getId()),
+                Mutation.linkParentChild(child.getId(), grand.getId()))));
+        assertTrue(repo.findById(uncle.getId()).orElseThrow().getParentIds().isEmpty());
+
+        assertTrue(s.linkParentChild(uncle.getId(), grand.getId()));
+        assertEquals(3, s.generationOf(child.getId()).getAsInt());
+        assertEquals(List.of(father), s.generation(2, 0, 10));
+        assertTrue(s.unlinkParentChild(grand.getId(), father.getId()));
+        assertEquals(1, s.generationOf(child.getId()).getAsInt());
+        assertEquals(List.of(father, uncle), s.generation(0, 0, 10));
+        assertEquals(List.of(uncle), s.generation(0, 1, 10));
+        s.deletePerson(father.getId());
+        assertEquals(0, s.generationOf(child.getId()).getAsInt());
+        assertTrue(s.generationOf(father.getId()).isEmpty());
+
+        Random rnd = new Random(3);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 300; i++) people.add(s.addPerson("Очиров", "Имя" + i, null, null, null, Gender.MALE));
+        for (int i = 0; i < 1500; i++) {
+            Person a = people.get(rnd.nextInt(people.size()));
+            Person b = people.get(rnd.nextInt(people.size()));
+            try {
+                s.linkParentChild(a.getId(), b.getId());
+            } catch (IllegalArgumentException cycle) {
+                assertTrue(a.equals(b) || s.buildAncestorsLevels(a.getId(), 300).stream()
+                        .anyMatch(level -> level.contains(b)));
+            }
+        }
+        Map<UUID, Integer> longest = new HashMap<>();
+        for (Person p : people) {
+            assertEquals(longestParentChain(repo, p.getId(), longest), s.generationOf(p.getId()).getAsInt());
+        }
+    }
+
+    private static int longestParentChain(Repository repo, UUID id, Map<UUID, Integer> memo) {
+        Integer known = memo.get(id);
+        if (known != null) return known;
+        int g = 0;
+        for (UUID parent : repo.findById(id).orElseThrow().getParentIds()) {
+            g = Math.max(g, longestParentChain(repo, parent, memo) + 1);
+        }
+        memo.put(id, g);
+        return g;
+    }
+
+    @Test
+    void batchIsAllOrNothing() {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        Person grand = s.addPerson("Басангов", "Николай", null, null, null, Gender.MALE);
+        Person father = new Person("Басангов", "Борис", null, null, null, Gender.MALE);
+        Person mother = new Person("Басангова", "Гиляна", null, null, null, Gender.FEMALE);
+        Person child = new Person("Басангова", "Галина", null, null, null, Gender.FEMALE);
+
+        assertEquals(6, s.applyBatch(List.of(
+                Mutation.add(father), Mutation.add(mother), Mutation.add(child),
+                Mutation.linkParentChild(grand.getId(), father.getId()),
+                Mutation.linkParentChild(father.getId(), child.getId()),
+                Mutation.linkSpouses(father.getId(), mother.getId()))));
+        assertEquals(4, repo.size());
+        assertEquals(3, s.buildDescendantsLevels(grand.getId(), 5).size());
+        assertTrue(s.isRelated(grand.getId(), mother.getId()));
+        assertEquals(List.of(child), s.searchByName("Галина"));
+        assertEquals(child, s.findByShortId(child.getId().toString().substring(0, 13)).orElseThrow());
+
+        Person stranger = new Person("Очиров", "Алдар", null, null, null, Gender.MALE);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> s.applyBatch(List.of(
+                Mutation.add(stranger),
+                Mutation.delete(father.getId()),
+                Mutation.linkSpouses(stranger.getId(), mother.getId()),
+                Mutation.linkSpouses(stranger.getId(), child.getId()))));
+        assertTrue(e.getMessage().startsWith("Batch entry 3"));
+        assertEquals(4, repo.size());
+        assertEquals(father.getId(), mother.getSpouseId());
+
+        repo.addListener(new RepositoryListener() {
+            @Override
+            public void onLinkSpouses(UUID aId, UUID bId) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> s.applyBatch(List.of(
+                Mutation.add(stranger),
+                Mutation.delete(father.getId()),
+                Mutation.linkSpouses(stranger.getId(), mother.getId()))));
+        assertEquals(4, repo.size());
+        assertTrue(repo.findById(stranger.getId()).isEmpty());
+        assertEquals(father.getId(), mother.getSpouseId());
+        assertTrue(s.searchByName("Алдар").isEmpty());
+        assertEquals(List.of(father), s.searchByName("Борис"));
+        assertEquals(List.of(List.of(grand), List.of(father), List.of(child)), s.buildDescendantsLevels(grand.getId(), 5));
+        assertTrue(s.isRelated(grand.getId(), mother.getId()));
+    }
+
+    @Test
+    void metricsRecordOnlyWhenEnabled() throws Exception {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        s.addPerson("Басангов", "Борис", null, null, null, Gender.MALE);
+        Timer search = Metrics.timer("service.searchByName");
+        Metrics.reset();
+        s.searchByName("басанг");
+        assertEquals(0, search.getCount());
+
+        Metrics.setEnabled(true);
+        try {
+            s.searchByName("басанг");
+            s.searchByName("борис", 0, 10);
+            assertEquals(2, search.getCount());
+            assertTrue(search.getP50Micros() <= search.getMaxMicros());
+            Metrics.gauge("repository.persons", repo::size);
+            Metrics.registerMBeans();
+            ObjectName name = new ObjectName("org.example.genealogy:type=Timer,name=" + ObjectName.quote("service.searchByName"));
+            assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+            StringBuilder dump = new StringBuilder();
+            Metrics.dump(dump);
+            assertTrue(dump.toString().contains("service.searchByName"));
+            assertTrue(dump.toString().contains("repository.persons"));
+        } finally {
+            Metrics.setEnabled(false);
+        }
+
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) h.record(i * 1000L);
+        assertEquals(500_000, h.percentile(0.5), 500_000 * 0.07);
+        assertEquals(990_000, h.percentile(0.99), 990_000 * 0.07);
+        assertEquals(1_000_000, h.max());
+    }
+
+    @Test
+    void relationshipNames() {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        Person grand = s.addPerson("Басангов", "Николай", null, LocalDate.of(1920, 1, 1), null, Gender.MALE);
+        Person grandma = s.addPerson("Басангова", "Гиляна", null, LocalDate.of(1922, 1, 1), null, Gender.FEMALE);
+        Person son1 = s.addPerson("Басангов", "Борис", null, LocalDate.of(1945, 1, 1), null, Gender.MALE);
+        Person son2 = s.addPerson("Басангов", "Данил", null, LocalDate.of(1948, 1, 1), null, Gender.MALE);
+        Person c1 = s.addPerson("Басангова", "Галина", null, LocalDate.of(1970, 1, 1), null, Gender.FEMALE);
+        Person c2 = s.addPerson("Басангов", "Алдар", null, LocalDate.of(1972, 1, 1), null, Gender.MALE);
+        Person gc1 = s.addPerson("Басангова", "Анна", null, LocalDate.of(1995, 1, 1), null, Gender.FEMALE);
+        s.linkSpouses(grand.getId(), grandma.getId());
+        for (Person son : List.of(son1, son2)) {
+            s.linkParentChild(grand.getId(), son.getId());
+            s.linkParentChild(grandma.getId(), son.getId());
+        }
+        s.linkParentChild(son1.getId(), c1.getId());
+        s.linkParentChild(son2.getId(), c2.getId());
+        s.linkParentChild(c1.getId(), gc1.getId());
+
+        assertEquals("брат", s.relationship(son1.getId(), son2.getId()).orElseThrow().getDescription());
+        assertEquals("двоюродный брат", s.relationship(c1.getId(), c2.getId()).orElseThrow().getDescription());
+        assertEquals("двоюродная племянница", s.relationship(c2.getId(), gc1.getId()).orElseThrow().getDescription());
+        assertEquals("двоюродный дедушка", s.relationship(gc1.getId(), son2.getId()).orElseThrow().getDescription());
+        assertEquals("прабабушка", s.relationship(gc1.getId(), grandma.getId()).orElseThrow().getDescription());
+        assertEquals("жена", s.relationship(grand.getId(), grandma.getId()).orElseThrow().getDescription());
+        Relationship cousins = s.relationship(c1.getId(), c2.getId()).orElseThrow();
+        assertEquals(2, cousins.getCommonAncestors().size());
+        assertEquals(2, cousins.getGenerationsFromPerson());
+
+        s.unlinkParentChild(son2.getId(), c2.getId());
+        assertTrue(s.relationship(c1.getId(), c2.getId()).isEmpty());
+        s.linkParentChild(son1.getId(), c2.getId());
+        assertEquals("единокровный брат", s.relationship(c1.getId(), c2.getId()).orElseThrow().getDescription());
+
+        RelationshipCalculator calc = new RelationshipCalculator(repo);
+        assertEquals(3, calc.relationship(gc1.getId(), grandma.getId()).orElseThrow().getGenerationsFromPerson());
+        assertEquals(2, calc.cacheMisses());
+        s.editPerson(son1.getId(), null, "Борислав", null, null, null, null);
+        calc.relationship(gc1.getId(), grandma.getId());
+        assertEquals(2, calc.cacheMisses());
+        Person greatGrandma = new Person("Очирова", "Дарья", null, LocalDate.of(1900, 1, 1), null, Gender.FEMALE);
+        greatGrandma.getChildIds().add(grandma.getId());
+        repo.save(greatGrandma);
+        assertEquals(4, calc.relationship(gc1.getId(), greatGrandma.getId()).orElseThrow().getGenerationsFromPerson());
+        repo.delete(c1.getId());
+        assertTrue(calc.relationship(gc1.getId(), grandma.getId()).isEmpty());
+    }
+
+    @Test
+    void shortIdsResolveAndListingPagesInIdOrder() {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        for (int i = 0; i < 3000; i++) s.addPerson("Басангов", "Имя" + i, null, null, null, Gender.MALE);
+        Person twinA = new Person("Очиров", "А", null, null, null, Gender.MALE);
+        twinA.setId(UUID.fromString("ffffffff-0000-4000-8000-000000000001"));
+        Person twinB = new Person("Очиров", "Б", null, null, null, Gender.MALE);
+        twinB.setId(UUID.fromString("ffffffff-0000-4000-8000-000000000002"));
+        repo.saveAll(List.of(twinA, twinB));
+
+        for (int round = 0; round < 2; round++) {
+            List<String> expected = s.getAll().stream().map(p -> p.getId().toString()).sorted()
+                    .collect(Collectors.toList());
+            List<String> paged = new ArrayList<>();
+            UUID cursor = null;
+            for (List<Person> page; !(page = s.listPage(cursor, 97)).isEmpty(); ) {
+                page.forEach(p -> paged.add(p.getId().toString()));
+                cursor = page.get(page.size() - 1).getId();
+            }
+            assertEquals(expected, paged);
+
+            for (Person p : List.copyOf(s.getAll()).subList(0, 50)) {
+                if (p == twinA || p == twinB) continue;
+                assertEquals(p, s.findByShortId(p.getShortId()).orElseThrow());
+                assertEquals(p, s.findByShortId(p.getId().toString().toUpperCase()).orElseThrow());
+            }
+            assertThrows(IllegalArgumentException.class, () -> s.findByShortId("ffffffff-0000"));
+            assertEquals(twinB, s.findByShortId("ffffffff-0000-4000-8000-000000000002").orElseThrow());
+            assertThrows(IllegalArgumentException.class, () -> s.findByShortId("не-id"));
+
+            List<Person> some = s.getAll().stream().filter(p -> p.getFirstName().startsWith("Имя"))
+                    .skip(100).limit(40).collect(Collectors.toList());
+            for (int i = 0; i < some.size(); i++) {
+                if (i % 2 == 0) s.deletePerson(some.get(i).getId());
+                else s.addPerson("Очирова", "Новая" + i, null, null, null, Gender.FEMALE);
+            }
+            assertTrue(s.findByShortId(some.get(0).getId().toString()).isEmpty());
+        }
+    }
+
+    @Test
+    void batchKinshipMatchesPairwiseSearch() {
+        GenealogyService s = new GenealogyService(new Repository());
+        Random rnd = new Random(11);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            ids.add(s.addPerson("Манджиев", "Имя" + i, null, null, null, i % 2 == 0 ? Gender.MALE : Gender.FEMALE).getId());
+        }
+        for (int i = 0; i < 700; i++) {
+            int a = rnd.nextInt(550);
+            int b = a + 1 + rnd.nextInt(49);
+            if (i % 5 == 0) s.linkSpouses(ids.get(a), ids.get(b));
+            else s.linkParentChild(ids.get(a), ids.get(b));
+        }
+        s.deletePerson(ids.get(7));
+
+        UUID source = ids.get(300);
+        List<UUID> targets = new ArrayList<>(ids.subList(0, 250));
+        targets.add(UUID.randomUUID());
+        Map<UUID, List<Person>> paths = s.shortestKinshipPaths(source, targets);
+        for (UUID target : targets) {
+            Optional<List<Person>> single = s.shortestKinshipPath(source, target);
+            assertEquals(single.isPresent(), paths.containsKey(target), "target " + target);
+            if (single.isEmpty()) continue;
+            List<Person> path = paths.get(target);
+            assertEquals(single.get().size(), path.size());
+            assertEquals(source, path.get(0).getId());
+            assertEquals(target, path.get(path.size() - 1).getId());
+            for (int i = 1; i < path.size(); i++) {
+                Person x = path.get(i - 1);
+                UUID y = path.get(i).getId();
+                assertTrue(x.getParentIds().contains(y) || x.getChildIds().contains(y) || y.equals(x.getSpouseId()));
+            }
+        }
+        assertTrue(s.shortestKinshipPaths(source, targets, 2).values().stream().allMatch(p -> p.size() <= 3));
+
+        List<UUID> set = new ArrayList<>(ids.subList(200, 340));
+        set.add(set.get(0));
+        KinshipMatrix all = s.kinshipDistances(set);
+        KinshipMatrix near = s.kinshipDistances(set, 3);
+        assertEquals(140, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            for (int j = 0; j < all.size(); j++) {
+                Optional<List<Person>> path = s.shortestKinshipPath(all.getPersons().get(i).getId(),
+                        all.getPersons().get(j).getId());
+                int expected = path.map(p -> p.size() - 1).orElse(-1);
+                assertEquals(expected, all.distance(i, j));
+                assertEquals(expected <= 3 ? expected : -1, near.distance(i, j));
+            }
+        }
+    }
 }
@@ -0,0 +1,381 @@
+package org.example.genealogy;
+
+import org.example.genealogy.model.Gender;
+import org.example.genealogy.model.Person;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.storage.Autosaver;
+import org.example.genealogy.storage.BinarySnapshotStorage;
+import org.example.genealogy.storage.CompactRepository;
+import org.example.genealogy.storage.ConcurrentRepository;
+import org.example.genealogy.storage.DiskRepository;
+import org.example.genealogy.storage.GedcomStorage;
+import org.example.genealogy.storage.JournaledStore;
+import org.example.genealogy.storage.JsonStorage;
+import org.example.genealogy.storage.MappedSnapshot;
+import org.example.genealogy.storage.MutationJournal;
+import org.example.genealogy.storage.Repository;
+import org.example.genealogy.storage.SnapshotConverter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class StorageTest {
+
+    @TempDir
+    Path dir;
+
+    private GenealogyService family(Repository repo) {
+        GenealogyService s = new GenealogyService(repo);
+        Person ivan = s.addPerson("Басангов", "Николай", "Додлаевич", LocalDate.of(1949, 1, 5), null, Gender.MALE);
+        Person maria = s.addPerson("Басангова", "Гиляна", null, LocalDate.of(1951, 3, 2), LocalDate.of(2020, 4, 1), Gender.FEMALE);
+        Person petr = s.addPerson("Басангов", "Борис", "Николаевич", LocalDate.of(1978, 6, 12), null, Gender.MALE);
+        s.linkSpouses(ivan.getId(), maria.getId());
+        s.linkParentChild(ivan.getId(), petr.getId());
+        s.linkParentChild(maria.getId(), petr.getId());
+        return s;
+    }
+
+    private static void assertSameFamily(GenealogyService expected, Repository actual) {
+        assertEquals(expected.getAll().size(), actual.size());
+        for (Person p : expected.getAll()) {
+            Person q = actual.findById(p.getId()).orElseThrow();
+            assertEquals(p.toString(), q.toString());
+            assertEquals(p.getGender(), q.getGender());
+            assertEquals(p.getParentIds(), q.getParentIds());
+            assertEquals(p.getChildIds(), q.getChildIds());
+            assertEquals(p.getSpouseId(), q.getSpouseId());
+        }
+    }
+
+    @Test
+    void jsonRoundTrip() throws Exception {
+        GenealogyService s = family(new Repository());
+        for (boolean pretty : new boolean[]{true, false}) {
+            String path = dir.resolve("family-" + pretty + ".json").toString();
+            new JsonStorage(pretty).save(path, s.getAll());
+            Repository loaded = new Repository();
+            assertEquals(3, new JsonStorage().loadInto(path, loaded));
+            assertSameFamily(s, loaded);
+        }
+
+        Path empty = Files.createFile(dir.resolve("empty.json"));
+        assertEquals(List.of(), new JsonStorage().load(empty.toString()));
+    }
+
+    @Test
+    void gedcomRoundTripAndForwardReferences() throws Exception {
+        GenealogyService s = family(new Repository());
+        String path = dir.resolve("family.ged").toString();
+        assertEquals(3, new GedcomStorage().export(path, s.getAll()));
+        Repository loaded = new Repository();
+        GedcomStorage.Report report = new GedcomStorage().importInto(path, loaded);
+        assertEquals(3, report.persons());
+        assertEquals(1, report.families());
+        assertEquals(3, report.links());
+        GenealogyService l = new GenealogyService(loaded);
+        Person boris = l.searchByName("Борис").get(0);
+        assertEquals("Николаевич", boris.getMiddleName());
+        assertEquals(LocalDate.of(1978, 6, 12), boris.getBirthDate());
+        assertEquals(Gender.MALE, boris.getGender());
+        Person gilyana = l.searchByName("Гиляна").get(0);
+        assertEquals(LocalDate.of(2020, 4, 1), gilyana.getDeathDate());
+        assertTrue(boris.getParentIds().contains(gilyana.getId()));
+        assertNotNull(gilyana.getSpouseId());
+
+        String forward = "0 HEAD\n0 @F1@ FAM\n1 HUSB @I1@\n1 WIFE @I2@\n1 CHIL @I3@\n1 CHIL @I9@\n"
+                + "0 @I3@ INDI\n1 NAME Галина /Басангова/\n1 BIRT\n2 DATE ABT 2004\n"
+                + "0 @I1@ INDI\n1 NAME Борис Николаевич /Басангов/\n1 SEX M\n"
+                + "0 @I2@ INDI\n1 NAME Гиляна /Басангова/\n1 SEX F\n0 TRLR\n";
+        Repository repo = new Repository();
+        report = new GedcomStorage().read(new StringReader(forward), repo);
+        assertEquals(4, report.records());
+        assertEquals(3, report.links());
+        assertEquals(2, report.skipped());
+        Person galina = new GenealogyService(repo).searchByName("Галина").get(0);
+        assertEquals(LocalDate.of(2004, 1, 1), galina.getBirthDate());
+        assertEquals(2, galina.getParentIds().size());
+    }
+
+    @Test
+    void gedcomCycleIsSkippedNotFatal() throws Exception {
+        String cyclic = "0 HEAD\n"
+                + "0 @I1@ INDI\n1 NAME Борис /Басангов/\n"
+                + "0 @I2@ INDI\n1 NAME Галина /Басангова/\n"
+                + "0 @I3@ INDI\n1 NAME Санал /Басангов/\n"
+                + "0 @F1@ FAM\n1 HUSB @I1@\n1 CHIL @I2@\n"
+                + "0 @F2@ FAM\n1 WIFE @I2@\n1 CHIL @I3@\n"
+                + "0 @F3@ FAM\n1 HUSB @I3@\n1 CHIL @I1@\n0 TRLR\n";
+        Repository repo = new Repository();
+        GedcomStorage.Report report = new GedcomStorage().read(new StringReader(cyclic), repo);
+        assertEquals(3, report.persons());
+        assertEquals(2, report.links());
+        assertEquals(1, report.skipped());
+        assertTrue(report.skippedReasons().get(0).startsWith("CHIL @I3@ @I1@: "));
+        assertTrue(report.skippedReasons().get(0).contains("own ancestor"));
+        GenealogyService s = new GenealogyService(repo);
+        Person boris = s.searchByName("Борис").get(0);
+        assertTrue(boris.getParentIds().isEmpty());
+        assertEquals(3, s.buildDescendantsLevels(boris.getId(), 10).size());
+    }
+
+    @Test
+    void gedcomReportKeepsOnlyTheFirstReasons() throws Exception {
+        StringBuilder ged = new StringBuilder("0 HEAD\n0 @I1@ INDI\n1 NAME Борис /Басангов/\n0 @F1@ FAM\n1 HUSB @I1@\n");
+        int missing = GedcomStorage.Report.MAX_REASONS + 50;
+        for (int i = 0; i < missing; i++) ged.append("1 CHIL @X").append(i).append("@\n");
+        ged.append("0 TRLR\n");
+        GedcomStorage.Report report = new GedcomStorage().read(new StringReader(ged.toString()), new Repository());
+        assertEquals(missing, report.skipped());
+        assertEquals(GedcomStorage.Report.MAX_REASONS, report.skippedReasons().size());
+        assertEquals(50, report.unlistedSkips());
+        assertEquals("CHIL @I1@ @X0@: no INDI record for @X0@", report.skippedReasons().get(0));
+    }
+
+    @Test
+    void diskRepositoryWritesBackThroughSmallCache() throws Exception {
+        try (DiskRepository disk = new DiskRepository(dir.resolve("disk"), 2)) {
+            GenealogyService s = family(disk);
+            Person boris = s.searchByName("Борис").get(0);
+            Person galina = s.addPerson("Басангова", "Галина", "Борисовна", LocalDate.of(2004, 2, 1), null, Gender.FEMALE);
+            assertTrue(s.linkParentChild(boris.getId(), galina.getId()));
+            assertTrue(disk.store().cached() <= 2);
+
+            List<List<Person>> levels = s.buildAncestorsLevels(galina.getId(), 5);
+            assertEquals(3, levels.size());
+            assertEquals(2, levels.get(2).size());
+            assertTrue(s.editPerson(galina.getId(), null, null, null, null, LocalDate.of(2090, 1, 1), null));
+            assertEquals(LocalDate.of(2090, 1, 1), disk.findById(galina.getId()).orElseThrow().getDeathDate());
+            assertTrue(disk.store().misses() > 0);
+            assertTrue(disk.store().writes() > 0);
+
+            String path = dir.resolve("disk.json").toString();
+            new JsonStorage().save(path, s.getAll());
+            Repository loaded = new Repository();
+            assertEquals(4, new JsonStorage().loadInto(path, loaded));
+            assertSameFamily(s, loaded);
+
+            assertTrue(s.deletePerson(boris.getId()));
+            assertEquals(3, disk.size());
+            assertTrue(disk.findById(galina.getId()).orElseThrow().getParentIds().isEmpty());
+        }
+    }
+
+    @Test
+    void compactRepositoryStoresColumnsBehindViews() throws Exception {
+        CompactRepository compact = new CompactRepository();
+        GenealogyService s = family(compact);
+        Person boris = s.searchByName("Борис").get(0);
+        Person galina = s.addPerson("Басангова", "Галина", "Борисовна", LocalDate.of(2004, 2, 1), null, Gender.FEMALE);
+        assertTrue(s.linkParentChild(boris.getId(), galina.getId()));
+        assertEquals(3, s.buildAncestorsLevels(galina.getId(), 5).size());
+        assertTrue(s.editPerson(galina.getId(), null, null, null, null, LocalDate.of(2090, 1, 1), null));
+        assertEquals(LocalDate.of(2090, 1, 1), compact.findById(galina.getId()).orElseThrow().getDeathDate());
+
+        String path = dir.resolve("compact.json").toString();
+        new JsonStorage().save(path, s.getAll());
+        Repository loaded = new Repository();
+        assertEquals(4, new JsonStorage().loadInto(path, loaded));
+        assertSameFamily(s, loaded);
+
+        assertTrue(s.deletePerson(boris.getId()));
+        assertEquals(3, compact.size());
+        assertTrue(compact.findById(galina.getId()).orElseThrow().getParentIds().isEmpty());
+        assertTrue(compact.store().footprint().bytesPerPerson() > 0);
+        assertTrue(compact.footprint().indexBytes() > 0);
+        assertTrue(compact.footprint().bytes() > compact.store().footprint().bytes());
+        assertTrue(compact.store().names().size() < 12);
+    }
+
+    @Test
+    void loadersDropLinksThatCloseACycle() throws Exception {
+        Person a = new Person("Басангов", "Первый", null, null, null, Gender.MALE);
+        Person b = new Person("Басангов", "Второй", null, null, null, Gender.MALE);
+        a.getChildIds().add(b.getId());
+        b.getParentIds().add(a.getId());
+        b.getChildIds().add(a.getId());
+        a.getParentIds().add(b.getId());
+        String path = dir.resolve("cycle.json").toString();
+        new JsonStorage().save(path, List.of(a, b));
+
+        Repository loaded = new Repository();
+        assertEquals(2, new JsonStorage().loadInto(path, loaded));
+        assertEquals(2, loaded.size());
+        Person first = loaded.findById(a.getId()).orElseThrow();
+        Person second = loaded.findById(b.getId()).orElseThrow();
+        assertEquals(first.getChildIds().contains(b.getId()), second.getParentIds().contains(a.getId()));
+        assertEquals(second.getChildIds().contains(a.getId()), first.getParentIds().contains(b.getId()));
+        assertEquals(1, first.getChildIds().size() + second.getChildIds().size());
+
+        Repository replaced = new Repository();
+        assertEquals(2, replaced.saveAll(new JsonStorage().load(path)));
+        assertEquals(2, replaced.size());
+    }
+
+    @Test
+    void autosaverWritesSnapshots() throws Exception {
+        Repository repo = new ConcurrentRepository();
+        GenealogyService s = family(repo);
+        Path target = dir.resolve("auto.json");
+        try (Autosaver saver = new Autosaver(repo, new JsonStorage(false), target, 0, 3)) {
+            Path manual = dir.resolve("manual.json");
+            assertEquals(3, saver.saveAsync(manual).get());
+            Repository loaded = new Repository();
+            new JsonStorage().loadInto(manual.toString(), loaded);
+            assertSameFamily(s, loaded);
+
+            Person boris = s.searchByName("Борис").get(0);
+            Person galina = s.addPerson("Басангова", "Галина", "Борисовна", LocalDate.of(2004, 2, 1), null, Gender.FEMALE);
+            assertTrue(s.linkParentChild(boris.getId(), galina.getId()));
+            for (int i = 0; i < 500 && saver.saves() < 2; i++) Thread.sleep(10);
+            assertEquals(2, saver.saves());
+            assertNull(saver.lastError());
+            assertTrue(s.deletePerson(galina.getId()));
+        }
+        assertFalse(Files.exists(dir.resolve("auto.json.tmp")));
+        Repository loaded = new Repository();
+        assertEquals(3, new JsonStorage().loadInto(target.toString(), loaded));
+        assertSameFamily(s, loaded);
+    }
+
+    @Test
+    void binarySnapshotRoundTrip() throws Exception {
+        GenealogyService s = family(new Repository());
+        String json = dir.resolve("family.json").toString();
+        String bin = dir.resolve("family.bin").toString();
+        String back = dir.resolve("back.json").toString();
+        new JsonStorage().save(json, s.getAll());
+        SnapshotConverter converter = new SnapshotConverter();
+        assertEquals(3, converter.jsonToBinary(json, bin));
+
+        Repository loaded = new Repository();
+        new BinarySnapshotStorage().loadInto(bin, loaded);
+        assertSameFamily(s, loaded);
+
+        try (MappedSnapshot snapshot = new BinarySnapshotStorage().open(bin)) {
+            for (Person p : s.getAll()) {
+                int i = snapshot.indexOf(p.getId());
+                assertEquals(p.getLastName(), snapshot.lastNameAt(i));
+                assertEquals(p.getChildIds().size(), snapshot.childCountAt(i));
+            }
+            assertEquals(-1, snapshot.indexOf(UUID.randomUUID()));
+        }
+
+        assertEquals(3, converter.binaryToJson(bin, back));
+        Repository again = new Repository();
+        new JsonStorage().loadInto(back, again);
+        assertSameFamily(s, again);
+    }
+
+    @Test
+    void journalRecoveryAndCompaction() throws Exception {
+        Path data = dir.resolve("data");
+        Repository repo = new Repository();
+        GenealogyService s;
+        try (JournaledStore store = new JournaledStore(data, 10)) {
+            assertEquals(0, store.recover(repo));
+            s = family(repo);
+            store.compactAsync().get();
+            Person extra = s.addPerson("Очиров", "Алдар", null, LocalDate.of(2001, 5, 5), null, Gender.MALE);
+            Person petr = s.searchByName("Борис").get(0);
+            s.linkParentChild(petr.getId(), extra.getId());
+            s.editPerson(petr.getId(), null, "Петр", null, null, null, null);
+        }
+
+        Repository recovered = new Repository();
+        try (JournaledStore store = new JournaledStore(data, 10)) {
+            store.recover(recovered);
+            assertSameFamily(s, recovered);
+            new GenealogyService(recovered).deletePerson(s.searchByName("Очиров").get(0).getId());
+        }
+        Repository again = new Repository();
+        try (JournaledStore store = new JournaledStore(data, 10)) {
+            store.recover(again);
+            assertEquals(3, again.size());
+        }
+    }
+
+    @Test
+    void compactionFoldsSegmentsOverTheOldSnapshot() throws Exception {
+        Path data = dir.resolve("folded");
+        Repository repo = new Repository();
+        GenealogyService s;
+        try (JournaledStore store = new JournaledStore(data, 10)) {
+            store.recover(repo);
+            s = family(repo);
+            store.compactAsync().get();
+            Person boris = s.searchByName("Борис").get(0);
+            Person gilyana = s.searchByName("Гиляна").get(0);
+            Person nikolay = s.searchByName("Николай").get(0);
+            Person aldar = s.addPerson("Очиров", "Алдар", null, LocalDate.of(2001, 5, 5), null, Gender.MALE);
+            Person saglar = s.addPerson("Очирова", "Саглар", null, null, null, Gender.FEMALE);
+            s.linkParentChild(boris.getId(), aldar.getId());
+            s.linkSpouses(aldar.getId(), saglar.getId());
+            s.unlinkSpouses(nikolay.getId(), gilyana.getId());
+            s.deletePerson(gilyana.getId());
+            s.editPerson(boris.getId(), null, "Петр", null, null, null, null);
+            store.compactAsync().get();
+        }
+        try (Stream<Path> files = Files.list(data)) {
+            assertEquals(List.of("snapshot-3.bin"), files.map(f -> f.getFileName().toString())
+                    .filter(f -> f.startsWith("snapshot")).collect(Collectors.toList()));
+        }
+
+        Repository recovered = new Repository();
+        try (JournaledStore store = new JournaledStore(data, 10)) {
+            assertEquals(0, store.recover(recovered));
+        }
+        assertSameFamily(s, recovered);
+    }
+
+    @Test
+    void awaitDurableDoesNotWaitForTheTimer() throws Exception {
+        Path data = dir.resolve("durable");
+        Repository repo = new Repository();
+        try (JournaledStore store = new JournaledStore(data, 60_000)) {
+            store.recover(repo);
+            GenealogyService s = family(repo);
+            store.journal().awaitDurable();
+            Repository replayed = new Repository();
+            try (Stream<Path> files = Files.list(data)) {
+                for (Path f : files.filter(f -> f.getFileName().toString().startsWith("journal")).collect(Collectors.toList())) {
+                    MutationJournal.replay(f, replayed);
+                }
+            }
+            assertSameFamily(s, replayed);
+        }
+    }
+
+    @Test
+    void journalKeepsRelationsOfSavedPersons() throws Exception {
+        Path data = dir.resolve("related");
+        Repository repo = new Repository();
+        GenealogyService s = family(new Repository());
+        List<Person> people = List.copyOf(s.getAll());
+        try (JournaledStore store = new JournaledStore(data, 10)) {
+            store.recover(repo);
+            repo.clear();
+            repo.saveAll(people);
+        }
+
+        Repository recovered = new Repository();
+        try (JournaledStore store = new JournaledStore(data, 10)) {
+            store.recover(recovered);
+        }
+        assertSameFamily(s, recovered);
+        Person parent = people.stream().filter(p -> !p.getChildIds().isEmpty()).findFirst().orElseThrow();
+        assertEquals(parent.getChildIds(), recovered.findById(parent.getId()).orElseThrow().getChildIds());
+        assertEquals(parent.getChildIds().size(),
+                recovered.graph().childCount(recovered.graph().ordinalOf(parent.getId())));
+    }
+}
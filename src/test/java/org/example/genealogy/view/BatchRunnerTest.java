@@ -0,0 +1,52 @@
+package org.example.genealogy.view;
+
+import org.example.genealogy.model.Person;
+import org.example.genealogy.service.GenealogyService;
+import org.example.genealogy.storage.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+
+    @Test
+    void batchScriptRunsWithoutPrompts() throws Exception {
+        Repository repo = new Repository();
+        GenealogyService s = new GenealogyService(repo);
+        String script = String.join("\n",
+                "# семья",
+                "add Басангов Николай Додлаевич 1949-01-05 - М as father",
+                "add \"Басангова\" Гиляна - 1951-03-02 - Ж as mother",
+                "add Басангов Борис Николаевич 1978-06-12 - М as son",
+                "link parent @father @son",
+                "link parent @mother @son",
+                "link spouses @father @mother",
+                "link parent @son @father",
+                "edit @son death=2020-01-01",
+                "frobnicate");
+        StringWriter text = new StringWriter();
+        int errors = new BatchRunner(repo, s, new PrintWriter(text)).run(new BufferedReader(new StringReader(script)));
+        assertEquals(2, errors);
+        assertEquals(3, repo.size());
+
+        Person son = s.searchByName("Борис").get(0);
+        assertEquals(LocalDate.of(2020, 1, 1), son.getDeathDate());
+        assertEquals(2, son.getParentIds().size());
+        String output = text.toString();
+        assertTrue(output.contains("Ошибка в строке 8"));
+        assertTrue(output.contains("Ошибка в строке 10"));
+
+        StringWriter lookups = new StringWriter();
+        String shortScript = "ancestors " + son.getShortId() + " 2\nget " + son.getId() + "\ndelete ffffffff-0000";
+        errors = new BatchRunner(repo, s, new PrintWriter(lookups)).run(new BufferedReader(new StringReader(shortScript)));
+        assertEquals(1, errors);
+        assertTrue(lookups.toString().contains("Басангова Гиляна"));
+        assertEquals(3, repo.size());
+    }
+}